@@ -13,12 +13,13 @@ package org.intermine.bio.dataconversion;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
-import java.io.Reader;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -44,6 +45,7 @@ public class ArrayexpressAtlasConverter extends BioDirectoryConverter
     private static final String DATA_SOURCE_NAME = "ArrayExpress";
     private Map<String, String> genes = new HashMap<String, String>();
     protected IdResolver rslv;
+    private IdResolutionCache resolutionCache;
     private static final String TAXON_ID = "9606";
     private static final Logger LOG = Logger.getLogger(ArrayexpressAtlasConverter.class);
 
@@ -51,112 +53,231 @@ public class ArrayexpressAtlasConverter extends BioDirectoryConverter
     static String[] types = new String[] {"organism_part", "disease_state", "cell_type"};
     private static final Set<String> EXPRESSION_TYPES = new HashSet<String>(Arrays.asList(types));
     private static final String NA_EXPRESSION = "NA";
+    private static final int CHUNK_CHARS = 1 << 20;
+    private int threads = 1;
+    // the size of the chunks of genes parsed by each worker, changed by tests
+    int chunkChars = CHUNK_CHARS;
+    private ConverterMetrics metrics;
+
     /**
      * Constructor
      * @param writer the ItemWriter used to handle the resultant items
      * @param model the Model
      */
     public ArrayexpressAtlasConverter(ItemWriter writer, Model model) {
-        super(writer, model, DATA_SOURCE_NAME, DATASET_TITLE);
+        super(new MetricsItemWriter(writer, "arrayexpress-atlas"), model, DATA_SOURCE_NAME,
+                DATASET_TITLE);
+        metrics = ((MetricsItemWriter) getItemWriter()).getMetrics();
 
         if (rslv == null) {
             rslv = IdResolverService.getIdResolverByOrganism(Collections.singleton(TAXON_ID));
         }
     }
 
+    /**
+     * Set the number of experiment files parsed at once, from the arrayexpress.threads source
+     * property.  With more than one, the files are read in chunks of genes whose results are
+     * parsed and resolved on worker threads, while items are still created and stored on the
+     * calling thread in file order, so the output is the same whatever the number of threads.
+     * At most a few chunks per thread are held in memory at once.
+     *
+     * @param threads number of worker threads, defaults to 1
+     */
+    public void setArrayexpressThreads(String threads) {
+        this.threads = Integer.parseInt(threads.trim());
+        if (this.threads < 1) {
+            throw new IllegalArgumentException("arrayexpress.threads must be at least 1, got "
+                    + threads);
+        }
+    }
+
     @Override
     public void process(File dataDir) throws Exception {
-        List<File> files = readFilesInDir(dataDir);
+        // created before any workers start so they share it
+        resolutionCache = new IdResolutionCache(rslv);
+        metrics.setResolutionCache(resolutionCache);
 
-        for (File f : files) {
-            String fileName = f.getName();
-            if (fileName.endsWith("json")) {
-                LOG.info("Reading file: " + fileName);
-                processFile(new FileReader(f));
+        List<File> files = readFilesInDir(dataDir);
+        boolean processed = false;
+        try {
+            if (threads == 1) {
+                for (File f : files) {
+                    LOG.info("Reading file: " + f.getName());
+                    processFile(f, new OrderedPipeline.Sink<ExpressionRow>() {
+                        @Override
+                        public void accept(ExpressionRow row) throws ObjectStoreException {
+                            storeExpression(row);
+                        }
+                    });
+                }
+            } else {
+                processFiles(files);
+            }
+            processed = true;
+        } finally {
+            if (!processed) {
+                // there will be no close() to do it
+                metrics.close();
             }
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws Exception {
+        super.close();
+        metrics.close();
+    }
+
+    // the json files, sorted so they are always processed in the same order
     private List<File> readFilesInDir(File dir) {
         List<File> files = new ArrayList<File>();
         for (File file : dir.listFiles()) {
-            files.add(file);
+            if (file.getName().endsWith("json")) {
+                files.add(file);
+            }
         }
+        Collections.sort(files);
         return files;
     }
 
-    private void processFile(Reader reader) throws Exception {
-        BufferedReader bufferedReader = new BufferedReader(reader);
-        StringBuilder sb = new StringBuilder();
-        String line = null;
-        while ((line = bufferedReader.readLine()) != null) {
-            sb.append(line);
+    // parse chunks of genes on worker threads, create and store items in file order
+    private void processFiles(List<File> files) throws Exception {
+        GeneChunkReader chunks = new GeneChunkReader(files);
+        // each parsed chunk is held in memory until it is stored, so don't read ahead too far
+        OrderedPipeline<GeneChunk, List<ExpressionRow>> pipeline =
+            new OrderedPipeline<GeneChunk, List<ExpressionRow>>("arrayexpress", threads,
+                    threads * 2);
+        try {
+            pipeline.run(chunks, new OrderedPipeline.Transform<GeneChunk, List<ExpressionRow>>() {
+                @Override
+                public List<ExpressionRow> apply(GeneChunk chunk) throws Exception {
+                    final List<ExpressionRow> rows = new ArrayList<ExpressionRow>();
+                    ProbeParser parser = new ProbeParser(new OrderedPipeline.Sink<ExpressionRow>() {
+                        @Override
+                        public void accept(ExpressionRow row) {
+                            rows.add(row);
+                        }
+                    });
+                    for (int i = 0; i < chunk.ensemblIds.size(); i++) {
+                        String ensemblId = chunk.ensemblIds.get(i);
+                        if (parser.gene(ensemblId)) {
+                            AtlasJsonReader.readProbes(ensemblId, chunk.probes.get(i), parser);
+                        }
+                    }
+                    return rows;
+                }
+            }, new OrderedPipeline.Sink<List<ExpressionRow>>() {
+                @Override
+                public void accept(List<ExpressionRow> rows) throws ObjectStoreException {
+                    for (ExpressionRow row : rows) {
+                        storeExpression(row);
+                    }
+                }
+            });
+        } finally {
+            chunks.close();
         }
-        bufferedReader.close();
-
-        JSONObject json = new JSONObject(sb.toString());
-
-        JSONArray results = json.getJSONArray("results");
+    }
 
-        JSONObject result = results.getJSONObject(0);
+    // called from worker threads, must not create items
+    private void processFile(File file, final OrderedPipeline.Sink<ExpressionRow> sink)
+        throws Exception {
+        // the file is streamed, only one probe's results are in memory at a time
+        BufferedReader bufferedReader =
+            new BufferedReader(metrics.countBytes(new FileReader(file)));
+        try {
+            new AtlasJsonReader(bufferedReader).read(new ProbeParser(sink));
+        } finally {
+            bufferedReader.close();
+        }
+    }
 
-        String arrayDesign = result.getString("arrayDesign");
+    /**
+     * Turns the probes of each gene into rows.  Called from worker threads.
+     */
+    private class ProbeParser implements AtlasJsonReader.ProbeHandler
+    {
+        private final OrderedPipeline.Sink<ExpressionRow> sink;
+        private String primaryIdentifier = null;
 
-        JSONObject geneExpressionStatistics = result.getJSONObject("geneExpressionStatistics");
-        JSONObject ensemblIds =
-            geneExpressionStatistics.getJSONObject(arrayDesign).getJSONObject("genes");
-        for (String ensemblId : JSONObject.getNames(ensemblIds)) {
-            JSONObject probes = ensemblIds.getJSONObject(ensemblId);
-            for (String probeId : JSONObject.getNames(probes)) {
-                JSONArray expressionResults = probes.getJSONArray(probeId);
-                for (int i = 0; i < expressionResults.length(); i++) {
-                    JSONObject expressionResult = expressionResults.getJSONObject(i);
-                    try {
-                        String geneRefId = getGeneId(ensemblId);
-                        if (StringUtils.isEmpty(geneRefId)) {
-                            continue;
-                        }
-                        Item expressionItem = createItem("AtlasExpression");
-                        expressionItem.setReference("gene", geneRefId);
-                        String type = expressionResult.get("ef").toString();
-                        if (!EXPRESSION_TYPES.contains(type)) {
-                            continue;
-                        }
-                        String condition = expressionResult.get("efv").toString();
+        ProbeParser(OrderedPipeline.Sink<ExpressionRow> sink) {
+            this.sink = sink;
+        }
 
-                        JSONObject stat = expressionResult.getJSONObject("stat");
-                        String expression = stat.get("expression").toString();
-                        if (NA_EXPRESSION.equals(expression)) {
-                            continue;
-                        }
-                        Double pValue = stat.getDouble("pvalue");
-                        if (pValue > 1) {
-                            continue;
-                        }
+        @Override
+        public boolean gene(String ensemblId) {
+            // resolved once for all the probes of the gene
+            primaryIdentifier = resolveGene(ensemblId);
+            return StringUtils.isNotEmpty(primaryIdentifier);
+        }
 
-                        Double tStatistic = stat.getDouble("tstat");
-                        tStatistic = round(tStatistic, 1); // round double to 1 digit
-
-                        expressionItem.setAttribute("type", type);
-                        expressionItem.setAttribute("condition", condition);
-                        expressionItem.setAttribute("expression", expression);
-                        expressionItem.setAttribute("pValue", pValue.toString());
-                        expressionItem.setAttribute("tStatistic", tStatistic.toString());
-                        store(expressionItem);
-                    } catch (JSONException e) {
-                        LOG.warn("JSON object missing some values: "
-                                + expressionResult.toString(2), e);
-                    }
+        @Override
+        public void probe(String ensemblId, String probeId, JSONArray expressionResults)
+            throws Exception {
+            for (int i = 0; i < expressionResults.length(); i++) {
+                ExpressionRow row = parseResult(primaryIdentifier,
+                        expressionResults.getJSONObject(i));
+                if (row != null) {
+                    sink.accept(row);
                 }
             }
         }
     }
 
-    private String getGeneId(String primaryIdentifier) throws ObjectStoreException {
-        String resolvedIdentifier = resolveGene(primaryIdentifier);
-        if (StringUtils.isEmpty(resolvedIdentifier)) {
+    // all the checks are done before any item is created, so rejected results don't use up
+    // item identifiers. returns null if the result isn't wanted
+    private ExpressionRow parseResult(String primaryIdentifier,
+            JSONObject expressionResult) throws JSONException {
+        metrics.rowRead();
+        try {
+            String type = expressionResult.get("ef").toString();
+            if (!EXPRESSION_TYPES.contains(type)) {
+                metrics.rowSkipped("other factor type");
+                return null;
+            }
+            String condition = expressionResult.get("efv").toString();
+
+            JSONObject stat = expressionResult.getJSONObject("stat");
+            String expression = stat.get("expression").toString();
+            if (NA_EXPRESSION.equals(expression)) {
+                metrics.rowSkipped("no expression");
+                return null;
+            }
+            Double pValue = stat.getDouble("pvalue");
+            if (pValue > 1) {
+                metrics.rowSkipped("p-value over 1");
+                return null;
+            }
+
+            Double tStatistic = stat.getDouble("tstat");
+            tStatistic = round(tStatistic, 1); // round double to 1 digit
+
+            return new ExpressionRow(primaryIdentifier, type, condition, expression,
+                    pValue.toString(), tStatistic.toString());
+        } catch (JSONException e) {
+            LOG.warn("JSON object missing some values: " + expressionResult.toString(2), e);
+            metrics.rowSkipped("missing values");
             return null;
         }
+    }
+
+    // the gene is only created once it has an expression
+    private void storeExpression(ExpressionRow row) throws ObjectStoreException {
+        String geneRefId = getGeneId(row.primaryIdentifier);
+        Item expressionItem = createItem("AtlasExpression");
+        expressionItem.setReference("gene", geneRefId);
+        expressionItem.setAttribute("type", row.type);
+        expressionItem.setAttribute("condition", row.condition);
+        expressionItem.setAttribute("expression", row.expression);
+        expressionItem.setAttribute("pValue", row.pValue);
+        expressionItem.setAttribute("tStatistic", row.tStatistic);
+        store(expressionItem);
+    }
+
+    private String getGeneId(String resolvedIdentifier) throws ObjectStoreException {
         String geneId = genes.get(resolvedIdentifier);
         if (geneId == null) {
             Item gene = createItem("Gene");
@@ -169,20 +290,9 @@ public class ArrayexpressAtlasConverter extends BioDirectoryConverter
         return geneId;
     }
 
+    // called from worker threads, the cache is shared
     private String resolveGene(String identifier) {
-        String id = identifier;
-
-        if (rslv != null && rslv.hasTaxon(TAXON_ID)) {
-            int resCount = rslv.countResolutions(TAXON_ID, identifier);
-            if (resCount != 1) {
-                LOG.info("RESOLVER: failed to resolve gene to one identifier, ignoring gene: "
-                         + identifier + " count: " + resCount + " Human identifier: "
-                         + rslv.resolveId(TAXON_ID, identifier));
-                return null;
-            }
-            id = rslv.resolveId(TAXON_ID, identifier).iterator().next();
-        }
-        return id;
+        return resolutionCache.resolve(TAXON_ID, identifier);
     }
 
     private static double round(double value, int places) {
@@ -193,4 +303,91 @@ public class ArrayexpressAtlasConverter extends BioDirectoryConverter
         long tmp = Math.round(value * factor);
         return (double) tmp / factor;
     }
+
+    /**
+     * Reads the files in order, in chunks of genes of up to about chunkChars characters.  The
+     * probes of each gene are only copied, they are parsed on the worker threads.  Called from
+     * the pipeline's reader thread.
+     */
+    private class GeneChunkReader implements OrderedPipeline.Source<GeneChunk>
+    {
+        private final Iterator<File> files;
+        private BufferedReader reader = null;
+        private AtlasJsonReader jsonReader = null;
+
+        GeneChunkReader(List<File> files) {
+            this.files = files.iterator();
+        }
+
+        @Override
+        public synchronized GeneChunk next() throws IOException, JSONException {
+            while (true) {
+                if (reader == null) {
+                    if (!files.hasNext()) {
+                        return null;
+                    }
+                    File file = files.next();
+                    LOG.info("Reading file: " + file.getName());
+                    reader = new BufferedReader(metrics.countBytes(new FileReader(file)));
+                    jsonReader = new AtlasJsonReader(reader);
+                }
+                GeneChunk chunk = new GeneChunk();
+                int chars = 0;
+                String ensemblId = null;
+                while (chars < chunkChars && (ensemblId = jsonReader.nextGene()) != null) {
+                    String probes = jsonReader.copyGene();
+                    chunk.ensemblIds.add(ensemblId);
+                    chunk.probes.add(probes);
+                    chars += probes.length();
+                }
+                if (ensemblId == null) {
+                    close();
+                }
+                if (!chunk.ensemblIds.isEmpty()) {
+                    return chunk;
+                }
+            }
+        }
+
+        // also called by processFiles() if the pipeline fails
+        synchronized void close() throws IOException {
+            if (reader != null) {
+                reader.close();
+                reader = null;
+                jsonReader = null;
+            }
+        }
+    }
+
+    /**
+     * Some genes of one file, with the unparsed probes of each.
+     */
+    private static class GeneChunk
+    {
+        private final List<String> ensemblIds = new ArrayList<String>();
+        private final List<String> probes = new ArrayList<String>();
+    }
+
+    /**
+     * An AtlasExpression that passed the checks, waiting to be stored.
+     */
+    private static class ExpressionRow
+    {
+        private final String primaryIdentifier;
+        private final String type;
+        private final String condition;
+        private final String expression;
+        private final String pValue;
+        private final String tStatistic;
+
+        ExpressionRow(String primaryIdentifier, String type, String condition,
+                String expression, String pValue, String tStatistic) {
+            this.primaryIdentifier = primaryIdentifier;
+            this.type = type;
+            this.condition = condition;
+            this.expression = expression;
+            this.pValue = pValue;
+            this.tStatistic = tStatistic;
+        }
+    }
 }
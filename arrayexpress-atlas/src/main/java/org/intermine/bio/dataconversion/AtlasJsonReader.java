@@ -0,0 +1,374 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.Reader;
+import java.io.StringReader;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+/**
+ * Reads the gene expression statistics from an ArrayExpress Atlas JSON file without building
+ * the whole document.  The file is walked token by token down
+ * results / geneExpressionStatistics / arrayDesign / genes / probes and only the results for
+ * one probe are turned into a JSONArray at a time:
+ *
+ * <pre>
+ * {"results": [{"arrayDesign": "A-AFFY-33",
+ *               "geneExpressionStatistics": {"A-AFFY-33": {"genes": {
+ *                   "ENSG00000000003": {"203227_s_at": [{"ef": ..., "efv": ..., "stat": ...}]}
+ *               }}}}]}
+ * </pre>
+ *
+ * As for the converter before, only the first entry in results is read.  If a result has its
+ * geneExpressionStatistics before its arrayDesign the statistics have to be read whole.
+ *
+ * Besides read(), the genes can be walked with nextGene() and the probes of each copied as
+ * text with copyGene(), which only scans the characters, to be parsed elsewhere with
+ * readProbes().
+ *
+ * @author InterMine
+ */
+public class AtlasJsonReader
+{
+    private static final int START = 0;
+    private static final int BETWEEN_GENES = 1;
+    private static final int IN_GENE = 2;
+    private static final int END = 3;
+
+    private final JSONTokener tokener;
+    private int state = START;
+    // set if the statistics came before the array design and had to be read whole
+    private JSONObject bufferedGenes = null;
+    private String[] bufferedNames = null;
+    private int bufferedIndex = 0;
+
+    /**
+     * Called for each gene and then each of its probes, in file order.
+     */
+    public interface ProbeHandler
+    {
+        /**
+         * Called once for each gene before any of its probes.
+         *
+         * @param ensemblId the gene
+         * @return false to skip the probes of the gene without reading their results
+         * @throws Exception if the gene can't be processed
+         */
+        boolean gene(String ensemblId) throws Exception;
+
+        /**
+         * @param ensemblId the gene
+         * @param probeId the probe
+         * @param expressionResults the statistics for the probe
+         * @throws Exception if the results can't be processed
+         */
+        void probe(String ensemblId, String probeId, JSONArray expressionResults)
+            throws Exception;
+    }
+
+    /**
+     * Constructor
+     * @param reader the JSON file, should be buffered
+     */
+    public AtlasJsonReader(Reader reader) {
+        tokener = new JSONTokener(reader);
+    }
+
+    /**
+     * Read the file, passing each probe to the handler.
+     *
+     * @param handler receives the probes
+     * @throws Exception if the file isn't valid JSON or the handler fails
+     */
+    public void read(ProbeHandler handler) throws Exception {
+        String ensemblId;
+        while ((ensemblId = nextGene()) != null) {
+            if (!handler.gene(ensemblId)) {
+                continue;
+            }
+            if (bufferedGenes != null) {
+                readProbes(ensemblId, bufferedGenes.getJSONObject(ensemblId), handler);
+            } else {
+                readProbes(ensemblId, handler);
+            }
+            state = BETWEEN_GENES;
+        }
+    }
+
+    /**
+     * Move to the next gene, skipping what is left of the one before.  Its probes can then be
+     * copied with copyGene().
+     *
+     * @return the Ensembl id of the gene, or null if there are no more
+     * @throws JSONException if the file isn't valid JSON
+     */
+    public String nextGene() throws JSONException {
+        if (state == START) {
+            state = findGenes() ? BETWEEN_GENES : END;
+        }
+        if (state == END) {
+            return null;
+        }
+        if (bufferedGenes != null) {
+            if (bufferedIndex == bufferedNames.length) {
+                state = END;
+                return null;
+            }
+            state = IN_GENE;
+            return bufferedNames[bufferedIndex++];
+        }
+        if (state == IN_GENE) {
+            skipValue();
+        }
+        String ensemblId = nextKey();
+        if (ensemblId == null) {
+            state = END;
+            return null;
+        }
+        state = IN_GENE;
+        return ensemblId;
+    }
+
+    /**
+     * Copy the probes of the gene nextGene() last returned without parsing them, so they can be
+     * read later, eg. on another thread, with readProbes().
+     *
+     * @return the JSON object of the gene's probes
+     * @throws JSONException if the file isn't valid JSON
+     */
+    public String copyGene() throws JSONException {
+        if (state != IN_GENE) {
+            throw new IllegalStateException("No gene to copy, call nextGene() first");
+        }
+        state = BETWEEN_GENES;
+        if (bufferedGenes != null) {
+            return bufferedGenes.getJSONObject(bufferedNames[bufferedIndex - 1]).toString();
+        }
+        if (tokener.nextClean() != '{') {
+            throw tokener.syntaxError("Expected {");
+        }
+        StringBuilder sb = new StringBuilder("{");
+        int depth = 1;
+        while (depth > 0) {
+            char c = tokener.next();
+            if (c == 0) {
+                throw tokener.syntaxError("Unterminated value");
+            }
+            sb.append(c);
+            if (c == '"' || c == '\'') {
+                copyString(c, sb);
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Read the probes of a gene copied with copyGene(), in the order they were in the file.
+     *
+     * @param ensemblId the gene
+     * @param probes the copied probes
+     * @param handler receives the probes, gene() isn't called
+     * @throws Exception if the probes aren't valid JSON or the handler fails
+     */
+    public static void readProbes(String ensemblId, String probes, ProbeHandler handler)
+        throws Exception {
+        new AtlasJsonReader(new StringReader(probes)).readProbes(ensemblId, handler);
+    }
+
+    // the streamed probes of the current gene
+    private void readProbes(String ensemblId, ProbeHandler handler) throws Exception {
+        beginObject();
+        String probeId;
+        while ((probeId = nextKey()) != null) {
+            Object value = tokener.nextValue();
+            if (!(value instanceof JSONArray)) {
+                throw tokener.syntaxError("Expected results for probe " + probeId);
+            }
+            handler.probe(ensemblId, probeId, (JSONArray) value);
+        }
+    }
+
+    // the probes of a gene from statistics that had to be read whole
+    private static void readProbes(String ensemblId, JSONObject probes, ProbeHandler handler)
+        throws Exception {
+        String[] probeIds = JSONObject.getNames(probes);
+        if (probeIds == null) {
+            return;
+        }
+        for (String probeId : probeIds) {
+            handler.probe(ensemblId, probeId, probes.getJSONArray(probeId));
+        }
+    }
+
+    // move into the genes of the first result, true if there are any. the rest of the file
+    // has nothing else to read, so it isn't
+    private boolean findGenes() throws JSONException {
+        beginObject();
+        String key;
+        while ((key = nextKey()) != null) {
+            if (!"results".equals(key)) {
+                skipValue();
+                continue;
+            }
+            beginArray();
+            return hasNextElement() && findGenesInResult();
+        }
+        return false;
+    }
+
+    private boolean findGenesInResult() throws JSONException {
+        String arrayDesign = null;
+        JSONObject statistics = null;
+        beginObject();
+        String key;
+        while ((key = nextKey()) != null) {
+            if ("arrayDesign".equals(key)) {
+                arrayDesign = tokener.nextValue().toString();
+            } else if ("geneExpressionStatistics".equals(key) && arrayDesign != null) {
+                if (findGenesInStatistics(arrayDesign)) {
+                    return true;
+                }
+            } else if ("geneExpressionStatistics".equals(key)) {
+                // don't know which array design we want yet
+                statistics = (JSONObject) tokener.nextValue();
+            } else {
+                skipValue();
+            }
+        }
+        if (statistics != null && arrayDesign != null) {
+            bufferedGenes = statistics.getJSONObject(arrayDesign).getJSONObject("genes");
+            bufferedNames = JSONObject.getNames(bufferedGenes);
+            if (bufferedNames == null) {
+                bufferedNames = new String[0];
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // true once inside the genes of the array design, false if it has none
+    private boolean findGenesInStatistics(String arrayDesign) throws JSONException {
+        beginObject();
+        String design;
+        while ((design = nextKey()) != null) {
+            if (!arrayDesign.equals(design)) {
+                skipValue();
+                continue;
+            }
+            beginObject();
+            String key;
+            while ((key = nextKey()) != null) {
+                if ("genes".equals(key)) {
+                    beginObject();
+                    return true;
+                }
+                skipValue();
+            }
+        }
+        return false;
+    }
+
+    // copy the rest of a string, escapes included, up to and including the closing quote
+    private void copyString(char quote, StringBuilder sb) throws JSONException {
+        while (true) {
+            char c = tokener.next();
+            if (c == 0) {
+                throw tokener.syntaxError("Unterminated string");
+            }
+            sb.append(c);
+            if (c == '\\') {
+                sb.append(tokener.next());
+            } else if (c == quote) {
+                return;
+            }
+        }
+    }
+
+    private void beginObject() throws JSONException {
+        if (tokener.nextClean() != '{') {
+            throw tokener.syntaxError("Expected {");
+        }
+    }
+
+    private void beginArray() throws JSONException {
+        if (tokener.nextClean() != '[') {
+            throw tokener.syntaxError("Expected [");
+        }
+    }
+
+    // the next key of the current object, or null at the end of it
+    private String nextKey() throws JSONException {
+        char c = tokener.nextClean();
+        if (c == ',') {
+            c = tokener.nextClean();
+        }
+        if (c == '}') {
+            return null;
+        }
+        if (c != '"' && c != '\'') {
+            throw tokener.syntaxError("Expected a key");
+        }
+        String key = tokener.nextString(c);
+        if (tokener.nextClean() != ':') {
+            throw tokener.syntaxError("Expected : after " + key);
+        }
+        return key;
+    }
+
+    // true if there is another element in the current array
+    private boolean hasNextElement() throws JSONException {
+        char c = tokener.nextClean();
+        if (c == ',') {
+            c = tokener.nextClean();
+        }
+        if (c == ']') {
+            return false;
+        }
+        tokener.back();
+        return true;
+    }
+
+    // move past a value without building it
+    private void skipValue() throws JSONException {
+        char c = tokener.nextClean();
+        if (c == '"' || c == '\'') {
+            tokener.nextString(c);
+            return;
+        }
+        if (c != '{' && c != '[') {
+            tokener.back();
+            tokener.nextValue();
+            return;
+        }
+        int depth = 1;
+        while (depth > 0) {
+            c = tokener.next();
+            if (c == 0) {
+                throw tokener.syntaxError("Unterminated value");
+            }
+            if (c == '"' || c == '\'') {
+                tokener.nextString(c);
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Set;
+
+import org.intermine.dataconversion.ItemsTestCase;
+import org.intermine.dataconversion.MockItemWriter;
+import org.intermine.metadata.Model;
+import org.intermine.model.fulldata.Item;
+
+public class ArrayexpressAtlasConverterTest extends ItemsTestCase
+{
+    private static final int GENES = 500;
+    Model model = Model.getInstanceByName("genomic");
+
+    public ArrayexpressAtlasConverterTest(String arg) {
+        super(arg);
+    }
+
+    public void testProcess() throws Exception {
+        Set<org.intermine.xml.full.Item> items = convert("1");
+        //writeItemsFile(items, "arrayexpress-atlas-tgt-items.xml");
+
+        // 2 expressions from each file, the rest are filtered or don't resolve
+        assertEquals(2, countItems(items, "Gene"));
+        assertEquals(4, countItems(items, "AtlasExpression"));
+        assertEquals(readItemSet("ArrayexpressAtlasConverterTest_tgt.xml"), items);
+    }
+
+    public void testThreads() throws Exception {
+        assertEquals(convert("1"), convert("4"));
+    }
+
+    public void testChunks() throws Exception {
+        // a file of many chunks, every tenth gene doesn't resolve
+        File dataDir = File.createTempFile("arrayexpress", "");
+        dataDir.delete();
+        dataDir.mkdir();
+        File file = new File(dataDir, "E-TEST-3.json");
+        try {
+            Writer writer = new FileWriter(file);
+            writer.write("{\"results\": [{\"arrayDesign\": \"A-AFFY-33\", "
+                    + "\"geneExpressionStatistics\": {\"A-AFFY-33\": {\"genes\": {");
+            for (int i = 0; i < GENES; i++) {
+                writer.write((i > 0 ? ", " : "") + "\"ENSGT" + i + "\": {\"p" + i + "\": ["
+                        + "{\"ef\": \"organism_part\", \"efv\": \"tissue " + i + "\", "
+                        + "\"stat\": {\"expression\": \"UP\", \"pvalue\": 0.01, "
+                        + "\"tstat\": 2.5}}, {\"ef\": \"sex\", \"efv\": \"male\"}]}");
+            }
+            writer.write("}}}}]}");
+            writer.close();
+
+            Set<org.intermine.xml.full.Item> items = convert("4", dataDir, 1000);
+            assertEquals(GENES - GENES / 10, countItems(items, "Gene"));
+            assertEquals(GENES - GENES / 10, countItems(items, "AtlasExpression"));
+            assertEquals(convert("1", dataDir, 1000), items);
+        } finally {
+            file.delete();
+            dataDir.delete();
+        }
+    }
+
+    private Set<org.intermine.xml.full.Item> convert(String threads) throws Exception {
+        File tmp = new File(getClass().getClassLoader().getResource("E-TEST-1.json").toURI());
+        return convert(threads, tmp.getParentFile(), 1 << 20);
+    }
+
+    private Set<org.intermine.xml.full.Item> convert(String threads, File dataDir,
+            int chunkChars) throws Exception {
+        MockItemWriter itemWriter = new MockItemWriter(new HashMap<String, Item>());
+        ArrayexpressAtlasConverter converter = new ArrayexpressAtlasConverter(itemWriter, model);
+        converter.rslv = IdResolverService.getMockIdResolver("Gene");
+        converter.rslv.addResolverEntry("9606", "ENSG00000000003",
+                Collections.singleton("ENSG00000000003"));
+        converter.rslv.addResolverEntry("9606", "ENSG00000000005",
+                Collections.singleton("ENSG00000000005"));
+        for (int i = 0; i < GENES; i++) {
+            if (i % 10 != 0) {
+                converter.rslv.addResolverEntry("9606", "ENSGT" + i,
+                        Collections.singleton("ENSGT" + i));
+            }
+        }
+        converter.setArrayexpressThreads(threads);
+        converter.chunkChars = chunkChars;
+
+        converter.process(dataDir);
+        converter.close();
+        return itemWriter.getItems();
+    }
+
+    private static int countItems(Set<org.intermine.xml.full.Item> items, String className) {
+        int count = 0;
+        for (org.intermine.xml.full.Item item : items) {
+            if (className.equals(item.getClassName())) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,104 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.json.JSONArray;
+
+public class AtlasJsonReaderTest extends TestCase
+{
+    private static final String STATISTICS = "{\"A-AFFY-1\": {\"genes\": {\"ENSG1\": {"
+        + "\"p0\": [{\"ef\": \"other\"}]}}}, "
+        + "\"A-AFFY-33\": {\"genes\": {"
+        + "\"ENSG1\": {\"p1\": [{\"ef\": \"cell_type\", \"efv\": \"a \\\"b\\\" {c}\","
+        + " \"stat\": {\"expression\": \"UP\", \"pvalue\": 0.01, \"tstat\": 3.14}}],"
+        + " \"p2\": []},"
+        + " \"ENSG0\": {\"p4\": [{\"ef\": \"skipped\"}]},"
+        + " \"ENSG2\": {\"p3\": [{}, {}]}}}}";
+
+    public AtlasJsonReaderTest(String arg) {
+        super(arg);
+    }
+
+    public void testRead() throws Exception {
+        String json = "{\"totalResultsCount\": 1, \"results\": [{\"experimentInfo\": "
+            + "{\"accession\": \"E-1\", \"tags\": [\"]\", \"}\"]}, \"arrayDesign\": \"A-AFFY-33\", "
+            + "\"geneExpressionStatistics\": " + STATISTICS + "},"
+            + " {\"arrayDesign\": \"A-AFFY-1\"}]}";
+        List<String> probes = read(json);
+        assertEquals("[ENSG1/p1/1, ENSG1/p2/0, ENSG2/p3/2]", probes.toString());
+    }
+
+    public void testArrayDesignLast() throws Exception {
+        String json = "{\"results\": [{\"geneExpressionStatistics\": " + STATISTICS
+            + ", \"arrayDesign\": \"A-AFFY-33\"}]}";
+        List<String> probes = read(json);
+        assertEquals(3, probes.size());
+        assertTrue(probes.contains("ENSG1/p1/1"));
+        assertTrue(probes.contains("ENSG2/p3/2"));
+    }
+
+    public void testCopyGene() throws Exception {
+        String json = "{\"results\": [{\"arrayDesign\": \"A-AFFY-33\", "
+            + "\"geneExpressionStatistics\": " + STATISTICS + "}]}";
+        AtlasJsonReader reader = new AtlasJsonReader(new StringReader(json));
+        final List<String> probes = new ArrayList<String>();
+        AtlasJsonReader.ProbeHandler handler = new AtlasJsonReader.ProbeHandler() {
+            @Override
+            public boolean gene(String ensemblId) {
+                throw new IllegalStateException("not called for copied genes");
+            }
+
+            @Override
+            public void probe(String ensemblId, String probeId, JSONArray expressionResults) {
+                probes.add(ensemblId + "/" + probeId + "/" + expressionResults.length());
+            }
+        };
+        assertEquals("ENSG1", reader.nextGene());
+        // the quotes and braces in the string don't end the copy early
+        String copy = reader.copyGene();
+        assertTrue(copy.endsWith("\"p2\": []}"));
+        AtlasJsonReader.readProbes("ENSG1", copy, handler);
+        // a gene that isn't copied is skipped
+        assertEquals("ENSG0", reader.nextGene());
+        assertEquals("ENSG2", reader.nextGene());
+        AtlasJsonReader.readProbes("ENSG2", reader.copyGene(), handler);
+        assertNull(reader.nextGene());
+        assertNull(reader.nextGene());
+        assertEquals("[ENSG1/p1/1, ENSG1/p2/0, ENSG2/p3/2]", probes.toString());
+    }
+
+    public void testNoGenes() throws Exception {
+        AtlasJsonReader reader = new AtlasJsonReader(new StringReader("{\"results\": []}"));
+        assertNull(reader.nextGene());
+    }
+
+    private static List<String> read(String json) throws Exception {
+        final List<String> probes = new ArrayList<String>();
+        new AtlasJsonReader(new StringReader(json)).read(new AtlasJsonReader.ProbeHandler() {
+            @Override
+            public boolean gene(String ensemblId) {
+                return !"ENSG0".equals(ensemblId);
+            }
+
+            @Override
+            public void probe(String ensemblId, String probeId, JSONArray expressionResults) {
+                probes.add(ensemblId + "/" + probeId + "/" + expressionResults.length());
+            }
+        });
+        return probes;
+    }
+}
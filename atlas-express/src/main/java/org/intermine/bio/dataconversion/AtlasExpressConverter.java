@@ -34,10 +34,13 @@ public class AtlasExpressConverter extends BioFileConverter
     private static final String DATA_SOURCE_NAME = "ArrayExpress";
     private Map<String, String> genes = new HashMap<String, String>();
     protected IdResolver rslv;
+    private IdResolutionCache resolutionCache;
     private static final String TAXON_ID = "9606";
     private static final Logger LOG = Logger.getLogger(AtlasExpressConverter.class);
 
     private static final String EXPRESSION_TYPE = "FPKM value";
+    // attribute values with few distinct values, shared by the items
+    private StringPool attributeValues = new StringPool();
 
     /**
      * Constructor
@@ -87,8 +90,8 @@ public class AtlasExpressConverter extends BioFileConverter
                 String expression = line[i];
                 if (expression != null && !expression.isEmpty()) {
                     Item item = createItem("AtlasExpression");
-                    item.setAttribute("type", EXPRESSION_TYPE);
-                    item.setAttribute("condition", tissue);
+                    attributeValues.setAttribute(item, "type", EXPRESSION_TYPE);
+                    attributeValues.setAttribute(item, "condition", tissue);
                     item.setAttribute("expression", expression);
                     item.setReference("gene", geneId);
                     store(item);
@@ -116,19 +119,21 @@ public class AtlasExpressConverter extends BioFileConverter
     }
 
     private String resolveGene(String identifier) {
-        String id = identifier;
-
-        if (rslv != null && rslv.hasTaxon(TAXON_ID)) {
-            int resCount = rslv.countResolutions(TAXON_ID, identifier);
-            if (resCount != 1) {
-                LOG.info("RESOLVER: failed to resolve gene to one identifier, ignoring gene: "
-                         + identifier + " count: " + resCount + " Human identifier: "
-                         + rslv.resolveId(TAXON_ID, identifier));
-                return null;
-            }
-            id = rslv.resolveId(TAXON_ID, identifier).iterator().next();
+        if (resolutionCache == null) {
+            resolutionCache = new IdResolutionCache(rslv);
         }
-        return id;
+        return resolutionCache.resolve(TAXON_ID, identifier);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws Exception {
+        LOG.info("Attribute values: " + attributeValues);
+        if (resolutionCache != null) {
+            resolutionCache.logFailures();
+        }
+        super.close();
+    }
 }
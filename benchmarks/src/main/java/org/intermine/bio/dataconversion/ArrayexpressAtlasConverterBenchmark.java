@@ -0,0 +1,100 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark ArrayexpressAtlasConverter on experiment files with several probes per gene.  The
+ * rows counter is the number of probe results read.
+ *
+ * @author InterMine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ArrayexpressAtlasConverterBenchmark
+{
+    @Param("2000")
+    private int genes;
+    @Param("4")
+    private int probes;
+    @Param("8")
+    private int results;
+    @Param("4")
+    private int files;
+    @Param("1")
+    private String threads;
+
+    private File dataDir;
+    private IdResolver resolver;
+
+    /**
+     * Write the input files.
+     *
+     * @throws IOException if the files can't be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = BenchmarkSupport.createTempDir("arrayexpress-atlas");
+        ArrayexpressAtlasInputGenerator generator =
+            new ArrayexpressAtlasInputGenerator(GenerateInputs.DEFAULT_SEED);
+        generator.setFiles(files);
+        generator.setResultsPerProbe(results);
+        generator.write(dataDir, genes, probes);
+        resolver = BenchmarkSupport.getResolver(generator.getGeneIds());
+    }
+
+    /**
+     * Delete the input files.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkSupport.delete(dataDir);
+    }
+
+    /**
+     * Convert the files.
+     *
+     * @param counters rows and items processed
+     * @throws Exception if the conversion fails
+     */
+    @Benchmark
+    public void process(ConversionCounters counters) throws Exception {
+        NullItemWriter writer = new NullItemWriter();
+        ArrayexpressAtlasConverter converter =
+            new ArrayexpressAtlasConverter(writer, BenchmarkSupport.getModel());
+        converter.rslv = resolver;
+        converter.setArrayexpressThreads(threads);
+        converter.process(dataDir);
+        converter.close();
+        counters.add((long) files * genes * probes * results, writer);
+    }
+}
@@ -0,0 +1,104 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Writes ArrayExpress Atlas experiment .json files, each with several probes per gene and
+ * several results per probe.  About a third of the results are for experimental factors the
+ * converter doesn't load or have no expression, and a few genes don't resolve.
+ *
+ * @author InterMine
+ */
+public class ArrayexpressAtlasInputGenerator extends InputGenerator
+{
+    private static final String[] FACTORS = new String[] {
+        "organism_part", "disease_state", "cell_type", "cell_line", "sex"
+    };
+    private static final String[] VALUES = new String[] {
+        "liver", "lung", "kidney", "heart", "brain", "normal", "cancer", "B cell", "T cell",
+        "HeLa", "female", "male"
+    };
+    private static final String[] EXPRESSION = new String[] {"UP", "DOWN", "UP", "DOWN", "NA"};
+    private static final String ARRAY_DESIGN = "A-AFFY-33";
+
+    private int files = 1;
+    private int resultsPerProbe = 8;
+
+    /**
+     * Constructor
+     * @param seed seed for the random values
+     */
+    public ArrayexpressAtlasInputGenerator(long seed) {
+        super(seed);
+    }
+
+    /**
+     * @param files number of experiment files to write, each with all the genes
+     */
+    public void setFiles(int files) {
+        this.files = files;
+    }
+
+    /**
+     * @param resultsPerProbe number of results for each probe
+     */
+    public void setResultsPerProbe(int resultsPerProbe) {
+        this.resultsPerProbe = resultsPerProbe;
+    }
+
+    /**
+     * @param rows number of genes in each file
+     * @param columns number of probes for each gene
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(File dir, int rows, int columns) throws IOException {
+        boolean[] unresolved = new boolean[rows];
+        for (int i = 0; i < rows; i++) {
+            unresolved[i] = chance(5);
+            if (!unresolved[i]) {
+                addGeneId(ensemblGeneId(i));
+            }
+        }
+        for (int f = 0; f < files; f++) {
+            PrintWriter out = open(new File(dir, String.format("E-GEOD-%05d.json", f + 1)));
+            out.print("{\"totalResultsCount\": 1, \"results\": [{\"experimentInfo\": "
+                    + "{\"accession\": \"E-GEOD-" + (f + 1) + "\", \"description\": "
+                    + "\"Synthetic experiment\"}, \"arrayDesign\": \"" + ARRAY_DESIGN + "\",\n"
+                    + "\"geneExpressionStatistics\": {\"" + ARRAY_DESIGN + "\": {\"genes\": {\n");
+            for (int i = 0; i < rows; i++) {
+                out.print((i == 0 ? "" : ",\n") + "\"" + ensemblGeneId(i) + "\": {");
+                for (int p = 0; p < columns; p++) {
+                    out.print((p == 0 ? "" : ", ") + "\"" + (200000 + i * columns + p)
+                            + "_at\": [");
+                    for (int r = 0; r < resultsPerProbe; r++) {
+                        out.print((r == 0 ? "" : ", ") + result());
+                    }
+                    out.print("]");
+                }
+                out.print("}");
+            }
+            out.print("\n}}}}]}\n");
+            out.close();
+        }
+    }
+
+    private String result() {
+        double pValue = chance(2) ? 1.5 : getRandom().nextDouble() * 0.05;
+        return "{\"ef\": \"" + pick(FACTORS) + "\", \"efv\": \"" + pick(VALUES)
+            + "\", \"stat\": {\"expression\": \"" + pick(EXPRESSION) + "\", \"pvalue\": "
+            + pValue + ", \"tstat\": " + (getRandom().nextGaussian() * 5) + "}}";
+    }
+}
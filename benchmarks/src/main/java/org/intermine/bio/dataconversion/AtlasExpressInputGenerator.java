@@ -0,0 +1,70 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Writes an Expression Atlas E-MTAB-513 TSV: a matrix of genes by tissues of FPKM values.
+ * Some values are missing and a few genes don't resolve.
+ *
+ * @author InterMine
+ */
+public class AtlasExpressInputGenerator extends InputGenerator
+{
+    private static final String[] TISSUES = new String[] {
+        "adipose", "adrenal", "brain", "breast", "colon", "heart", "kidney", "leukocyte",
+        "liver", "lung", "lymph node", "ovary", "prostate", "skeletal muscle", "testis", "thyroid"
+    };
+
+    /**
+     * Constructor
+     * @param seed seed for the random values
+     */
+    public AtlasExpressInputGenerator(long seed) {
+        super(seed);
+    }
+
+    /**
+     * @param rows number of genes
+     * @param columns number of tissues
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(File dir, int rows, int columns) throws IOException {
+        PrintWriter out = open(new File(dir, "E-MTAB-513-query-results.tsv"));
+        out.print("Gene ID\tGene Name");
+        for (int t = 0; t < columns; t++) {
+            out.print("\t" + name(TISSUES, t));
+        }
+        out.print("\n");
+        for (int i = 0; i < rows; i++) {
+            String geneId = ensemblGeneId(i);
+            if (!chance(5)) {
+                addGeneId(geneId);
+            }
+            out.print(geneId + "\tGENE" + i);
+            for (int t = 0; t < columns; t++) {
+                if (chance(20)) {
+                    // no value, the converter skips these
+                    out.print("\t");
+                } else {
+                    out.print("\t" + (chance(50) ? String.valueOf(nextInt(200))
+                            : String.valueOf(nextInt(1000) / 10.0)));
+                }
+            }
+            out.print("\n");
+        }
+        out.close();
+    }
+}
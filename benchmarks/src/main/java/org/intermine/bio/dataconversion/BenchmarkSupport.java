@@ -0,0 +1,134 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.intermine.metadata.InterMineModelParser;
+import org.intermine.metadata.Model;
+import org.intermine.modelproduction.ModelMerger;
+
+/**
+ * Helpers shared by the converter benchmarks.
+ *
+ * @author InterMine
+ */
+public final class BenchmarkSupport
+{
+    /** Human taxon ID. */
+    public static final String HUMAN_TAXON = "9606";
+
+    // the sources benchmarked, each adds classes to the model
+    private static final String[] SOURCES = new String[] {
+        "arrayexpress-atlas", "atlas-express", "clinvar", "depmap-expression",
+        "depmap-sample-info", "disgenet-disease-associations", "gtex", "hgnc", "hpo-annotation",
+        "huge-gwas", "mgi-alleles", "protein-atlas", "protein-atlas-rna"
+    };
+    private static Model model = null;
+
+    private BenchmarkSupport() {
+        // don't
+    }
+
+    /**
+     * The genomic model with the additions of every benchmarked source merged in, as the
+     * model each source is built against only has its own additions.
+     *
+     * @return the merged model
+     * @throws Exception if an additions file can't be read or merged
+     */
+    public static synchronized Model getModel() throws Exception {
+        if (model == null) {
+            Model merged = Model.getInstanceByName("genomic");
+            InterMineModelParser parser = new InterMineModelParser();
+            for (String source : SOURCES) {
+                String additions = source + "_additions.xml";
+                InputStream in = BenchmarkSupport.class.getClassLoader()
+                    .getResourceAsStream(additions);
+                if (in == null) {
+                    throw new IllegalStateException("Couldn't find " + additions);
+                }
+                Reader reader = new InputStreamReader(in, "UTF-8");
+                try {
+                    merged = ModelMerger.mergeModel(merged,
+                            parser.generateClassDescriptors(reader, merged.getPackageName()));
+                } finally {
+                    reader.close();
+                }
+            }
+            model = merged;
+        }
+        return model;
+    }
+
+    /**
+     * A resolver that resolves gene identifiers generated by the benchmarks to themselves, so
+     * lookups do real work without needing a database.
+     *
+     * @param identifiers the identifiers to resolve
+     * @return the resolver
+     */
+    public static IdResolver getResolver(Iterable<String> identifiers) {
+        IdResolver resolver = IdResolverService.getMockIdResolver("Gene");
+        for (String identifier : identifiers) {
+            resolver.addResolverEntry(HUMAN_TAXON, identifier, Collections.singleton(identifier));
+        }
+        return resolver;
+    }
+
+    /**
+     * @param prefix prefix for the directory name
+     * @return a new empty temporary directory
+     * @throws IOException if the directory can't be created
+     */
+    public static File createTempDir(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix).toFile();
+    }
+
+    /**
+     * Delete a file, or a directory and everything in it.
+     *
+     * @param file the file or directory
+     */
+    public static void delete(File file) {
+        if (file == null) {
+            return;
+        }
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * The heap in use after a few garbage collections, to measure what a structure retains.
+     *
+     * @return bytes of heap in use
+     */
+    public static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
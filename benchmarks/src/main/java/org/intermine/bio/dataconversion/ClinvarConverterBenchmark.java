@@ -0,0 +1,98 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark ClinvarConverter on a variant_summary.txt file.  Each allele has a GRCh37 and a
+ * GRCh38 line, as in the real file.
+ *
+ * @author InterMine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ClinvarConverterBenchmark
+{
+    @Param("100000")
+    private int rows;
+    @Param("5000")
+    private int genes;
+
+    private File dataDir;
+    private File file;
+
+    /**
+     * Write the input file.
+     *
+     * @throws IOException if the file can't be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = BenchmarkSupport.createTempDir("clinvar");
+        ClinvarInputGenerator generator = new ClinvarInputGenerator(GenerateInputs.DEFAULT_SEED);
+        generator.setGenes(genes);
+        generator.write(dataDir, rows, 0);
+        file = new File(dataDir, "variant_summary.txt");
+    }
+
+    /**
+     * Delete the input file.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkSupport.delete(dataDir);
+    }
+
+    /**
+     * Convert the file.
+     *
+     * @param counters rows and items processed
+     * @throws Exception if the conversion fails
+     */
+    @Benchmark
+    public void process(ConversionCounters counters) throws Exception {
+        NullItemWriter writer = new NullItemWriter();
+        ClinvarConverter converter = new ClinvarConverter(writer, BenchmarkSupport.getModel());
+        converter.setCurrentFile(file);
+        Reader reader = new BufferedReader(new FileReader(file));
+        try {
+            converter.process(reader);
+        } finally {
+            reader.close();
+        }
+        converter.close();
+        counters.add(rows, writer);
+    }
+}
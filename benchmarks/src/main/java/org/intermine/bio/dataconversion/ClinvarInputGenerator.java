@@ -0,0 +1,97 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Writes ClinVar variant_summary.txt.  Each allele has a GRCh37 and a GRCh38 line, as in the
+ * real file.
+ *
+ * @author InterMine
+ */
+public class ClinvarInputGenerator extends InputGenerator
+{
+    private static final String[] TYPES = new String[] {
+        "single nucleotide variant", "single nucleotide variant", "single nucleotide variant",
+        "single nucleotide variant", "Deletion", "Duplication", "Indel", "copy number gain"
+    };
+    private static final String[] SIGNIFICANCE = new String[] {
+        "Pathogenic", "Likely pathogenic", "Benign", "Likely benign", "Uncertain significance",
+        "Conflicting interpretations of pathogenicity", "risk factor", "not provided"
+    };
+    private static final String[] BASES = new String[] {"A", "C", "G", "T"};
+
+    private int genes = -1;
+
+    /**
+     * Constructor
+     * @param seed seed for the random values
+     */
+    public ClinvarInputGenerator(long seed) {
+        super(seed);
+    }
+
+    /**
+     * @param genes number of distinct genes, defaults to one per 20 lines
+     */
+    public void setGenes(int genes) {
+        this.genes = genes;
+    }
+
+    /**
+     * @param rows number of lines
+     * @param columns ignored
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(File dir, int rows, int columns) throws IOException {
+        int geneCount = (genes < 0) ? Math.max(1, rows / 20) : genes;
+        PrintWriter out = open(new File(dir, "variant_summary.txt"));
+        out.print("#AlleleID\tType\tName\tGeneID\tGeneSymbol\tHGNC_ID\tClinicalSignificance"
+                + "\tClinSigSimple\tLastEvaluated\tRS# (dbSNP)\tnsv/esv (dbVar)\tRCVaccession"
+                + "\tPhenotypeIDS\tPhenotypeList\tOrigin\tOriginSimple\tAssembly"
+                + "\tChromosomeAccession\tChromosome\tStart\tStop\tReferenceAllele"
+                + "\tAlternateAllele\tCytogenetic\tReviewStatus\tNumberSubmitters\tGuidelines"
+                + "\tTestedInGTR\tOtherIDs\tSubmitterCategories\n");
+        for (int i = 0; i < rows / 2; i++) {
+            int gene = nextInt(geneCount);
+            // some alleles have no gene
+            String geneId = chance(3) ? "-1" : String.valueOf(1000 + gene);
+            String type = pick(TYPES);
+            String significance = pick(SIGNIFICANCE);
+            String phenotypes = chance(30) ? "MedGen:CN517202"
+                    : "MedGen:C" + (3000000 + nextInt(1000000)) + ",OMIM:"
+                    + (100000 + nextInt(520000))
+                    + (chance(50) ? ",Orphanet:ORPHA" + nextInt(600000) : "");
+            int chromosome = 1 + nextInt(22);
+            int start = 10000 + nextInt(240000000);
+            String ref = pick(BASES);
+            String alt = pick(BASES);
+            for (String assembly : new String[] {"GRCh37", "GRCh38"}) {
+                out.print((15000 + i) + "\t" + type + "\tNM_" + (100000 + gene) + ".3(GENE" + gene
+                        + "):c." + nextInt(5000) + ref + ">" + alt + "\t" + geneId + "\tGENE"
+                        + gene + "\tHGNC:" + (1 + gene) + "\t" + significance + "\t"
+                        + (significance.contains("athogenic") ? 1 : 0) + "\tMay 01, 2015\t"
+                        + (1000000 + i) + "\t-\tRCV" + String.format("%09d", i) + "\t"
+                        + phenotypes + "\tSome disease\tgermline\tgermline\t" + assembly
+                        + "\tNC_0000" + String.format("%02d", chromosome) + ".1"
+                        + ("GRCh37".equals(assembly) ? "0" : "1") + "\t" + chromosome + "\t"
+                        + start + "\t" + start + "\t" + ref + "\t" + alt + "\t" + chromosome
+                        + "q32\tcriteria provided, single submitter\t1\t-\tN"
+                        + "\tOMIM:608886.0001\t1\n");
+            }
+        }
+        out.close();
+    }
+}
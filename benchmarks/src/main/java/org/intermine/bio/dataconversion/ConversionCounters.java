@@ -0,0 +1,65 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Extra counters reported alongside each benchmark.  In throughput mode JMH reports them per
+ * second, i.e. as rows/sec and items/sec.
+ *
+ * @author InterMine
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class ConversionCounters
+{
+    private long rows;
+    private long items;
+
+    /**
+     * Reset the counters at the start of each iteration.
+     */
+    @Setup(Level.Iteration)
+    public void reset() {
+        rows = 0;
+        items = 0;
+    }
+
+    /**
+     * @return input rows read
+     */
+    public long rows() {
+        return rows;
+    }
+
+    /**
+     * @return items stored
+     */
+    public long items() {
+        return items;
+    }
+
+    /**
+     * Record one run of a converter.
+     *
+     * @param rowCount number of input rows the converter read
+     * @param writer the writer the converter stored to
+     */
+    public void add(long rowCount, NullItemWriter writer) {
+        rows += rowCount;
+        items += writer.getItemCount();
+    }
+}
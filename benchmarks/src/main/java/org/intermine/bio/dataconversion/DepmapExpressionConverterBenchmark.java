@@ -0,0 +1,96 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark DepmapExpressionConverter on a CCLE_expression.csv matrix of cell lines by genes.
+ *
+ * @author InterMine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DepmapExpressionConverterBenchmark
+{
+    @Param("200")
+    private int cellLines;
+    @Param("2000")
+    private int genes;
+    @Param("false")
+    private String asyncStore;
+    @Param("0")
+    private long storeNanos;
+
+    private File dataDir;
+    private IdResolver resolver;
+
+    /**
+     * Write the input file.
+     *
+     * @throws IOException if the file can't be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = BenchmarkSupport.createTempDir("depmap");
+        DepmapExpressionInputGenerator generator =
+            new DepmapExpressionInputGenerator(GenerateInputs.DEFAULT_SEED);
+        generator.write(dataDir, cellLines, genes);
+        resolver = BenchmarkSupport.getResolver(generator.getGeneIds());
+    }
+
+    /**
+     * Delete the input file.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkSupport.delete(dataDir);
+    }
+
+    /**
+     * Convert the file.
+     *
+     * @param counters rows and items processed
+     * @throws Exception if the conversion fails
+     */
+    @Benchmark
+    public void process(ConversionCounters counters) throws Exception {
+        NullItemWriter writer = new NullItemWriter();
+        writer.setStoreNanos(storeNanos);
+        DepmapExpressionConverter converter = new DepmapExpressionConverter(writer,
+                BenchmarkSupport.getModel());
+        converter.rslv = resolver;
+        converter.setDepmapAsyncStore(asyncStore);
+        converter.process(dataDir);
+        converter.close();
+        counters.add(cellLines, writer);
+    }
+}
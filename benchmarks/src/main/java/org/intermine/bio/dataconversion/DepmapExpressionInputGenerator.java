@@ -0,0 +1,59 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Writes DepMap CCLE_expression.csv: a matrix of cell lines by genes of log2(TPM + 1) values.
+ *
+ * @author InterMine
+ */
+public class DepmapExpressionInputGenerator extends InputGenerator
+{
+    /**
+     * Constructor
+     * @param seed seed for the random values
+     */
+    public DepmapExpressionInputGenerator(long seed) {
+        super(seed);
+    }
+
+    /**
+     * @param rows number of cell lines
+     * @param columns number of genes
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(File dir, int rows, int columns) throws IOException {
+        PrintWriter out = open(new File(dir, "CCLE_expression.csv"));
+        for (int i = 0; i < columns; i++) {
+            addGeneId("GENE" + i);
+            out.print(",GENE" + i + " (" + (1000 + i) + ")");
+        }
+        out.print("\n");
+        for (int c = 0; c < rows; c++) {
+            out.print(String.format("ACH-%06d", c));
+            for (int i = 0; i < columns; i++) {
+                if (chance(25)) {
+                    // not expressed, the converter skips these
+                    out.print(",0.0");
+                } else {
+                    out.print("," + (1 + nextInt(12000000)) / 1000000.0);
+                }
+            }
+            out.print("\n");
+        }
+        out.close();
+    }
+}
@@ -0,0 +1,85 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark DepmapSampleInfoConverter on a sample_info.csv file.  The real file only has a
+ * couple of thousand cell lines, so the default is larger to give a measurable run.
+ *
+ * @author InterMine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DepmapSampleInfoConverterBenchmark
+{
+    @Param("20000")
+    private int cellLines;
+
+    private File dataDir;
+
+    /**
+     * Write the input file.
+     *
+     * @throws IOException if the file can't be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = BenchmarkSupport.createTempDir("depmap-sample-info");
+        new DepmapSampleInfoInputGenerator(GenerateInputs.DEFAULT_SEED).write(dataDir,
+                cellLines, 0);
+    }
+
+    /**
+     * Delete the input file.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkSupport.delete(dataDir);
+    }
+
+    /**
+     * Convert the file.
+     *
+     * @param counters rows and items processed
+     * @throws Exception if the conversion fails
+     */
+    @Benchmark
+    public void process(ConversionCounters counters) throws Exception {
+        NullItemWriter writer = new NullItemWriter();
+        DepmapSampleInfoConverter converter = new DepmapSampleInfoConverter(writer,
+                BenchmarkSupport.getModel());
+        converter.process(dataDir);
+        converter.close();
+        counters.add(cellLines, writer);
+    }
+}
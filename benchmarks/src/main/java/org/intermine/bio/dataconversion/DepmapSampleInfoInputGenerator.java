@@ -0,0 +1,82 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Writes DepMap sample_info.csv.  Subtypes are quoted as they contain commas, and a few
+ * cell lines have a quoted comment that spans lines, as in the real file.
+ *
+ * @author InterMine
+ */
+public class DepmapSampleInfoInputGenerator extends InputGenerator
+{
+    private static final String[] LINEAGES = new String[] {
+        "ovary", "blood", "lung", "breast", "skin", "central_nervous_system", "colorectal",
+        "pancreas", "kidney", "liver", "bone", "lymphocyte"
+    };
+    private static final String[] DISEASES = new String[] {
+        "Ovarian Cancer", "Leukemia", "Lung Cancer", "Breast Cancer", "Skin Cancer",
+        "Brain Cancer", "Colon/Colorectal Cancer", "Pancreatic Cancer", "Kidney Cancer",
+        "Liver Cancer", "Bone Cancer", "Lymphoma"
+    };
+    private static final String[] SEXES = new String[] {"Female", "Male", "Unknown", ""};
+    private static final String[] SITES = new String[] {"Primary", "Metastasis", ""};
+
+    /**
+     * Constructor
+     * @param seed seed for the random values
+     */
+    public DepmapSampleInfoInputGenerator(long seed) {
+        super(seed);
+    }
+
+    /**
+     * @param rows number of cell lines
+     * @param columns ignored
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(File dir, int rows, int columns) throws IOException {
+        PrintWriter out = open(new File(dir, "sample_info.csv"));
+        out.print("DepMap_ID,cell_line_name,stripped_cell_line_name,CCLE_Name,alias,COSMICID,sex"
+                + ",source,Achilles_n_replicates,cell_line_NNMD,culture_type,culture_medium"
+                + ",cas9_activity,RRID,WTSI_Master_Cell_ID,sample_collection_site"
+                + ",primary_or_metastasis,primary_disease,Subtype,age,Sanger_Model_ID"
+                + ",depmap_public_comments,lineage,lineage_subtype,lineage_sub_subtype"
+                + ",lineage_molecular_subtype\n");
+        for (int i = 0; i < rows; i++) {
+            int lineage = nextInt(LINEAGES.length);
+            String name = "CL" + i;
+            // some cell lines have no lineage, the converter skips these
+            String lineageName = chance(2) ? "" : LINEAGES[lineage];
+            String comment = "";
+            if (chance(2)) {
+                comment = "\"Comment on " + name + ",\nwhich spans lines\"";
+            } else if (chance(10)) {
+                comment = "\"Comment on " + name + ", with a comma\"";
+            }
+            out.print(String.format("ACH-%06d", i) + "," + name + "," + name + "," + name + "_"
+                    + LINEAGES[lineage].toUpperCase() + ",," + (900000 + i) + ".0,"
+                    + pick(SEXES) + ",ATCC,,,,,,CVCL_" + String.format("%04d", i) + ","
+                    + nextInt(3000) + ".0," + LINEAGES[lineage] + "," + pick(SITES) + ","
+                    + DISEASES[lineage] + ",\"Adenocarcinoma, subtype " + nextInt(20) + "\","
+                    + (chance(20) ? "Unknown" : String.valueOf(20 + nextInt(60))) + ",SIDM"
+                    + String.format("%05d", i) + "," + comment + "," + lineageName + ","
+                    + LINEAGES[lineage] + "_subtype" + nextInt(5) + ","
+                    + (chance(50) ? "sub_subtype" + nextInt(5) : "") + ",\n");
+        }
+        out.close();
+    }
+}
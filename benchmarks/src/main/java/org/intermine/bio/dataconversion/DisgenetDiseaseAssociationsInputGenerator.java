@@ -0,0 +1,70 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Writes DisGeNET curated_gene_disease_associations.tsv, each line a gene and disease pair.
+ *
+ * @author InterMine
+ */
+public class DisgenetDiseaseAssociationsInputGenerator extends InputGenerator
+{
+    private static final String[] DISEASE_TYPES = new String[] {
+        "disease", "disease", "disease", "phenotype", "group"
+    };
+    private static final String[] SEMANTIC_TYPES = new String[] {
+        "Disease or Syndrome", "Neoplastic Process", "Congenital Abnormality",
+        "Mental or Behavioral Dysfunction", "Finding"
+    };
+    private static final String[] SOURCES = new String[] {
+        "CTD_human", "UNIPROT", "CLINGEN", "GENOMICS_ENGLAND", "ORPHANET", "PSYGENET"
+    };
+
+    /**
+     * Constructor
+     * @param seed seed for the random values
+     */
+    public DisgenetDiseaseAssociationsInputGenerator(long seed) {
+        super(seed);
+    }
+
+    /**
+     * @param rows number of associations
+     * @param columns ignored
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(File dir, int rows, int columns) throws IOException {
+        // the real file has about one gene per 10 lines and one disease per 8
+        int genes = Math.max(1, rows / 10);
+        int diseases = Math.max(1, rows / 8);
+        PrintWriter out = open(new File(dir, "curated_gene_disease_associations.tsv"));
+        out.print("geneId\tgeneSymbol\tDSI\tDPI\tdiseaseId\tdiseaseName\tdiseaseType"
+                + "\tdiseaseClass\tdiseaseSemanticType\tscore\tEI\tYearInitial\tYearFinal"
+                + "\tNofPmids\tNofSnps\tsource\n");
+        for (int i = 0; i < rows; i++) {
+            int gene = nextInt(genes);
+            int disease = nextInt(diseases);
+            int year = 1990 + nextInt(30);
+            out.print((1 + gene) + "\tGENE" + gene + "\t0." + (300 + nextInt(700)) + "\t0."
+                    + (100 + nextInt(900)) + "\tC" + String.format("%07d", disease)
+                    + "\tDisease " + disease + "\t" + DISEASE_TYPES[disease % 5] + "\tC"
+                    + String.format("%02d", nextInt(25)) + "\t" + SEMANTIC_TYPES[disease % 5]
+                    + "\t0." + nextInt(1000) + "\t1\t" + year + "\t" + (year + nextInt(5))
+                    + "\t" + nextInt(20) + "\t0\t" + pick(SOURCES) + "\n");
+        }
+        out.close();
+    }
+}
@@ -0,0 +1,111 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark sorting MGI_PhenoGenoMP.rpt by genotype name as MgiAllelesConverter does, at ten
+ * times the lines of MgiAllelesConverterBenchmark, with the lines grouped by genotype as in
+ * the real file or shuffled.  The default memory limit is small enough for the file to be
+ * sorted in several runs on disk.
+ *
+ * @author InterMine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx1g")
+public class ExternalSorterBenchmark
+{
+    @Param("1000000")
+    private int rows;
+    @Param({"false", "true"})
+    private boolean shuffled;
+    @Param("64")
+    private int maxMemoryMb;
+
+    private File dataDir;
+    private File genotypeFile;
+
+    /**
+     * Write the input files.
+     *
+     * @throws IOException if the files can't be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = BenchmarkSupport.createTempDir("mgi-sort");
+        MgiAllelesInputGenerator generator =
+            new MgiAllelesInputGenerator(GenerateInputs.DEFAULT_SEED);
+        generator.setShuffled(shuffled);
+        generator.write(dataDir, rows, 0);
+        genotypeFile = new File(dataDir, "MGI_PhenoGenoMP.rpt");
+    }
+
+    /**
+     * Delete the input files.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkSupport.delete(dataDir);
+    }
+
+    /**
+     * Sort the file and read the sorted lines.
+     *
+     * @return number of characters read
+     * @throws IOException if the file can't be sorted
+     */
+    @Benchmark
+    public long sort() throws IOException {
+        ExternalSorter sorter = new ExternalSorter(0);
+        sorter.setMaxMemory(maxMemoryMb * 1024L * 1024L);
+        Reader input = new BufferedReader(new FileReader(genotypeFile));
+        long count = 0;
+        try {
+            Reader sorted = sorter.sort(input);
+            try {
+                char[] buffer = new char[8192];
+                int n;
+                while ((n = sorted.read(buffer, 0, buffer.length)) >= 0) {
+                    count += n;
+                }
+            } finally {
+                sorted.close();
+            }
+        } finally {
+            input.close();
+        }
+        return count;
+    }
+}
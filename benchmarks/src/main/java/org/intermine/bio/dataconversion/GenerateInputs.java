@@ -0,0 +1,92 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Command line entry point for the input generators, e.g. to write a production sized ClinVar
+ * file for a soak test:
+ *
+ * <pre>
+ * GenerateInputs clinvar /tmp/clinvar 2000000
+ * </pre>
+ *
+ * Arguments are the source, the directory to write to, rows, and optionally columns and seed.
+ *
+ * @author InterMine
+ */
+public final class GenerateInputs
+{
+    private static final Logger LOG = Logger.getLogger(GenerateInputs.class);
+    /** Seed used if none is given. */
+    public static final long DEFAULT_SEED = 42;
+
+    private GenerateInputs() {
+        // don't
+    }
+
+    /**
+     * @param source name of a source, e.g. clinvar
+     * @param seed seed for the random values
+     * @return the generator for the source
+     */
+    public static InputGenerator getGenerator(String source, long seed) {
+        Map<String, InputGenerator> generators = new LinkedHashMap<String, InputGenerator>();
+        generators.put("arrayexpress-atlas", new ArrayexpressAtlasInputGenerator(seed));
+        generators.put("atlas-express", new AtlasExpressInputGenerator(seed));
+        generators.put("clinvar", new ClinvarInputGenerator(seed));
+        generators.put("depmap-expression", new DepmapExpressionInputGenerator(seed));
+        generators.put("depmap-sample-info", new DepmapSampleInfoInputGenerator(seed));
+        generators.put("disgenet-disease-associations",
+                new DisgenetDiseaseAssociationsInputGenerator(seed));
+        generators.put("gtex", new GtexInputGenerator(seed));
+        generators.put("hgnc", new HgncInputGenerator(seed));
+        generators.put("hpo-annotation", new HpoInputGenerator(seed));
+        generators.put("huge-gwas", new HugeGwasInputGenerator(seed));
+        generators.put("mgi-alleles", new MgiAllelesInputGenerator(seed));
+        generators.put("protein-atlas", new ProteinAtlasInputGenerator(seed));
+        generators.put("protein-atlas-rna", new ProteinAtlasRNAInputGenerator(seed));
+        InputGenerator generator = generators.get(source);
+        if (generator == null) {
+            throw new IllegalArgumentException("Unknown source: " + source + ", expected one of "
+                    + generators.keySet());
+        }
+        return generator;
+    }
+
+    /**
+     * @param args source, directory, rows, [columns], [seed]
+     * @throws Exception if the files can't be written
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            throw new IllegalArgumentException("Usage: GenerateInputs source dir rows [columns]"
+                    + " [seed]");
+        }
+        String source = args[0];
+        File dir = new File(args[1]);
+        int rows = Integer.parseInt(args[2]);
+        int columns = (args.length > 3) ? Integer.parseInt(args[3]) : 50;
+        long seed = (args.length > 4) ? Long.parseLong(args[4]) : DEFAULT_SEED;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalArgumentException("Couldn't create directory " + dir);
+        }
+        long start = System.currentTimeMillis();
+        getGenerator(source, seed).write(dir, rows, columns);
+        LOG.info("Wrote " + source + " input to " + dir + " in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+}
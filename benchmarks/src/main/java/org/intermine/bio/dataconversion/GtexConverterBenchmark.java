@@ -0,0 +1,100 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark GtexConverter on a median TPM file and a set of tissue eQTL files.
+ *
+ * @author InterMine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GtexConverterBenchmark
+{
+    @Param("1000")
+    private int genes;
+    @Param("4")
+    private int tissues;
+    @Param("10000")
+    private int rows;
+    @Param("1")
+    private String threads;
+    @Param("false")
+    private String asyncStore;
+    @Param("0")
+    private long storeNanos;
+
+    private File dataDir;
+    private IdResolver resolver;
+
+    /**
+     * Write the input files.
+     *
+     * @throws IOException if the files can't be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = BenchmarkSupport.createTempDir("gtex");
+        GtexInputGenerator generator = new GtexInputGenerator(GenerateInputs.DEFAULT_SEED);
+        generator.setEqtlsPerTissue(rows);
+        generator.write(dataDir, genes, tissues);
+        resolver = BenchmarkSupport.getResolver(generator.getGeneIds());
+    }
+
+    /**
+     * Delete the input files.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkSupport.delete(dataDir);
+    }
+
+    /**
+     * Convert the files.
+     *
+     * @param counters rows and items processed
+     * @throws Exception if the conversion fails
+     */
+    @Benchmark
+    public void process(ConversionCounters counters) throws Exception {
+        NullItemWriter writer = new NullItemWriter();
+        writer.setStoreNanos(storeNanos);
+        GtexConverter converter = new GtexConverter(writer, BenchmarkSupport.getModel());
+        converter.rslv = resolver;
+        converter.setGtexAsyncStore(asyncStore);
+        converter.setGtexThreads(threads);
+        converter.process(dataDir);
+        converter.close();
+        counters.add(genes + (long) tissues * rows, writer);
+    }
+}
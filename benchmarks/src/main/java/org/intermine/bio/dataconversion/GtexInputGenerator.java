@@ -0,0 +1,117 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Writes GTEx input: a gene_median_tpm.gct matrix of genes by tissues and a
+ * signif_variant_gene_pairs.txt file for each tissue.
+ *
+ * @author InterMine
+ */
+public class GtexInputGenerator extends InputGenerator
+{
+    private static final String[] TISSUES = new String[] {
+        "Adipose - Subcutaneous", "Adipose - Visceral (Omentum)", "Adrenal Gland",
+        "Artery - Aorta", "Artery - Coronary", "Artery - Tibial", "Bladder", "Brain - Amygdala",
+        "Brain - Cerebellum", "Brain - Cortex", "Brain - Hippocampus", "Breast - Mammary Tissue",
+        "Colon - Sigmoid", "Colon - Transverse", "Esophagus - Mucosa", "Heart - Left Ventricle",
+        "Kidney - Cortex", "Liver", "Lung", "Muscle - Skeletal", "Nerve - Tibial", "Ovary",
+        "Pancreas", "Pituitary", "Prostate", "Skin - Sun Exposed (Lower leg)",
+        "Small Intestine - Terminal Ileum", "Spleen", "Stomach", "Testis", "Thyroid", "Uterus",
+        "Vagina", "Whole Blood"
+    };
+    private static final String[] BASES = new String[] {"A", "C", "G", "T"};
+
+    private int eqtls = -1;
+
+    /**
+     * Constructor
+     * @param seed seed for the random values
+     */
+    public GtexInputGenerator(long seed) {
+        super(seed);
+    }
+
+    /**
+     * @param eqtls number of lines in each tissue file, defaults to twice the number of genes
+     */
+    public void setEqtlsPerTissue(int eqtls) {
+        this.eqtls = eqtls;
+    }
+
+    /**
+     * @param rows number of genes
+     * @param columns number of tissues
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(File dir, int rows, int columns) throws IOException {
+        for (int i = 0; i < rows; i++) {
+            addGeneId(ensemblGeneId(i));
+        }
+        writeGeneMedianTpm(new File(dir, "GTEx_Analysis_2016-01-15_v7_RNASeQCv1.1.8"
+                + "_gene_median_tpm.gct"), rows, columns);
+        int perTissue = (eqtls < 0) ? 2 * rows : eqtls;
+        for (int t = 0; t < columns; t++) {
+            String fileName = name(TISSUES, t).replace(" - ", "_").replaceAll("[()]", "")
+                    .replace(' ', '_');
+            writeSignifVariantGenePairs(new File(dir, fileName
+                    + ".v7.signif_variant_gene_pairs.txt"), perTissue, rows);
+        }
+    }
+
+    private void writeGeneMedianTpm(File file, int genes, int tissues) throws IOException {
+        PrintWriter out = open(file);
+        out.print("#1.2\n" + genes + "\t" + tissues + "\ngene_id\tDescription");
+        for (int t = 0; t < tissues; t++) {
+            out.print("\t" + name(TISSUES, t));
+        }
+        out.print("\n");
+        for (int i = 0; i < genes; i++) {
+            out.print(ensemblGeneId(i) + "." + (1 + nextInt(9)) + "\tGENE" + i);
+            for (int t = 0; t < tissues; t++) {
+                // roughly log-normal, with plenty of genes not expressed
+                double tpm = chance(20) ? 0 : Math.exp(getRandom().nextGaussian() * 2);
+                out.print("\t" + (Math.round(tpm * 100000) / 100000.0));
+            }
+            out.print("\n");
+        }
+        out.close();
+    }
+
+    private void writeSignifVariantGenePairs(File file, int rows, int genes) throws IOException {
+        PrintWriter out = open(file);
+        out.print("variant_id\tgene_id\ttss_distance\tma_samples\tma_count\tmaf"
+                + "\tpval_nominal\tslope\tslope_se\tpval_nominal_threshold"
+                + "\tmin_pval_nominal\tpval_beta\n");
+        for (int i = 0; i < rows; i++) {
+            int gene = nextInt(genes);
+            String ref = pick(BASES);
+            String alt = pick(BASES);
+            int samples = 1 + nextInt(200);
+            out.print((1 + nextInt(22)) + "_" + (10000 + nextInt(240000000)) + "_" + ref + "_"
+                    + alt + "_b37\t" + ensemblGeneId(gene) + "." + (1 + nextInt(9)) + "\t"
+                    + (nextInt(2000001) - 1000000) + "\t" + samples + "\t" + (samples + 3)
+                    + "\t" + (samples / 612.0) + "\t" + pValue() + "\t"
+                    + (getRandom().nextGaussian()) + "\t" + (getRandom().nextDouble()) + "\t"
+                    + pValue() + "\t" + pValue() + "\t" + pValue() + "\n");
+        }
+        out.close();
+    }
+
+    private String pValue() {
+        return (1 + nextInt(9)) + "." + nextInt(100000) + "e-" + (2 + nextInt(30));
+    }
+}
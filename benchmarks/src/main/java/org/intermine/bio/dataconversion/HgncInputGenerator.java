@@ -0,0 +1,81 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Writes HGNC hgnc_complete_set.txt, with the columns in the order of the real file.  A few
+ * genes have no NCBI identifier, which the converter skips.
+ *
+ * @author InterMine
+ */
+public class HgncInputGenerator extends InputGenerator
+{
+    private static final String[] LOCUS_TYPES = new String[] {
+        "gene with protein product", "gene with protein product", "RNA, long non-coding",
+        "pseudogene", "RNA, micro"
+    };
+
+    /**
+     * Constructor
+     * @param seed seed for the random values
+     */
+    public HgncInputGenerator(long seed) {
+        super(seed);
+    }
+
+    /**
+     * @param rows number of genes
+     * @param columns ignored
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(File dir, int rows, int columns) throws IOException {
+        PrintWriter out = open(new File(dir, "hgnc_complete_set.txt"));
+        out.print("hgnc_id\tsymbol\tname\tlocus_group\tlocus_type\tstatus\tlocation"
+                + "\tlocation_sortable\talias_symbol\talias_name\tprev_symbol\tprev_name"
+                + "\tgene_group\tgene_group_id\tdate_approved_reserved\tdate_symbol_changed"
+                + "\tdate_name_changed\tdate_modified\tentrez_id\tensembl_gene_id\tvega_id"
+                + "\tucsc_id\tena\trefseq_accession\tccds_id\tuniprot_ids\n");
+        for (int i = 0; i < rows; i++) {
+            String location = (1 + nextInt(22)) + "q" + (11 + nextInt(30)) + "." + nextInt(4);
+            // some genes have no NCBI identifier
+            String entrezId = chance(5) ? "" : String.valueOf(1 + i);
+            out.print("HGNC:" + (5 + i) + "\tGENE" + i + "\tgene " + i + " protein\t"
+                    + "protein-coding gene\t" + pick(LOCUS_TYPES) + "\tApproved\t" + location
+                    + "\t" + location + "\t" + synonyms("ALIAS" + i + "-", 3) + "\t"
+                    + (chance(20) ? "alias name " + i : "") + "\t"
+                    + synonyms("PREV" + i + "-", 2) + "\t"
+                    + (chance(20) ? "\"previous name " + i + "|old name " + i + "\"" : "")
+                    + "\tGene group " + nextInt(500) + "\t" + nextInt(2000) + "\t1989-06-30"
+                    + "\t\t\t2020-11-09\t" + entrezId + "\t" + ensemblGeneId(i)
+                    + "\tOTTHUMG" + String.format("%011d", i) + "\tuc" + String.format("%06d", i)
+                    + ".1\t" + (chance(50) ? "BC" + (100000 + i) : "") + "\tNM_"
+                    + (100000 + i) + "\tCCDS" + (1000 + i) + "\tP" + (10000 + i) + "\n");
+        }
+        out.close();
+    }
+
+    // none or more synonyms separated by |, as in the alias and previous symbol columns
+    private String synonyms(String prefix, int max) {
+        StringBuilder sb = new StringBuilder();
+        for (int s = nextInt(max + 1); s > 0; s--) {
+            if (sb.length() > 0) {
+                sb.append('|');
+            }
+            sb.append(prefix).append(s);
+        }
+        return sb.toString();
+    }
+}
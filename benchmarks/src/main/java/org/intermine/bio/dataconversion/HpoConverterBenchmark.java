@@ -0,0 +1,90 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark HpoConverter on the OMIM titles, gene and annotation files.
+ *
+ * @author InterMine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HpoConverterBenchmark
+{
+    @Param("4000")
+    private int omimEntries;
+    @Param("100000")
+    private int rows;
+    @Param("1")
+    private String threads;
+
+    private File dataDir;
+
+    /**
+     * Write the input files.
+     *
+     * @throws IOException if the files can't be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = BenchmarkSupport.createTempDir("hpo");
+        HpoInputGenerator generator = new HpoInputGenerator(GenerateInputs.DEFAULT_SEED);
+        generator.setOmimEntries(omimEntries);
+        generator.write(dataDir, rows, 0);
+    }
+
+    /**
+     * Delete the input files.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkSupport.delete(dataDir);
+    }
+
+    /**
+     * Convert the files.
+     *
+     * @param counters rows and items processed
+     * @throws Exception if the conversion fails
+     */
+    @Benchmark
+    public void process(ConversionCounters counters) throws Exception {
+        NullItemWriter writer = new NullItemWriter();
+        HpoConverter converter = new HpoConverter(writer, BenchmarkSupport.getModel());
+        converter.setHpoDiseaseFile(new File(dataDir, HpoInputGenerator.OMIM_FILE).getPath());
+        converter.setHpoThreads(threads);
+        converter.process(dataDir);
+        converter.close();
+        counters.add(omimEntries + 2L * rows + rows / 20, writer);
+    }
+}
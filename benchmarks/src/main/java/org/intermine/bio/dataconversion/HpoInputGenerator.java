@@ -0,0 +1,120 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Writes HPO annotation input: phenotype_annotation.tab, phenotype_annotation_negated.tab,
+ * genes_to_phenotype.txt and the OMIM mimTitles.txt file that lists which OMIM entries are
+ * diseases.
+ *
+ * @author InterMine
+ */
+public class HpoInputGenerator extends InputGenerator
+{
+    /** Name of the OMIM file, set it with HpoConverter.setHpoDiseaseFile(). */
+    public static final String OMIM_FILE = "mimTitles.txt";
+
+    private static final String[] EVIDENCE = new String[] {"IEA", "IEA", "TAS", "PCS"};
+    private static final String[] FREQUENCY = new String[] {
+        "", "", "HP:0040283", "HP:0040281", "HP:0040282", "HP:0040284", "7/13"
+    };
+    // an HPO release has roughly this many terms
+    private static final int TERMS = 15000;
+
+    private int omimEntries = -1;
+
+    /**
+     * Constructor
+     * @param seed seed for the random values
+     */
+    public HpoInputGenerator(long seed) {
+        super(seed);
+    }
+
+    /**
+     * @param omimEntries number of OMIM entries, defaults to one per 20 annotation lines
+     */
+    public void setOmimEntries(int omimEntries) {
+        this.omimEntries = omimEntries;
+    }
+
+    /**
+     * @param rows number of lines in the annotation and gene files, the negated file has one
+     * for every twenty of those
+     * @param columns ignored
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(File dir, int rows, int columns) throws IOException {
+        int mims = (omimEntries < 0) ? Math.max(1, rows / 20) : omimEntries;
+
+        PrintWriter out = open(new File(dir, OMIM_FILE));
+        for (int i = 0; i < mims; i++) {
+            // a quarter of the entries are genes, which the converter skips
+            String prefix = (i % 4 == 0) ? pick(new String[] {"Asterisk", "Plus"})
+                    : pick(new String[] {"Number Sign", "Percent", "NULL"});
+            out.print(prefix + "\t" + mim(i) + "\tTITLE " + i + "; T" + i + "\t\t\n");
+        }
+        out.close();
+
+        out = open(new File(dir, "genes_to_phenotype.txt"));
+        out.print("#Format: entrez-gene-id<tab>entrez-gene-symbol<tab>HPO-Term-ID<tab>"
+                + "HPO-Term-Name<tab>Frequency-Raw<tab>Frequency-HPO<tab>Additional Info from "
+                + "G-D source<tab>G-D source<tab>disease-ID for link\n");
+        for (int i = 0; i < rows; i++) {
+            int gene = nextInt(Math.max(1, mims / 2));
+            out.print((1000 + gene) + "\tGENE" + gene + "\t" + term() + "\tSome phenotype\t-\t"
+                    + pick(FREQUENCY) + "\t-\tmim2gene\tOMIM:" + mim(nextInt(mims)) + "\n");
+        }
+        out.close();
+
+        writeAnnotations(new File(dir, "phenotype_annotation.tab"), "", rows, mims);
+        writeAnnotations(new File(dir, "phenotype_annotation_negated.tab"), "NOT",
+                Math.max(1, rows / 20), mims);
+    }
+
+    private void writeAnnotations(File file, String qualifier, int rows, int mims)
+        throws IOException {
+        PrintWriter out = open(file);
+        for (int i = 0; i < rows; i++) {
+            String db;
+            String id;
+            if (chance(80)) {
+                db = "OMIM";
+                id = String.valueOf(mim(nextInt(mims)));
+            } else if (chance(75)) {
+                db = "ORPHA";
+                id = String.valueOf(nextInt(600000));
+            } else {
+                db = "DECIPHER";
+                id = String.valueOf(nextInt(100));
+            }
+            String dbRef = chance(30) ? "PMID:" + (10000000 + nextInt(20000000)) : db + ":" + id;
+            out.print(db + "\t" + id + "\t#" + id + " DISEASE " + id + "\t" + qualifier + "\t"
+                    + term() + "\t" + dbRef + "\t" + pick(EVIDENCE) + "\t\t" + pick(FREQUENCY)
+                    + "\t\t\t" + pick(new String[] {"P", "I", "C"}) + "\t2012.10.17"
+                    + "\tHPO:skoehler\n");
+        }
+        out.close();
+    }
+
+    private static int mim(int i) {
+        return 100000 + i;
+    }
+
+    private String term() {
+        return String.format("HP:%07d", nextInt(TERMS));
+    }
+}
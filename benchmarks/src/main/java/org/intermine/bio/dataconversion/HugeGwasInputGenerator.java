@@ -0,0 +1,96 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Writes the HuGE GWAS catalog HUGE-GWAS.tsv.  Each study has a run of associations, and some
+ * SNPs are intergenic so have no gene.
+ *
+ * @author InterMine
+ */
+public class HugeGwasInputGenerator extends InputGenerator
+{
+    private static final String[] TRAITS = new String[] {
+        "Type 2 diabetes", "Height", "Body mass index", "Crohn's disease", "Schizophrenia",
+        "Breast cancer", "Coronary artery disease", "LDL cholesterol", "Asthma", "Psoriasis"
+    };
+    private static final String[] BASES = new String[] {"A", "C", "G", "T", "?"};
+
+    private int genes = -1;
+
+    /**
+     * Constructor
+     * @param seed seed for the random values
+     */
+    public HugeGwasInputGenerator(long seed) {
+        super(seed);
+    }
+
+    /**
+     * @param genes number of distinct genes, defaults to one per 10 lines
+     */
+    public void setGenes(int genes) {
+        this.genes = genes;
+    }
+
+    /**
+     * @param rows number of associations
+     * @param columns ignored
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(File dir, int rows, int columns) throws IOException {
+        int geneCount = (genes < 0) ? Math.max(1, rows / 10) : genes;
+        for (int i = 0; i < geneCount; i++) {
+            addGeneId(ensemblGeneId(i));
+        }
+        PrintWriter out = open(new File(dir, "HUGE-GWAS.tsv"));
+        out.print("DATE ADDED TO CATALOG\tPUBMEDID\tFIRST AUTHOR\tDATE\tJOURNAL\tLINK\tSTUDY"
+                + "\tDISEASE/TRAIT\tINITIAL SAMPLE SIZE\tREPLICATION SAMPLE SIZE\tREGION\tCHR_ID"
+                + "\tCHR_POS\tREPORTED GENE(S)\tMAPPED_GENE\tUPSTREAM_GENE_ID"
+                + "\tDOWNSTREAM_GENE_ID\tSNP_GENE_IDS\tUPSTREAM_GENE_DISTANCE"
+                + "\tDOWNSTREAM_GENE_DISTANCE\tSTRONGEST SNP-RISK ALLELE\tSNPS\tMERGED"
+                + "\tSNP_ID_CURRENT\tCONTEXT\tINTERGENIC\tRISK ALLELE FREQUENCY\tP-VALUE"
+                + "\tPVALUE_MLOG\tP-VALUE (TEXT)\tOR or BETA\t95% CI (TEXT)"
+                + "\tPLATFORM [SNPS PASSING QC]\tCNV\n");
+        int study = -1;
+        String trait = null;
+        for (int i = 0; i < rows; i++) {
+            if (study < 0 || chance(5)) {
+                study++;
+                trait = pick(TRAITS);
+            }
+            int gene = nextInt(geneCount);
+            boolean intergenic = chance(10);
+            int snp = 1000 + nextInt(Math.max(1, rows * 2));
+            int chromosome = 1 + nextInt(22);
+            out.print("2015-12-18\t" + (20000000 + study) + "\tAuthor" + study + " A\t"
+                    + (2005 + study % 15) + "-01-08\tNat Genet\twww.ncbi.nlm.nih.gov/pubmed/"
+                    + (20000000 + study) + "\tGenome-wide association study " + study + "\t"
+                    + trait + "\t" + (1000 + nextInt(100000)) + " European ancestry cases\t"
+                    + (chance(40) ? "NA" : (500 + nextInt(50000)) + " European ancestry cases")
+                    + "\t" + chromosome + "q14.2\t" + chromosome + "\t" + nextInt(240000000)
+                    + "\tGENE" + gene + "\tGENE" + gene + "\t\t\t"
+                    + (intergenic ? "" : ensemblGeneId(gene)) + "\t\t\trs" + snp + "-"
+                    + pick(BASES) + "\trs" + snp + "\t0\t" + snp + "\tintron_variant\t"
+                    + (intergenic ? 1 : 0) + "\t"
+                    + (chance(30) ? "NR" : String.valueOf(nextInt(1000) / 1000.0)) + "\t"
+                    + (1 + nextInt(9)) + "E-" + (5 + nextInt(40)) + "\t"
+                    + nextInt(50) + "." + nextInt(1000) + "\t\t" + (1 + nextInt(300) / 100.0)
+                    + "\t[1.1-1.3]\tIllumina [~ 2500000]\tN\n");
+        }
+        out.close();
+    }
+}
@@ -0,0 +1,106 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare a HashSet of String identifiers with a LongHashSet, as used by ClinvarConverter to
+ * find duplicate AlleleIDs.  Each operation adds a ClinVar-sized run of identifiers, about
+ * one in ten of them a duplicate.
+ *
+ * The gc profiler's gc.alloc.rate.norm is the memory allocated to build each set.  The heap
+ * each set keeps once built is measured at the start of the trial and logged.
+ *
+ * @author InterMine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class IdentifierSetBenchmark
+{
+    private static final Logger LOG = Logger.getLogger(IdentifierSetBenchmark.class);
+
+    @Param({"HashSet", "LongHashSet"})
+    private String set;
+    @Param("1000000")
+    private int size;
+
+    private long[] identifiers;
+
+    /**
+     * Create the identifiers and log how much heap a set of them takes.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(GenerateInputs.DEFAULT_SEED);
+        identifiers = new long[size];
+        long next = 15000;
+        for (int i = 0; i < size; i++) {
+            // AlleleIDs are roughly sequential
+            next += 1 + random.nextInt(3);
+            identifiers[i] = (random.nextInt(10) == 0 && i > 0)
+                ? identifiers[random.nextInt(i)] : next;
+        }
+        long before = BenchmarkSupport.usedHeap();
+        Object built = build();
+        long after = BenchmarkSupport.usedHeap();
+        LOG.info(set + " of " + size + " identifiers retains " + (after - before) / 1024
+                + " KB (" + getSize(built) + " distinct)");
+    }
+
+    /**
+     * Build a set of the identifiers.
+     *
+     * @return the set
+     */
+    @Benchmark
+    public Object build() {
+        if ("LongHashSet".equals(set)) {
+            LongHashSet alleles = new LongHashSet();
+            for (long id : identifiers) {
+                alleles.add(id);
+            }
+            return alleles;
+        }
+        // what the converter had before: each identifier is a String read from the file
+        Set<String> alleles = new HashSet<String>();
+        for (long id : identifiers) {
+            alleles.add(String.valueOf(id));
+        }
+        return alleles;
+    }
+
+    private static int getSize(Object built) {
+        return (built instanceof LongHashSet) ? ((LongHashSet) built).size()
+            : ((Set<?>) built).size();
+    }
+}
@@ -0,0 +1,128 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Writes synthetic input files in the exact layout a source reads, at a chosen size.  The
+ * output only depends on the seed and the sizes, so runs can be repeated and compared.
+ *
+ * @author InterMine
+ */
+public abstract class InputGenerator
+{
+    private final Random random;
+    private final List<String> geneIds = new ArrayList<String>();
+
+    /**
+     * Constructor
+     * @param seed seed for the random values
+     */
+    protected InputGenerator(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Write the files the source reads into a directory.
+     *
+     * @param dir directory to write to
+     * @param rows main size, e.g. number of lines in the largest file
+     * @param columns second size, e.g. number of samples in a matrix, ignored by sources with
+     * a fixed number of columns
+     * @throws IOException if a file can't be written
+     */
+    public abstract void write(File dir, int rows, int columns) throws IOException;
+
+    /**
+     * @return identifiers of the genes written that the source resolves, for building a
+     * resolver
+     */
+    public List<String> getGeneIds() {
+        return geneIds;
+    }
+
+    /**
+     * @param geneId identifier of a gene written that the source will resolve
+     */
+    protected void addGeneId(String geneId) {
+        geneIds.add(geneId);
+    }
+
+    /**
+     * @return the random number generator
+     */
+    protected Random getRandom() {
+        return random;
+    }
+
+    /**
+     * @param values values to choose from
+     * @return one of the values
+     */
+    protected String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * @param bound upper bound, exclusive
+     * @return a random number between 0 and bound
+     */
+    protected int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+
+    /**
+     * @param percent chance of returning true
+     * @return true roughly percent out of a hundred times
+     */
+    protected boolean chance(int percent) {
+        return random.nextInt(100) < percent;
+    }
+
+    /**
+     * @param i gene number
+     * @return an Ensembl gene identifier
+     */
+    protected static String ensemblGeneId(int i) {
+        return String.format("ENSG%011d", i);
+    }
+
+    /**
+     * @param names names to choose from
+     * @param i the number of the name wanted
+     * @return name i from the list, with a number added once the list runs out
+     */
+    protected static String name(String[] names, int i) {
+        String name = names[i % names.length];
+        return (i < names.length) ? name : name + " " + (i / names.length + 1);
+    }
+
+    /**
+     * Open a file for writing, as UTF-8.
+     *
+     * @param file the file
+     * @return a writer
+     * @throws IOException if the file can't be opened
+     */
+    protected static PrintWriter open(File file) throws IOException {
+        return new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), "UTF-8")));
+    }
+}
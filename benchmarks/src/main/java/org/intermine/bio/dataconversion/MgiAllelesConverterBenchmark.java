@@ -0,0 +1,125 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.Reader;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark MgiAllelesConverter on MGI_PhenotypicAllele.rpt and MGI_PhenoGenoMP.rpt.
+ *
+ * The converter holds every allele until close(), so the heap it retains once both files
+ * have been read is measured at the start of the trial and logged.  Set alleles and rows to
+ * see how that grows with the size of the files.
+ *
+ * @author InterMine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MgiAllelesConverterBenchmark
+{
+    private static final Logger LOG = Logger.getLogger(MgiAllelesConverterBenchmark.class);
+
+    @Param("20000")
+    private int alleles;
+    @Param("100000")
+    private int rows;
+
+    private File dataDir;
+    private File alleleFile;
+    private File genotypeFile;
+
+    /**
+     * Write the input files.
+     *
+     * @throws Exception if the files can't be written or converted
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dataDir = BenchmarkSupport.createTempDir("mgi");
+        MgiAllelesInputGenerator generator =
+            new MgiAllelesInputGenerator(GenerateInputs.DEFAULT_SEED);
+        generator.setAlleles(alleles);
+        generator.write(dataDir, rows, 0);
+        alleleFile = new File(dataDir, "MGI_PhenotypicAllele.rpt");
+        genotypeFile = new File(dataDir, "MGI_PhenoGenoMP.rpt");
+        logRetainedHeap();
+    }
+
+    private void logRetainedHeap() throws Exception {
+        long before = BenchmarkSupport.usedHeap();
+        MgiAllelesConverter converter = convert(new NullItemWriter());
+        long after = BenchmarkSupport.usedHeap();
+        LOG.info("Before close() the converter retains " + (after - before) / 1024
+                + " KB for " + alleles + " alleles and " + rows + " genotype lines");
+        converter.close();
+    }
+
+    /**
+     * Delete the input files.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkSupport.delete(dataDir);
+    }
+
+    /**
+     * Convert the files.
+     *
+     * @param counters rows and items processed
+     * @throws Exception if the conversion fails
+     */
+    @Benchmark
+    public void process(ConversionCounters counters) throws Exception {
+        NullItemWriter writer = new NullItemWriter();
+        MgiAllelesConverter converter = convert(writer);
+        converter.close();
+        counters.add(alleles + (long) rows, writer);
+    }
+
+    // read the files but don't close the converter
+    private MgiAllelesConverter convert(NullItemWriter writer) throws Exception {
+        MgiAllelesConverter converter = new MgiAllelesConverter(writer,
+                BenchmarkSupport.getModel());
+        for (File file : new File[] {alleleFile, genotypeFile}) {
+            converter.setCurrentFile(file);
+            Reader reader = new BufferedReader(new FileReader(file));
+            try {
+                converter.process(reader);
+            } finally {
+                reader.close();
+            }
+        }
+        return converter;
+    }
+}
@@ -0,0 +1,143 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Writes MGI input: MGI_PhenotypicAllele.rpt, MGI_QTLAllele.rpt and MGI_PhenoGenoMP.rpt.  Lines
+ * for the same genotype are next to each other, as in the real file, unless they are shuffled.
+ *
+ * @author InterMine
+ */
+public class MgiAllelesInputGenerator extends InputGenerator
+{
+    private static final String[] TYPES = new String[] {
+        "Targeted\tNull/knockout", "Targeted\tReporter", "Endonuclease-mediated\tNull/knockout",
+        "Chemically induced (ENU)\tHypomorph", "Transgenic\tInserted expressed sequence"
+    };
+    private static final String[] BACKGROUNDS = new String[] {
+        "involves: 129S4/SvJae * C57BL/6", "B6.129S4-Gene", "C57BL/6J", "involves: 129 * FVB/N"
+    };
+    // an MP release has roughly this many terms
+    private static final int TERMS = 13000;
+
+    private int alleles = -1;
+    private boolean shuffled = false;
+
+    /**
+     * Constructor
+     * @param seed seed for the random values
+     */
+    public MgiAllelesInputGenerator(long seed) {
+        super(seed);
+    }
+
+    /**
+     * @param alleles number of alleles, defaults to one per five genotype lines
+     */
+    public void setAlleles(int alleles) {
+        this.alleles = alleles;
+    }
+
+    /**
+     * @param shuffled true to write the MGI_PhenoGenoMP.rpt lines in random order
+     */
+    public void setShuffled(boolean shuffled) {
+        this.shuffled = shuffled;
+    }
+
+    /**
+     * @param rows number of lines in MGI_PhenoGenoMP.rpt
+     * @param columns ignored
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(File dir, int rows, int columns) throws IOException {
+        int alleleCount = (alleles < 0) ? Math.max(1, rows / 5) : alleles;
+
+        PrintWriter out = open(new File(dir, "MGI_PhenotypicAllele.rpt"));
+        for (int i = 0; i < alleleCount; i++) {
+            out.print("MGI:" + (1000000 + i) + "\t" + symbol(i) + "\ttargeted mutation " + i
+                    + "\t" + pick(TYPES) + "\t" + (10000000 + nextInt(20000000)) + "\tMGI:"
+                    + (90000 + i / 4) + "\t" + gene(i) + "\tENSMUSG" + String.format("%011d", i / 4)
+                    + "\t" + term() + "," + term() + "\n");
+        }
+        out.close();
+
+        out = open(new File(dir, "MGI_QTLAllele.rpt"));
+        for (int i = 0; i < Math.max(1, alleleCount / 50); i++) {
+            out.print("MGI:" + (5000000 + i) + "\tQtl" + i + "<B6>\tQTL " + i
+                    + "\tQTL\t" + (10000000 + nextInt(20000000)) + "\tMGI:" + (95000 + i)
+                    + "\tQtl" + i + "\t\t" + term() + "\n");
+        }
+        out.close();
+
+        out = open(new File(dir, "MGI_PhenoGenoMP.rpt"));
+        // only held in memory if they have to be shuffled
+        List<String> lines = shuffled ? new ArrayList<String>() : null;
+        int genotype = 0;
+        for (int i = 0; i < rows; genotype++) {
+            int allele = nextInt(alleleCount);
+            String composition;
+            String symbols;
+            if (chance(50)) {
+                composition = symbol(allele) + "/" + symbol(allele);
+                symbols = symbol(allele);
+            } else if (chance(80)) {
+                composition = symbol(allele) + "/" + gene(allele) + "<+>";
+                symbols = symbol(allele) + "|" + gene(allele) + "<+>";
+            } else {
+                int other = nextInt(alleleCount);
+                composition = symbol(allele) + "/" + symbol(allele) + "<br>" + symbol(other) + "/"
+                        + symbol(other);
+                symbols = symbol(allele) + "|" + symbol(other);
+            }
+            String name = composition + " [" + genotype + "]";
+            String background = pick(BACKGROUNDS);
+            // several phenotypes for each genotype
+            int phenotypes = 1 + nextInt(8);
+            for (int p = 0; p < phenotypes && i < rows; p++, i++) {
+                String line = name + "\t" + symbols + "\t" + background + "\t" + term() + "\t"
+                        + (10000000 + nextInt(20000000)) + "\tMGI:" + (90000 + allele / 4);
+                if (lines == null) {
+                    out.print(line + "\n");
+                } else {
+                    lines.add(line);
+                }
+            }
+        }
+        if (lines != null) {
+            Collections.shuffle(lines, getRandom());
+            for (String line : lines) {
+                out.print(line + "\n");
+            }
+        }
+        out.close();
+    }
+
+    private static String gene(int allele) {
+        return "Gene" + (allele / 4);
+    }
+
+    private static String symbol(int allele) {
+        return gene(allele) + "<tm" + (allele % 4) + ">";
+    }
+
+    private String term() {
+        return String.format("MP:%07d", nextInt(TERMS));
+    }
+}
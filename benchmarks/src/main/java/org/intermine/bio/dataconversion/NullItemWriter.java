@@ -0,0 +1,96 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Collection;
+import java.util.concurrent.locks.LockSupport;
+
+import org.intermine.dataconversion.ItemWriter;
+import org.intermine.model.fulldata.Attribute;
+import org.intermine.model.fulldata.Item;
+import org.intermine.model.fulldata.Reference;
+import org.intermine.model.fulldata.ReferenceList;
+import org.intermine.objectstore.ObjectStoreException;
+
+/**
+ * An ItemWriter that throws items away, only counting them, so benchmarks measure the
+ * converter rather than the database.  A time can be set for each item to stand in for waiting
+ * on the database, to measure converters that write on a separate thread.  The time is spent
+ * parked, a millisecond or more at once, as a writer waits for each batch it sends.
+ *
+ * @author InterMine
+ */
+public class NullItemWriter implements ItemWriter
+{
+    private static final long MIN_WAIT_NANOS = 1000000;
+
+    private int nextId = 0;
+    private long itemCount = 0;
+    private long storeNanos = 0;
+    private long waitNanos = 0;
+
+    /**
+     * @param storeNanos time to wait for each item stored, defaults to 0
+     */
+    public void setStoreNanos(long storeNanos) {
+        this.storeNanos = storeNanos;
+    }
+
+    @Override
+    public Integer store(Item item) {
+        if (storeNanos > 0) {
+            waitNanos += storeNanos;
+            if (waitNanos >= MIN_WAIT_NANOS) {
+                long end = System.nanoTime() + waitNanos;
+                for (long left = waitNanos; left > 0; left = end - System.nanoTime()) {
+                    LockSupport.parkNanos(left);
+                }
+                waitNanos = 0;
+            }
+        }
+        itemCount++;
+        return Integer.valueOf(nextId++);
+    }
+
+    @Override
+    public void store(ReferenceList refList, Integer itemId) {
+        // nothing to do
+    }
+
+    @Override
+    public void store(Reference ref, Integer itemId) {
+        // nothing to do
+    }
+
+    @Override
+    public void store(Attribute att, Integer itemId) {
+        // nothing to do
+    }
+
+    @Override
+    public void storeAll(Collection<Item> items) throws ObjectStoreException {
+        for (Item item : items) {
+            store(item);
+        }
+    }
+
+    @Override
+    public void close() {
+        // nothing to do
+    }
+
+    /**
+     * @return number of items stored
+     */
+    public long getItemCount() {
+        return itemCount;
+    }
+}
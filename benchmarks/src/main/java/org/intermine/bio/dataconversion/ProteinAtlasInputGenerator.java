@@ -0,0 +1,88 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Writes Protein Atlas proteinatlas.xml.
+ *
+ * @author InterMine
+ */
+public class ProteinAtlasInputGenerator extends InputGenerator
+{
+    private static final String[] TISSUES = new String[] {
+        "adrenal gland", "appendix", "bone marrow", "breast", "bronchus", "caudate", "cerebellum",
+        "cerebral cortex", "cervix, uterine", "colon", "duodenum", "endometrium 1", "epididymis",
+        "esophagus", "fallopian tube", "gallbladder", "heart muscle", "hippocampus", "kidney",
+        "liver", "lung", "lymph node", "nasopharynx", "oral mucosa", "ovary", "pancreas",
+        "parathyroid gland", "placenta", "prostate", "rectum", "salivary gland", "seminal vesicle",
+        "skeletal muscle", "skin 1", "small intestine", "smooth muscle", "soft tissue 1", "spleen",
+        "stomach 1", "testis", "thyroid gland", "tonsil", "urinary bladder", "vagina"
+    };
+    private static final String[] CELL_TYPES = new String[] {
+        "glandular cells", "lymphoid tissue", "endothelial cells", "fibroblasts",
+        "myocytes", "neuronal cells", "glial cells"
+    };
+    private static final String[] LEVELS = new String[] {
+        "not detected", "low", "medium", "high"
+    };
+
+    /**
+     * Constructor
+     * @param seed seed for the random values
+     */
+    public ProteinAtlasInputGenerator(long seed) {
+        super(seed);
+    }
+
+    /**
+     * @param rows number of entries
+     * @param columns number of data elements in each entry's tissueExpression
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(File dir, int rows, int columns) throws IOException {
+        PrintWriter out = open(new File(dir, "proteinatlas.xml"));
+        out.print("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<proteinAtlas>\n");
+        for (int i = 0; i < rows; i++) {
+            String geneId = ensemblGeneId(i);
+            addGeneId(geneId);
+            out.print("\t<entry version=\"19\" url=\"http://www.proteinatlas.org/" + geneId
+                    + "\">\n\t\t<name>GENE" + i + "</name>\n");
+            for (int s = nextInt(4); s > 0; s--) {
+                out.print("\t\t<synonym>SYN" + i + "-" + s + "</synonym>\n");
+            }
+            out.print("\t\t<identifier id=\"" + geneId + "\" db=\"Ensembl\" version=\"92.38\">\n"
+                    + "\t\t\t<xref id=\"P" + (10000 + i) + "\" db=\"Uniprot/SWISSPROT\"/>\n"
+                    + "\t\t</identifier>\n"
+                    + "\t\t<tissueExpression source=\"HPA\" technology=\"IHC\" "
+                    + "assayType=\"tissue\">\n"
+                    + "\t\t\t<summary type=\"tissue\"><![CDATA[Cytoplasmic expression in "
+                    + "several tissues.]]></summary>\n"
+                    + "\t\t\t<verification type=\"reliability\">"
+                    + pick(new String[] {"enhanced", "supported", "approved", "uncertain"})
+                    + "</verification>\n");
+            for (int t = 0; t < columns; t++) {
+                out.print("\t\t\t<data>\n\t\t\t\t<tissue status=\"normal\">"
+                        + name(TISSUES, t / 2) + "</tissue>\n\t\t\t\t<cellType>"
+                        + CELL_TYPES[t % CELL_TYPES.length] + "</cellType>\n"
+                        + "\t\t\t\t<level type=\"expression\">" + pick(LEVELS) + "</level>\n"
+                        + "\t\t\t</data>\n");
+            }
+            out.print("\t\t</tissueExpression>\n\t</entry>\n");
+        }
+        out.print("</proteinAtlas>\n");
+        out.close();
+    }
+}
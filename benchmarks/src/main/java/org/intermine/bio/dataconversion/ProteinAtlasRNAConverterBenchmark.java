@@ -0,0 +1,103 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark ProteinAtlasRNAConverter on an rna_tissue.tsv file with a line for each gene and
+ * tissue.
+ *
+ * @author InterMine
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ProteinAtlasRNAConverterBenchmark
+{
+    @Param("10000")
+    private int genes;
+    @Param("36")
+    private int tissues;
+
+    private File dataDir;
+    private File file;
+    private IdResolver resolver;
+
+    /**
+     * Write the input file.
+     *
+     * @throws IOException if the file can't be written
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataDir = BenchmarkSupport.createTempDir("protein-atlas-rna");
+        ProteinAtlasRNAInputGenerator generator =
+            new ProteinAtlasRNAInputGenerator(GenerateInputs.DEFAULT_SEED);
+        generator.write(dataDir, genes, tissues);
+        file = new File(dataDir, "rna_tissue.tsv");
+        resolver = BenchmarkSupport.getResolver(generator.getGeneIds());
+    }
+
+    /**
+     * Delete the input file.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkSupport.delete(dataDir);
+    }
+
+    /**
+     * Convert the file.
+     *
+     * @param counters rows and items processed
+     * @throws Exception if the conversion fails
+     */
+    @Benchmark
+    public void process(ConversionCounters counters) throws Exception {
+        NullItemWriter writer = new NullItemWriter();
+        ProteinAtlasRNAConverter converter = new ProteinAtlasRNAConverter(writer,
+                BenchmarkSupport.getModel());
+        converter.rslv = resolver;
+        // the file name says which file is being read
+        converter.setCurrentFile(file);
+        Reader reader = new BufferedReader(new FileReader(file));
+        try {
+            converter.process(reader);
+        } finally {
+            reader.close();
+        }
+        converter.close();
+        counters.add((long) genes * tissues, writer);
+    }
+}
@@ -0,0 +1,63 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Writes Protein Atlas rna_tissue.tsv, a line for each gene and tissue.  A few genes don't
+ * resolve.
+ *
+ * @author InterMine
+ */
+public class ProteinAtlasRNAInputGenerator extends InputGenerator
+{
+    private static final String[] TISSUES = new String[] {
+        "adipose tissue", "adrenal gland", "appendix", "bone marrow", "brain", "breast",
+        "cervix, uterine", "colon", "duodenum", "endometrium", "esophagus", "fallopian tube",
+        "gallbladder", "heart muscle", "kidney", "liver", "lung", "lymph node", "ovary",
+        "pancreas", "parathyroid gland", "placenta", "prostate", "rectum", "salivary gland",
+        "seminal vesicle", "skeletal muscle", "skin", "small intestine", "smooth muscle",
+        "spleen", "stomach", "testis", "thyroid gland", "tonsil", "urinary bladder"
+    };
+
+    /**
+     * Constructor
+     * @param seed seed for the random values
+     */
+    public ProteinAtlasRNAInputGenerator(long seed) {
+        super(seed);
+    }
+
+    /**
+     * @param rows number of genes
+     * @param columns number of tissues for each gene
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(File dir, int rows, int columns) throws IOException {
+        PrintWriter out = open(new File(dir, "rna_tissue.tsv"));
+        out.print("Gene\tGene name\tSample\tValue\tUnit\n");
+        for (int i = 0; i < rows; i++) {
+            String geneId = ensemblGeneId(i);
+            if (!chance(5)) {
+                addGeneId(geneId);
+            }
+            for (int t = 0; t < columns; t++) {
+                out.print(geneId + "\tGENE" + i + "\t" + name(TISSUES, t) + "\t"
+                        + (nextInt(10000) / 10.0) + "\tTPM\n");
+            }
+        }
+        out.close();
+    }
+}
@@ -0,0 +1,114 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class InputGeneratorTest extends TestCase
+{
+    private static final String[] SOURCES = new String[] {
+        "atlas-express", "clinvar", "depmap-expression", "depmap-sample-info",
+        "disgenet-disease-associations", "gtex", "hgnc", "hpo-annotation", "huge-gwas",
+        "mgi-alleles", "protein-atlas", "protein-atlas-rna"
+    };
+
+    private File dir1;
+    private File dir2;
+
+    public InputGeneratorTest(String arg) {
+        super(arg);
+    }
+
+    public void setUp() throws Exception {
+        dir1 = BenchmarkSupport.createTempDir("generator");
+        dir2 = BenchmarkSupport.createTempDir("generator");
+    }
+
+    public void tearDown() {
+        BenchmarkSupport.delete(dir1);
+        BenchmarkSupport.delete(dir2);
+    }
+
+    public void testSameSeedSameFiles() throws Exception {
+        for (String source : SOURCES) {
+            File a = new File(dir1, source);
+            File b = new File(dir2, source);
+            a.mkdir();
+            b.mkdir();
+            GenerateInputs.getGenerator(source, 7).write(a, 200, 5);
+            GenerateInputs.getGenerator(source, 7).write(b, 200, 5);
+            String[] names = a.list();
+            Arrays.sort(names);
+            assertTrue(source, names.length > 0);
+            for (String name : names) {
+                assertTrue(source + "/" + name, Arrays.equals(
+                        Files.readAllBytes(new File(a, name).toPath()),
+                        Files.readAllBytes(new File(b, name).toPath())));
+            }
+        }
+    }
+
+    public void testClinvarLayout() throws Exception {
+        new ClinvarInputGenerator(1).write(dir1, 100, 0);
+        Iterator<String[]> lines = parse(new File(dir1, "variant_summary.txt"));
+        int count = 0;
+        while (lines.hasNext()) {
+            String[] line = lines.next();
+            assertEquals(30, line.length);
+            if (count > 0) {
+                assertEquals((count % 2 == 1) ? "GRCh37" : "GRCh38", line[16]);
+            }
+            count++;
+        }
+        // header and 100 lines
+        assertEquals(101, count);
+    }
+
+    public void testGctLayout() throws Exception {
+        GtexInputGenerator generator = new GtexInputGenerator(1);
+        generator.setEqtlsPerTissue(10);
+        generator.write(dir1, 20, 3);
+        assertEquals(20, generator.getGeneIds().size());
+        // the matrix and a file for each tissue
+        assertEquals(4, dir1.list().length);
+        Iterator<String[]> lines = parse(new File(dir1,
+                "GTEx_Analysis_2016-01-15_v7_RNASeQCv1.1.8_gene_median_tpm.gct"));
+        assertEquals("#1.2", lines.next()[0]);
+        assertEquals("20", lines.next()[0]);
+        assertEquals("gene_id", lines.next()[0]);
+        int genes = 0;
+        while (lines.hasNext()) {
+            assertEquals(5, lines.next().length);
+            genes++;
+        }
+        assertEquals(20, genes);
+        lines = parse(new File(dir1, "Adrenal_Gland.v7.signif_variant_gene_pairs.txt"));
+        lines.next();
+        assertEquals(12, lines.next().length);
+    }
+
+    private Iterator<String[]> parse(File file) throws IOException {
+        List<String[]> lines = new ArrayList<String[]>();
+        for (String line : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)) {
+            lines.add(line.split("\t", -1));
+        }
+        return lines.iterator();
+    }
+}
@@ -10,19 +10,16 @@ package org.intermine.bio.dataconversion;
  *
  */
 
+import java.io.IOException;
 import java.io.Reader;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Map;
-import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.intermine.dataconversion.ItemWriter;
 import org.intermine.metadata.Model;
 import org.intermine.objectstore.ObjectStoreException;
-import org.intermine.util.FormattedTextParser;
 import org.intermine.xml.full.Item;
 
 /**
@@ -37,9 +34,24 @@ public class ClinvarConverter extends BioFileConverter
     private static final String ASSEMBLY = "GRCh38";
     private static final String TAXON_ID = "9606";
     private static final String DUMMY_GENE_ENTRY = "-1";
+
+    // columns read from variant_summary.txt
+    private static final String[] COLUMNS = new String[] {
+        "AlleleID", "Type", "GeneID", "ClinicalSignificance", "PhenotypeIDS", "Assembly",
+        "ReferenceAllele", "AlternateAllele"};
+    private static final int ALLELE_ID = 0;
+    private static final int TYPE = 1;
+    private static final int GENE_ID = 2;
+    private static final int CLINICAL_SIGNIFICANCE = 3;
+    private static final int PHENOTYPE_IDS = 4;
+    private static final int ASSEMBLY_COLUMN = 5;
+    private static final int REFERENCE_ALLELE = 6;
+    private static final int ALTERNATE_ALLELE = 7;
     protected Map<String, String> genes = new HashMap<String, String>();
     protected Map<String, String> diseases = new HashMap<String, String>();
-    protected Set<String> alleles = new HashSet<String>();
+    // AlleleIDs are numeric
+    private LongHashSet alleles = new LongHashSet();
+    private ConverterMetrics metrics;
 
     /**
      * Constructor
@@ -47,42 +59,55 @@ public class ClinvarConverter extends BioFileConverter
      * @param model the Model
      */
     public ClinvarConverter(ItemWriter writer, Model model) {
-        super(writer, model, DATA_SOURCE_NAME, DATASET_TITLE);
+        super(new MetricsItemWriter(writer, "clinvar"), model, DATA_SOURCE_NAME, DATASET_TITLE);
+        metrics = ((MetricsItemWriter) getItemWriter()).getMetrics();
     }
 
     /**
      * {@inheritDoc}
      */
     public void process(Reader reader) throws Exception {
-        Iterator lineIter = FormattedTextParser.parseTabDelimitedReader(reader);
-        while (lineIter.hasNext()) {
-            String[] line = (String[]) lineIter.next();
-
-            String alleleId = line[0];
-            String type = line[1];
-            String geneId = line[3];
-            String clinicalSignificance = line[6];
-            String diseaseString = line[12];    // parse for OMIM
-            String assemblyString = line[16];
-
-            if (!ASSEMBLY.equals(assemblyString)) {
-                // only load GRCh38
-                continue;
+        boolean processed = false;
+        try {
+            processVariants(reader);
+            processed = true;
+        } finally {
+            if (!processed) {
+                // close() isn't called after a failure
+                metrics.close();
             }
+        }
+    }
 
-            if (DUMMY_GENE_ENTRY.equals(geneId)) {
-                // ignore these. remove if we add gene ID resolution
+    private void processVariants(Reader reader) throws IOException, ObjectStoreException {
+        // only the fields used are turned into Strings
+        DelimitedLineReader line = new DelimitedLineReader(metrics.countBytes(reader), '\t');
+        int[] columns = line.readHeader(COLUMNS);
+        // rows we don't want are dropped before the rest of the line is split
+        line.setFilter(new RowFilter(columns[ASSEMBLY_COLUMN], columns[GENE_ID], metrics));
+        while (line.next()) {
+            String alleleId = line.getString(columns[ALLELE_ID]);
+            long allele;
+            try {
+                allele = Long.parseLong(alleleId);
+            } catch (NumberFormatException e) {
+                LOG.error("AlleleID isn't a number on line " + line.getLineNumber() + ": "
+                        + alleleId);
+                metrics.rowSkipped("bad allele id");
                 continue;
             }
-
-            if (alleles.contains(alleleId)) {
+            if (!alleles.add(allele)) {
                 LOG.error("Duplicate alleles found for " + alleleId);
+                metrics.rowSkipped("duplicate allele");
                 continue;
             }
-            alleles.add(alleleId);
 
-            String referenceAllele = line[21];
-            String alternateAllele = line[22];
+            String type = line.getString(columns[TYPE]);
+            String geneId = line.getString(columns[GENE_ID]);
+            String clinicalSignificance = line.getString(columns[CLINICAL_SIGNIFICANCE]);
+            String diseaseString = line.getString(columns[PHENOTYPE_IDS]);    // parse for OMIM
+            String referenceAllele = line.getString(columns[REFERENCE_ALLELE]);
+            String alternateAllele = line.getString(columns[ALTERNATE_ALLELE]);
 
             String geneRefId = getGene(geneId);
 
@@ -102,6 +127,15 @@ public class ClinvarConverter extends BioFileConverter
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws Exception {
+        super.close();
+        metrics.close();
+    }
+
     private String getGene(String identifier) throws ObjectStoreException {
         String refId = genes.get(identifier);
         if (refId != null) {
@@ -138,4 +172,36 @@ public class ClinvarConverter extends BioFileConverter
         }
         return null;
     }
+
+    /**
+     * Drops rows that aren't for GRCh38 or have no gene, counting every row read.
+     */
+    private static class RowFilter implements DelimitedLineReader.Filter
+    {
+        private final int assemblyColumn;
+        private final int geneColumn;
+        private final ConverterMetrics metrics;
+
+        RowFilter(int assemblyColumn, int geneColumn, ConverterMetrics metrics) {
+            this.assemblyColumn = assemblyColumn;
+            this.geneColumn = geneColumn;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public boolean accept(DelimitedLineReader line) {
+            metrics.rowRead();
+            // only load GRCh38, and ignore alleles with no gene. remove the gene check if we
+            // add gene ID resolution
+            if (!line.fieldEquals(assemblyColumn, ASSEMBLY)) {
+                metrics.rowSkipped("other assembly");
+                return false;
+            }
+            if (line.fieldEquals(geneColumn, DUMMY_GENE_ENTRY)) {
+                metrics.rowSkipped("no gene");
+                return false;
+            }
+            return true;
+        }
+    }
 }
@@ -2,9 +2,14 @@ package org.intermine.bio.dataconversion;
 
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
 import java.util.HashMap;
 import java.util.Set;
 
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
 import org.intermine.dataconversion.ItemsTestCase;
 import org.intermine.dataconversion.MockItemWriter;
 import org.intermine.metadata.Model;
@@ -39,5 +44,22 @@ public class ClinvarConverterTest extends ItemsTestCase
 
         Set<org.intermine.xml.full.Item> expected = readItemSet("ClinVarConverterTest_tgt.xml");
         assertEquals(expected, itemWriter.getItems());
+        // the last row's AlleleID isn't a number
+        ConverterMetrics metrics = ((MetricsItemWriter) converter.getItemWriter()).getMetrics();
+        assertEquals(1, metrics.getRowsSkipped("bad allele id"));
+    }
+
+    public void testFailureClosesMetrics() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("org.intermine.bio.dataconversion:"
+                + "type=ConverterMetrics,source=\"clinvar\"");
+        try {
+            converter.process(new StringReader("#AlleleID\tType\n1\tsingle nucleotide variant\n"));
+            fail("expected exception");
+        } catch (IllegalArgumentException e) {
+            // expected, most of the columns are missing
+        }
+        // close() isn't called after a failure, so process() has unregistered the metrics
+        assertFalse(server.isRegistered(name));
     }
 }
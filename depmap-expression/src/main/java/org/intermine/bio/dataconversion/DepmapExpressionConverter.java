@@ -44,6 +44,10 @@ public class DepmapExpressionConverter extends BioDirectoryConverter
     private Map<String, String> cellLines = new HashMap<String, String>();
 
     protected IdResolver rslv;
+    private IdResolutionCache resolutionCache;
+    // writes the items, on its own thread if depmap.asyncStore is set
+    private AsyncItemWriter storeWriter;
+    private ConverterMetrics metrics;
     private static final Logger LOG = Logger.getLogger(DepmapExpressionConverter.class);
 
     private String organismIdentifier; // references the object created in the database
@@ -78,17 +82,7 @@ public class DepmapExpressionConverter extends BioDirectoryConverter
         if (StringUtils.isEmpty(resolvedIdentifier)) {
             return null;
         }
-        String geneId = genes.get(resolvedIdentifier);
-        if (geneId == null) {
-            Item gene = createItem("Gene");
-            gene.setAttribute("primaryIdentifier", resolvedIdentifier);
-            gene.setAttribute("symbol", geneSymbol);
-            gene.setReference("organism", getOrganism(TAXON_ID));
-            store(gene);
-            geneId = gene.getIdentifier();
-            genes.put(resolvedIdentifier, geneId);
-        }
-        return geneId;
+        return getGene(resolvedIdentifier, geneSymbol);
     }
 
     /**
@@ -98,12 +92,26 @@ public class DepmapExpressionConverter extends BioDirectoryConverter
      * @param model  the Model
      */
     public DepmapExpressionConverter(ItemWriter writer, Model model) {
-        super(writer, model, DATA_SOURCE_NAME, DATASET_TITLE);
+        super(new MetricsItemWriter(new AsyncItemWriter(writer, "depmap-expression"),
+                "depmap-expression"), model, DATA_SOURCE_NAME, DATASET_TITLE);
+        MetricsItemWriter metricsWriter = (MetricsItemWriter) getItemWriter();
+        metrics = metricsWriter.getMetrics();
+        storeWriter = (AsyncItemWriter) metricsWriter.getWriter();
+        storeWriter.setMetrics(metrics);
         if (rslv == null) {
             rslv = IdResolverService.getIdResolverByOrganism(TAXON_ID);
         }
     }
 
+    /**
+     * Write items on a separate thread while the matrix is read.
+     *
+     * @param asyncStore "true" to write items on a separate thread
+     */
+    public void setDepmapAsyncStore(String asyncStore) {
+        storeWriter.setAsync(Boolean.parseBoolean(asyncStore.trim()));
+    }
+
     private boolean isDouble(String str) {
         try {
             // check if it can be parsed as any double
@@ -132,7 +140,32 @@ public class DepmapExpressionConverter extends BioDirectoryConverter
         if (!StringUtils.isEmpty(GENE_LIST_FILE)) {
             geneListArray = processGeneList(GENE_LIST_FILE);
         }
-        processExpressionData(new FileReader(files.get(EXPRESSION_CSV_FILE)), geneListArray);
+        boolean processed = false;
+        try {
+            processExpressionData(metrics.countBytes(new FileReader(files.get(
+                    EXPRESSION_CSV_FILE))), geneListArray);
+            processed = true;
+        } finally {
+            // wait for the writer thread so a store that failed fails process(), or stop it
+            // without writing the rest and unregister the metrics if the matrix couldn't be
+            // read
+            if (processed) {
+                storeWriter.flush();
+            } else {
+                storeWriter.abort();
+                metrics.close();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws Exception {
+        super.close();
+        storeWriter.flush();
+        metrics.close();
     }
 
     private Map<String, File> readFilesInDir(File dir) {
@@ -148,63 +181,90 @@ public class DepmapExpressionConverter extends BioDirectoryConverter
         Iterator<?> lineIter = FormattedTextParser.parseCsvDelimitedReader(reader);
         // header
         String[] firstLine = (String[]) lineIter.next();
-        ArrayList<String> geneNames = new ArrayList<String>();
-        for (int i = 1; i < firstLine.length; i++) {
-            String formattedGene = firstLine[i].split(" ")[0].trim();
-            geneNames.add(formattedGene);
-        }
+        String[] columnSymbols = new String[firstLine.length];
+        String[] columnIdentifiers = resolveColumns(firstLine, geneList, columnSymbols);
+        // gene ref ID of each column, the gene is created with its first expression
+        String[] columnGenes = new String[firstLine.length];
 
         while (lineIter.hasNext()) {
             String[] line = (String[]) lineIter.next();
+            metrics.rowRead();
 
             String cellLine = line[0];
+            if (cellLine.isEmpty()) {
+                metrics.rowSkipped("no cell line");
+                continue;
+            }
             for (int i = 1; i < line.length; i++) {
-                String expressionValue = line[i];
-                String theGeneForThisItem = geneNames.get(i - 1);
-
-                if (!geneList.isEmpty()) {
-                    String resolvedGene = getGeneIdentifier(theGeneForThisItem);
-                    if (!geneList.contains(resolvedGene)) {
-                        continue;
-                    }
-                }
-                Item expressionItem;
-                expressionItem = createItem("DepMapExpression");
-                if (!cellLine.isEmpty()) {
-                    expressionItem.setReference("cellLine", getCellLine(cellLine));
-                } else {
+                if (columnIdentifiers[i] == null) {
+                    // gene not resolved, or not in the gene list
                     continue;
                 }
-                if (!theGeneForThisItem.isEmpty()) {
-                    String geneId = getGeneId(theGeneForThisItem);
-                    if (StringUtils.isEmpty(geneId)) {
-                        continue;
-                    }
-                    expressionItem.setReference("gene", geneId);
-                } else {
+                String expressionValue = line[i];
+                if (expressionValue.isEmpty() || !isDouble(expressionValue)) {
                     continue;
                 }
-                if (!expressionValue.isEmpty() && isDouble(expressionValue)) {
-                    expressionItem.setAttribute("DepmapExpressionValue", expressionValue);
-                } else {
-                    continue;
+                Item expressionItem = createItem("DepMapExpression");
+                expressionItem.setReference("cellLine", getCellLine(cellLine));
+                if (columnGenes[i] == null) {
+                    columnGenes[i] = getGene(columnIdentifiers[i], columnSymbols[i]);
                 }
+                expressionItem.setReference("gene", columnGenes[i]);
+                expressionItem.setAttribute("DepmapExpressionValue", expressionValue);
                 store(expressionItem);
-                //cellLines.put(cellLine, CopyNumberItem.getIdentifier());
             }
         }
     }
 
-    private String getGeneId(String primaryIdentifier) throws ObjectStoreException {
-        String resolvedIdentifier = resolveGene(primaryIdentifier);
-        if (StringUtils.isEmpty(resolvedIdentifier)) {
-            return null;
+    /**
+     * Resolve the gene in each column header once, rather than for every cell.  Without a
+     * gene list no items are created here, a gene is only created once a cell of its column
+     * has an expression.  With one, each column's gene is looked up with getGeneIdentifier(),
+     * which stores it.
+     *
+     * @param header the header line, e.g. "",TSPAN6 (7105),TNMD (64102)
+     * @param geneList if not empty, only load genes in this list
+     * @param columnSymbols filled in with the gene symbol of each column
+     * @return resolved gene identifier for each column, null for columns to skip
+     * @throws ObjectStoreException if there is a gene list and a column's gene can't be stored
+     */
+    private String[] resolveColumns(String[] header, ArrayList<String> geneList,
+            String[] columnSymbols) throws ObjectStoreException {
+        String[] columnIdentifiers = new String[header.length];
+        int skipped = 0;
+        // first column is the cell line
+        for (int i = 1; i < header.length; i++) {
+            String gene = header[i].split(" ")[0].trim();
+            if (gene.isEmpty()) {
+                skipped++;
+                continue;
+            }
+            if (!geneList.isEmpty()) {
+                String resolvedGene = getGeneIdentifier(gene);
+                if (!geneList.contains(resolvedGene)) {
+                    skipped++;
+                    continue;
+                }
+            }
+            String resolvedIdentifier = resolveGene(gene);
+            if (StringUtils.isEmpty(resolvedIdentifier)) {
+                skipped++;
+                continue;
+            }
+            columnIdentifiers[i] = resolvedIdentifier;
+            columnSymbols[i] = gene;
         }
+        LOG.info("Skipping " + skipped + " of " + (header.length - 1) + " gene columns");
+        return columnIdentifiers;
+    }
+
+    private String getGene(String resolvedIdentifier, String symbol)
+        throws ObjectStoreException {
         String geneId = genes.get(resolvedIdentifier);
         if (geneId == null) {
             Item gene = createItem("Gene");
             gene.setAttribute("primaryIdentifier", resolvedIdentifier);
-            gene.setAttribute("symbol", primaryIdentifier);
+            gene.setAttribute("symbol", symbol);
             gene.setReference("organism", getOrganism(TAXON_ID));
             store(gene);
             geneId = gene.getIdentifier();
@@ -214,19 +274,11 @@ public class DepmapExpressionConverter extends BioDirectoryConverter
     }
 
     private String resolveGene(String identifier) {
-        String id = identifier;
-
-        if (rslv != null && rslv.hasTaxon(TAXON_ID)) {
-            int resCount = rslv.countResolutions(TAXON_ID, identifier);
-            if (resCount != 1) {
-                LOG.info("RESOLVER: failed to resolve gene to one identifier, ignoring gene: "
-                        + identifier + " count: " + resCount + " Human identifier: "
-                        + rslv.resolveId(TAXON_ID, identifier));
-                return null;
-            }
-            id = rslv.resolveId(TAXON_ID, identifier).iterator().next();
+        if (resolutionCache == null) {
+            resolutionCache = new IdResolutionCache(rslv);
+            metrics.setResolutionCache(resolutionCache);
         }
-        return id;
+        return resolutionCache.resolve(TAXON_ID, identifier);
     }
 
     /**
@@ -10,9 +10,18 @@ package org.intermine.bio.dataconversion;
  *
  */
 
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
 import org.intermine.dataconversion.ItemsTestCase;
 import org.intermine.dataconversion.MockItemWriter;
 import org.intermine.metadata.Model;
+import org.intermine.xml.full.Item;
 
 public class DepmapExpressionConverterTest extends ItemsTestCase
 {
@@ -26,13 +35,67 @@ public class DepmapExpressionConverterTest extends ItemsTestCase
 
     public void setUp() throws Exception {
         super.setUp();
-        // if you need to do some preprocessing and set up, do that here
+        itemWriter = new MockItemWriter(new HashMap<String, org.intermine.model.fulldata.Item>());
+        converter = new DepmapExpressionConverter(itemWriter, model);
+        converter.rslv = IdResolverService.getMockIdResolver("Gene");
+        converter.rslv.addResolverEntry("9606", "7105", Collections.singleton("TSPAN6"));
+        converter.rslv.addResolverEntry("9606", "64102", Collections.singleton("TNMD"));
+        converter.rslv.addResolverEntry("9606", "8813", Collections.singleton("DPM1"));
     }
 
     public void testProcess() throws Exception {
-        // read in a test file (place in test/resources so it's on the classpath)
-        // process using your converter
-        // compare results to expected results
-        // look at the other intermine unit tests for help!
+        File tmp = new File(getClass().getClassLoader().getResource("CCLE_expression.csv")
+                .toURI());
+        converter.process(tmp.getParentFile());
+        converter.close();
+
+        Set<Item> items = itemWriter.getItems();
+        Map<String, Item> byId = new HashMap<String, Item>();
+        for (Item item : items) {
+            byId.put(item.getIdentifier(), item);
+        }
+
+        // SCYL3 doesn't resolve and TNMD has no expression, so neither gene is created
+        Set<String> genes = new HashSet<String>();
+        Set<String> cellLines = new HashSet<String>();
+        Set<String> expressions = new HashSet<String>();
+        for (Item item : items) {
+            if ("Gene".equals(item.getClassName())) {
+                genes.add(item.getAttribute("primaryIdentifier").getValue() + " "
+                        + item.getAttribute("symbol").getValue());
+            } else if ("CellLine".equals(item.getClassName())) {
+                cellLines.add(item.getAttribute("DepMapID").getValue());
+            } else if ("DepMapExpression".equals(item.getClassName())) {
+                Item cellLine = byId.get(item.getReference("cellLine").getRefId());
+                Item gene = byId.get(item.getReference("gene").getRefId());
+                expressions.add(cellLine.getAttribute("DepMapID").getValue() + " "
+                        + gene.getAttribute("symbol").getValue() + " "
+                        + item.getAttribute("DepmapExpressionValue").getValue());
+            }
+        }
+        assertEquals(new HashSet<String>(Arrays.asList("7105 TSPAN6", "8813 DPM1")), genes);
+        assertEquals(new HashSet<String>(Arrays.asList("ACH-000001", "ACH-000002")), cellLines);
+        // whole numbers aren't expression values
+        assertEquals(new HashSet<String>(Arrays.asList("ACH-000001 TSPAN6 4.33",
+                "ACH-000001 DPM1 7.2", "ACH-000002 TSPAN6 3.1", "ACH-000002 DPM1 6.5")),
+                expressions);
+    }
+
+    public void testAsyncStore() throws Exception {
+        File dataDir = new File(getClass().getClassLoader().getResource("CCLE_expression.csv")
+                .toURI()).getParentFile();
+        converter.process(dataDir);
+        converter.close();
+
+        MockItemWriter asyncWriter =
+            new MockItemWriter(new HashMap<String, org.intermine.model.fulldata.Item>());
+        DepmapExpressionConverter asyncConverter =
+            new DepmapExpressionConverter(asyncWriter, model);
+        asyncConverter.rslv = converter.rslv;
+        asyncConverter.setDepmapAsyncStore("true");
+        asyncConverter.process(dataDir);
+        asyncConverter.close();
+
+        assertEquals(itemWriter.getItems(), asyncWriter.getItems());
     }
 }
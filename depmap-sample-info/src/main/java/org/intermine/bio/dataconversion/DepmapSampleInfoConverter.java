@@ -14,8 +14,11 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
@@ -37,6 +40,25 @@ public class DepmapSampleInfoConverter extends BioDirectoryConverter
 
     private static final String TAXON_ID = "9606"; // Human Taxon ID
     private static final String SAMPLE_INFO_CSV_FILE = "sample_info.csv";
+    // attribute values with few distinct values, shared by the items
+    private StringPool attributeValues = new StringPool();
+
+    // columns read from sample_info.csv
+    private static final String[] COLUMNS = new String[] {
+        "DepMap_ID", "cell_line_name", "CCLE_Name", "lineage", "lineage_subtype",
+        "lineage_sub_subtype", "sex", "primary_or_metastasis", "primary_disease", "Subtype",
+        "age"};
+    private static final int DEPMAP_ID = 0;
+    private static final int CELL_LINE_NAME = 1;
+    private static final int CCLE_NAME = 2;
+    private static final int LINEAGE = 3;
+    private static final int LINEAGE_SUBTYPE = 4;
+    private static final int LINEAGE_SUB_SUBTYPE = 5;
+    private static final int SEX = 6;
+    private static final int PRIMARY_OR_METASTASIS = 7;
+    private static final int PRIMARY_DISEASE = 8;
+    private static final int SUBTYPE = 9;
+    private static final int AGE = 10;
 
     private Map<String, String> cellLines = new HashMap<String, String>();
     private String organismIdentifier; // references the object in the database.
@@ -69,39 +91,46 @@ public class DepmapSampleInfoConverter extends BioDirectoryConverter
     }
 
     private void processCellLines(Reader reader) throws ObjectStoreException, IOException {
+        // opencsv, as quoted fields such as depmap_public_comments can span lines
         Iterator<?> lineIter = FormattedTextParser.parseCsvDelimitedReader(reader);
-        // Skip header
-        lineIter.next();
-        int counter = 0;
+        if (!lineIter.hasNext()) {
+            throw new IllegalArgumentException("No header found in " + SAMPLE_INFO_CSV_FILE);
+        }
+        // columns are found by name, so this fails here if any have been renamed
+        int[] columns = findColumns((String[]) lineIter.next());
+        int lastColumn = 0;
+        for (int column : columns) {
+            lastColumn = Math.max(lastColumn, column);
+        }
         while (lineIter.hasNext()) {
-            counter++;
             String[] line = (String[]) lineIter.next();
-            String depMapID = line[0];
+            if (line.length <= lastColumn) {
+                LOG.warn("Skipping short line in " + SAMPLE_INFO_CSV_FILE + ": "
+                        + Arrays.toString(line));
+                continue;
+            }
+            String depMapID = line[columns[DEPMAP_ID]];
             if (cellLines.containsKey(depMapID)) {
                 continue;
             }
-            // it seems there are mis-alignments
-            String shortName = line[1];
-            String ccleName = line[3]; //2
-            String lineage = line[22]; //21
-            String lineageSubtype = line[23];
-            String lineageSubsubtype = line[24];
-            String sex = line[6]; //5
-            String primaryOrMetastasis = line[16]; //14
-            String disease = line[17]; //15
-            String diseaseSubtype = line[18]; //17
+            String shortName = line[columns[CELL_LINE_NAME]];
+            String ccleName = line[columns[CCLE_NAME]];
+            String lineage = line[columns[LINEAGE]];
+            String lineageSubtype = line[columns[LINEAGE_SUBTYPE]];
+            String lineageSubsubtype = line[columns[LINEAGE_SUB_SUBTYPE]];
+            String sex = line[columns[SEX]];
+            String primaryOrMetastasis = line[columns[PRIMARY_OR_METASTASIS]];
+            String disease = line[columns[PRIMARY_DISEASE]];
+            String diseaseSubtype = line[columns[SUBTYPE]];
+            String ageValue = line[columns[AGE]];
             String age = "Not specified";
-            if (!line[19].isEmpty() && line[19].length() < 4) { // to avoid strings; e.g. "Unknown"
-                age = Double.toString(Math.floor(Double.valueOf(line[19])));
+            if (!ageValue.isEmpty() && ageValue.length() < 4) { // to avoid strings; e.g. "Unknown"
+                age = Double.toString(Math.floor(Double.valueOf(ageValue)));
             }
             if (lineage.isEmpty()) {
                 continue;
             }
 
-            /*if(!line[20].isEmpty()) {
-                Age = Double.parseDouble(line[20]);
-            }*/
-
             Item cellLineItem;
             cellLineItem = createItem("CellLine");
             cellLineItem.setAttribute("primaryIdentifier", depMapID);
@@ -121,45 +150,46 @@ public class DepmapSampleInfoConverter extends BioDirectoryConverter
                 cellLineItem.setAttribute("ShortName", "Not specified");
             }
             if (!lineage.isEmpty()) {
-                cellLineItem.setAttribute("Lineage", lineage);
+                attributeValues.setAttribute(cellLineItem, "Lineage", lineage);
             } else {
                 continue;
             }
             if (!lineageSubtype.isEmpty()) {
-                cellLineItem.setAttribute("LineageSubtype", lineageSubtype);
+                attributeValues.setAttribute(cellLineItem, "LineageSubtype", lineageSubtype);
             } else {
-                cellLineItem.setAttribute("LineageSubtype", "Not specified");
+                attributeValues.setAttribute(cellLineItem, "LineageSubtype", "Not specified");
             }
             if (!lineageSubsubtype.isEmpty()) {
-                cellLineItem.setAttribute("LineageSubsubtype", lineageSubsubtype);
+                attributeValues.setAttribute(cellLineItem, "LineageSubsubtype", lineageSubsubtype);
             } else {
-                cellLineItem.setAttribute("LineageSubsubtype", "Not specified");
+                attributeValues.setAttribute(cellLineItem, "LineageSubsubtype", "Not specified");
             }
             if (!sex.isEmpty()) {
-                cellLineItem.setAttribute("Sex", sex);
+                attributeValues.setAttribute(cellLineItem, "Sex", sex);
             } else {
-                cellLineItem.setAttribute("Sex", "Not specified");
+                attributeValues.setAttribute(cellLineItem, "Sex", "Not specified");
             }
             if (!primaryOrMetastasis.isEmpty()) {
-                cellLineItem.setAttribute("PrimaryOrMetastasis", primaryOrMetastasis);
+                attributeValues.setAttribute(cellLineItem, "PrimaryOrMetastasis",
+                        primaryOrMetastasis);
             } else {
-                cellLineItem.setAttribute("PrimaryOrMetastasis", "Not specified");
+                attributeValues.setAttribute(cellLineItem, "PrimaryOrMetastasis", "Not specified");
             }
             if (!disease.isEmpty()) {
-                cellLineItem.setAttribute("Disease", disease);
+                attributeValues.setAttribute(cellLineItem, "Disease", disease);
             } else {
                 continue;
             }
             if (!diseaseSubtype.isEmpty()) {
-                cellLineItem.setAttribute("DiseaseSubtype", diseaseSubtype);
+                attributeValues.setAttribute(cellLineItem, "DiseaseSubtype", diseaseSubtype);
             } else {
-                cellLineItem.setAttribute("DiseaseSubtype", "Not specified");
+                attributeValues.setAttribute(cellLineItem, "DiseaseSubtype", "Not specified");
             }
             //cellLineItem.setAttribute("Age", Double.toString(Age));
             if (!age.isEmpty()) {
-                cellLineItem.setAttribute("Age", age);
+                attributeValues.setAttribute(cellLineItem, "Age", age);
             } else {
-                cellLineItem.setAttribute("Age", "Not specified");
+                attributeValues.setAttribute(cellLineItem, "Age", "Not specified");
             }
 
             cellLineItem.setReference("organism", getOrganism(TAXON_ID));
@@ -167,4 +197,34 @@ public class DepmapSampleInfoConverter extends BioDirectoryConverter
             cellLines.put(depMapID, cellLineItem.getIdentifier());
         }
     }
+
+    // the index of each of COLUMNS in the header
+    private static int[] findColumns(String[] header) {
+        List<String> names = new ArrayList<String>();
+        for (String name : header) {
+            names.add(name.trim());
+        }
+        int[] columns = new int[COLUMNS.length];
+        List<String> missing = new ArrayList<String>();
+        for (int i = 0; i < COLUMNS.length; i++) {
+            columns[i] = names.indexOf(COLUMNS[i]);
+            if (columns[i] < 0) {
+                missing.add(COLUMNS[i]);
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException(SAMPLE_INFO_CSV_FILE + " is missing columns "
+                    + missing + ", found " + names);
+        }
+        return columns;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws Exception {
+        LOG.info("Attribute values: " + attributeValues);
+        super.close();
+    }
 }
@@ -16,7 +16,10 @@ import org.intermine.dataconversion.ItemsTestCase;
 import org.intermine.metadata.Model;
 
 import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
 import java.util.HashMap;
+import java.util.Map;
 
 public class DepmapSampleInfoConverterTest extends ItemsTestCase
 {
@@ -38,11 +41,71 @@ public class DepmapSampleInfoConverterTest extends ItemsTestCase
         File tmp = new File(getClass().getClassLoader().getResource("sample_info.csv").toURI());
         File dataDirectory = tmp.getParentFile();
 
-        System.out.println(dataDirectory.getAbsolutePath());
-
         converter.process(dataDirectory);
         converter.close();
 
-        writeItemsFile(itemWriter.getItems(), "depmap-sample-info-items.xml");
+        //writeItemsFile(itemWriter.getItems(), "depmap-sample-info-items.xml");
+
+        Map<String, org.intermine.xml.full.Item> cellLines =
+            new HashMap<String, org.intermine.xml.full.Item>();
+        for (org.intermine.xml.full.Item item : itemWriter.getItems()) {
+            if ("CellLine".equals(item.getClassName())) {
+                cellLines.put(item.getAttribute("DepMapID").getValue(), item);
+            }
+        }
+        assertEquals(100, cellLines.size());
+
+        org.intermine.xml.full.Item cellLine = cellLines.get("ACH-000001");
+        assertEquals("NIH:OVCAR-3", getValue(cellLine, "ShortName"));
+        assertEquals("NIHOVCAR3_OVARY", getValue(cellLine, "CCLEname"));
+        assertEquals("ovary", getValue(cellLine, "Lineage"));
+        assertEquals("ovary_adenocarcinoma", getValue(cellLine, "LineageSubtype"));
+        assertEquals("high_grade_serous", getValue(cellLine, "LineageSubsubtype"));
+        assertEquals("Female", getValue(cellLine, "Sex"));
+        assertEquals("Metastasis", getValue(cellLine, "PrimaryOrMetastasis"));
+        assertEquals("Ovarian Cancer", getValue(cellLine, "Disease"));
+        assertEquals("Adenocarcinoma, high grade serous", getValue(cellLine, "DiseaseSubtype"));
+        assertEquals("60.0", getValue(cellLine, "Age"));
+
+        // empty values and ages that aren't whole years
+        cellLine = cellLines.get("ACH-000099");
+        assertEquals("Not specified", getValue(cellLine, "PrimaryOrMetastasis"));
+        assertEquals("Not specified", getValue(cellLine, "LineageSubsubtype"));
+        assertEquals("Not specified", getValue(cellLine, "Age"));
+
+        // the columns after a comment that spans lines are still read
+        cellLine = cellLines.get("ACH-999999");
+        assertEquals("lung", getValue(cellLine, "Lineage"));
+        assertEquals("NSCLC", getValue(cellLine, "LineageSubtype"));
+        assertEquals("NSCLC_adenocarcinoma", getValue(cellLine, "LineageSubsubtype"));
+        assertEquals("45.0", getValue(cellLine, "Age"));
+    }
+
+    public void testMissingColumn() throws Exception {
+        File dataDirectory = File.createTempFile("depmap", "");
+        dataDirectory.delete();
+        dataDirectory.mkdir();
+        File file = new File(dataDirectory, "sample_info.csv");
+        try {
+            Writer writer = new FileWriter(file);
+            writer.write("DepMap_ID,cell_line_name,CCLE_Name,sex,primary_or_metastasis,"
+                    + "primary_disease,Subtype,age,lineage_subtype,lineage_sub_subtype\n"
+                    + "ACH-000001,NIH:OVCAR-3,NIHOVCAR3_OVARY,Female,Metastasis,"
+                    + "Ovarian Cancer,,60,ovary_adenocarcinoma,\n");
+            writer.close();
+            try {
+                converter.process(dataDirectory);
+                fail("expected exception");
+            } catch (IllegalArgumentException e) {
+                assertTrue(e.getMessage().contains("[lineage]"));
+            }
+        } finally {
+            file.delete();
+            dataDirectory.delete();
+        }
+    }
+
+    private static String getValue(org.intermine.xml.full.Item item, String name) {
+        return item.getAttribute(name).getValue();
     }
 }
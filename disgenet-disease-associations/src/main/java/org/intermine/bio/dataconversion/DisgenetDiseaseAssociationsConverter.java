@@ -43,6 +43,7 @@ public class DisgenetDiseaseAssociationsConverter extends BioDirectoryConverter
     private Map<String, Item> diseases = new HashMap<String, Item>();
 
     protected IdResolver rslv;
+    private IdResolutionCache resolutionCache;
     private static final Logger LOG = Logger.getLogger(DisgenetDiseaseAssociationsConverter.class);
 
     private String organismIdentifier; // objectid, not the taxon ID.
@@ -200,19 +201,20 @@ public class DisgenetDiseaseAssociationsConverter extends BioDirectoryConverter
     //
 
     private String resolveGene(String identifier) {
-        String id = identifier;
-
-        if (rslv != null && rslv.hasTaxon(TAXON_ID)) {
-            int resCount = rslv.countResolutions(TAXON_ID, identifier);
-            if (resCount != 1) {
-                LOG.info("RESOLVER: failed to resolve gene to one identifier, ignoring gene: "
-                        + identifier + " count: " + resCount + " Human identifier: "
-                        + rslv.resolveId(TAXON_ID, identifier));
-                return null;
-            }
-            id = rslv.resolveId(TAXON_ID, identifier).iterator().next();
+        if (resolutionCache == null) {
+            resolutionCache = new IdResolutionCache(rslv);
         }
-        return id;
+        return resolutionCache.resolve(TAXON_ID, identifier);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws Exception {
+        if (resolutionCache != null) {
+            resolutionCache.logFailures();
+        }
+        super.close();
+    }
 }
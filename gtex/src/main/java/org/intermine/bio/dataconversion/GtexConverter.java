@@ -10,12 +10,18 @@ package org.intermine.bio.dataconversion;
  *
  */
 
+import java.io.BufferedReader;
 import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
@@ -24,6 +30,7 @@ import org.intermine.metadata.Model;
 import org.intermine.objectstore.ObjectStoreException;
 import org.intermine.util.FormattedTextParser;
 import org.intermine.xml.full.Item;
+import org.intermine.xml.full.ReferenceList;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
@@ -41,9 +48,22 @@ public class GtexConverter extends BioDirectoryConverter
 
     private static final String DATA_SOURCE_NAME = "GTEx portal";
     private Map<String, Item> genes = new HashMap<String, Item>();
+    // gene ref ID -> stored gene, only used if genes are stored as soon as they are created
+    private Map<String, StoredGene> storedGenes = new LinkedHashMap<String, StoredGene>();
+    private boolean storeGenesEarly = false;
+    // writes the items, on its own thread if gtex.asyncStore is set
+    private AsyncItemWriter storeWriter;
+    // number of threads parsing the tissue files
+    private int threads = 1;
+    // lines of a tissue file handed to a worker at a time
+    private static final int CHUNK_LINES = 10000;
     private static final String TAXON_ID = "9606";
     protected IdResolver rslv;
+    private IdResolutionCache resolutionCache;
     private static final Logger LOG = Logger.getLogger(GtexConverter.class);
+    // attribute values with few distinct values, shared by the items
+    private StringPool attributeValues = new StringPool();
+    private ConverterMetrics metrics;
 
     /**
      * Constructor
@@ -51,7 +71,12 @@ public class GtexConverter extends BioDirectoryConverter
      * @param model the Model
      */
     public GtexConverter(ItemWriter writer, Model model) {
-        super(writer, model, null, null);
+        super(new MetricsItemWriter(new AsyncItemWriter(writer, "gtex"), "gtex"), model, null,
+                null);
+        MetricsItemWriter metricsWriter = (MetricsItemWriter) getItemWriter();
+        metrics = metricsWriter.getMetrics();
+        storeWriter = (AsyncItemWriter) metricsWriter.getWriter();
+        storeWriter.setMetrics(metrics);
         updateDataSets();
     }
 
@@ -86,21 +111,95 @@ public class GtexConverter extends BioDirectoryConverter
         dataSetEGene = dataSetEgene.getIdentifier();
     }
 
+    /**
+     * Store each gene as soon as it is created instead of in close().  Genes then don't hold
+     * their SNPs and rnaSeqResults collections, which are filled in from the reverse references
+     * SNP.gene and RNASeqResult.gene, so memory used scales with the number of genes rather
+     * than the number of results.
+     *
+     * @param storeGenesEarly "true" to store genes as soon as they are created
+     */
+    public void setGtexStoreGenesEarly(String storeGenesEarly) {
+        this.storeGenesEarly = Boolean.parseBoolean(storeGenesEarly.trim());
+    }
+
+    /**
+     * Number of threads to parse the signif_variant_gene_pairs files with.  The files are read
+     * in chunks of 10000 lines, which are parsed and their genes resolved by a pool of workers.
+     * Items are still created and stored on one thread in file order so the output is the same
+     * whatever the number of threads.  About twice as many chunks as threads are held in
+     * memory at once, however large the files are.
+     *
+     * @param threads number of worker threads, defaults to 1
+     */
+    public void setGtexThreads(String threads) {
+        this.threads = Integer.parseInt(threads.trim());
+        if (this.threads < 1) {
+            throw new IllegalArgumentException("gtex.threads must be at least 1, got " + threads);
+        }
+    }
+
+    /**
+     * Write items on a separate thread while the files are read.  Object ids aren't known
+     * until the items are written, so this can't be used with gtex.storeGenesEarly.
+     *
+     * @param asyncStore "true" to write items on a separate thread
+     */
+    public void setGtexAsyncStore(String asyncStore) {
+        storeWriter.setAsync(Boolean.parseBoolean(asyncStore.trim()));
+    }
+
     @Override
     public void process(File dataDir) throws Exception {
+        if (storeGenesEarly && storeWriter.isAsync()) {
+            throw new IllegalArgumentException("gtex.asyncStore can't be used with"
+                    + " gtex.storeGenesEarly");
+        }
 
         if (rslv == null) {
             rslv = IdResolverService.getIdResolverByOrganism(TAXON_ID);
         }
 
+        boolean processed = false;
+        try {
+            processFiles(dataDir);
+            processed = true;
+        } finally {
+            // a failed write is seen here rather than in close(), and if reading failed the
+            // writer thread isn't left waiting for more items and the metrics are closed, as
+            // close() won't be called
+            if (processed) {
+                storeWriter.flush();
+            } else {
+                storeWriter.abort();
+                metrics.close();
+            }
+        }
+    }
+
+    private void processFiles(File dataDir) throws Exception {
+        // created before any workers start so they share it
+        resolutionCache = new IdResolutionCache(rslv);
+        metrics.setResolutionCache(resolutionCache);
+
         List<File> files = readFilesInDir(dataDir);
+        List<File> snpFiles = new ArrayList<File>();
         for (File f : files) {
             String fileName = f.getName();
             if (fileName.contains("gene_median")) {
-                processExpression(new FileReader(f));
+                processExpression(metrics.countBytes(new FileReader(f)));
             } else if (fileName.contains("signif")) {
-                processSNPs(new FileReader(f), fileName);
+                snpFiles.add(f);
+            }
+        }
+        // sorted so genes and SNPs are created in the same order on every run
+        Collections.sort(snpFiles);
+        if (threads == 1) {
+            for (File f : snpFiles) {
+                processSNPs(metrics.countBytes(new FileReader(f)), f.getName());
             }
+        } else {
+            processSNPFiles(snpFiles);
         }
     }
 
@@ -108,13 +207,26 @@ public class GtexConverter extends BioDirectoryConverter
      * {@inheritDoc}
      */
     public void close() throws ObjectStoreException {
-        for (Item gene : genes.values()) {
-            try {
-                store(gene);
-            } catch (ObjectStoreException e) {
-                throw new RuntimeException(e);
+        LOG.info("Attribute values: " + attributeValues);
+        if (storeGenesEarly) {
+            // genes are already stored, add the data sets they are in
+            for (StoredGene gene : storedGenes.values()) {
+                if (!gene.dataSets.isEmpty()) {
+                    store(new ReferenceList("dataSets", new ArrayList<String>(gene.dataSets)),
+                            gene.objectId);
+                }
+            }
+        } else {
+            for (Item gene : genes.values()) {
+                try {
+                    store(gene);
+                } catch (ObjectStoreException e) {
+                    throw new RuntimeException(e);
+                }
             }
         }
+        storeWriter.flush();
+        metrics.close();
     }
 
     private List<File> readFilesInDir(File dir) {
@@ -140,27 +252,76 @@ public class GtexConverter extends BioDirectoryConverter
 
     private void processSNPs(Reader reader, String filename)
             throws IOException, ObjectStoreException {
-        Iterator<String[]> lineIter = FormattedTextParser.parseTabDelimitedReader(reader);
-        lineIter.next(); // move past header
+        DelimitedLineReader line = new DelimitedLineReader(reader, '\t');
+        line.next(); // move past header
         String tissue = parseFilename(filename);
-        while (lineIter.hasNext()) {
-            String[] line = lineIter.next();
-            if (line.length != 12) {
-                continue;
+        while (line.next()) {
+            SNPRow row = parseSNP(line);
+            if (row != null) {
+                storeSNP(row, tissue);
             }
-            String snpIdentifier = line[0];
-            String geneIdentifier = line[1];
-            String tssDistance = line[2];
-            String pValue = line[6];
+        }
+    }
 
-            Item gene = getGene(geneIdentifier);
-            if (gene == null) {
-                continue;
+    // parse and resolve chunks of the tissue files on worker threads, create and store items
+    // in order
+    private void processSNPFiles(List<File> snpFiles) throws Exception {
+        SNPChunkReader chunks = new SNPChunkReader(snpFiles);
+        // each parsed chunk is held in memory until it is stored, so don't read ahead too far
+        OrderedPipeline<SNPChunk, TissueSNPs> pipeline =
+            new OrderedPipeline<SNPChunk, TissueSNPs>("gtex", threads, threads * 2);
+        try {
+            pipeline.run(chunks, new OrderedPipeline.Transform<SNPChunk, TissueSNPs>() {
+                @Override
+                public TissueSNPs apply(SNPChunk chunk) throws IOException {
+                    return parseSNPChunk(chunk);
+                }
+            }, new OrderedPipeline.Sink<TissueSNPs>() {
+                @Override
+                public void accept(TissueSNPs tissueSNPs) throws ObjectStoreException {
+                    for (SNPRow row : tissueSNPs.rows) {
+                        storeSNP(row, tissueSNPs.tissue);
+                    }
+                }
+            });
+        } finally {
+            chunks.close();
+        }
+    }
+
+    // called from worker threads, must not create items
+    private TissueSNPs parseSNPChunk(SNPChunk chunk) throws IOException {
+        TissueSNPs tissueSNPs = new TissueSNPs(chunk.tissue);
+        DelimitedLineReader line = new DelimitedLineReader(new StringReader(chunk.lines), '\t');
+        while (line.next()) {
+            SNPRow row = parseSNP(line);
+            if (row != null) {
+                tissueSNPs.rows.add(row);
             }
-            String snp = getSNP(snpIdentifier, gene, tissue, tssDistance, pValue);
-            gene.addToCollection("SNPs", snp);
-            gene.addToCollection("dataSets", dataSetEGene);
         }
+        return tissueSNPs;
+    }
+
+    // thread safe, returns null if the line is malformed or the gene doesn't resolve
+    private SNPRow parseSNP(DelimitedLineReader line) {
+        metrics.rowRead();
+        if (line.getFieldCount() != 12) {
+            metrics.rowSkipped("malformed line");
+            return null;
+        }
+        String primaryIdentifier = resolveGene(line.getString(1));
+        if (primaryIdentifier == null) {
+            metrics.rowSkipped("unresolved gene");
+            return null;
+        }
+        return new SNPRow(line.getString(0), primaryIdentifier, line.getString(2),
+                line.getString(6));
+    }
+
+    private void storeSNP(SNPRow row, String tissue) throws ObjectStoreException {
+        Item gene = getResolvedGene(row.gene);
+        String snp = getSNP(row.identifier, gene, tissue, row.tssDistance, row.pValue);
+        addToGene(gene, "SNPs", snp, dataSetEGene);
     }
 
     // Nerve_Tibial_Analysis.v6p.egenes.txt
@@ -176,6 +337,7 @@ public class GtexConverter extends BioDirectoryConverter
 
         while (lineIter.hasNext()) {
             String[] line = lineIter.next();
+            metrics.rowRead();
 
             // process header
             if ("gene_id".equals(line[0])) {
@@ -183,11 +345,13 @@ public class GtexConverter extends BioDirectoryConverter
             }
             // keep going until we find the column heading
             if (headers == null) {
+                metrics.rowSkipped("header");
                 continue;
             }
             String geneIdentifier = line[0];
             Item gene = getGene(geneIdentifier);
             if (gene == null) {
+                metrics.rowSkipped("unresolved gene");
                 continue;
             }
 
@@ -196,8 +360,8 @@ public class GtexConverter extends BioDirectoryConverter
                 String columnName = headers[i];
                 Item item = createItem("RNASeqResult");
                 item.setReference("gene", gene);
-                item.setAttribute("tissue", columnName);
-                item.setAttribute("expressionType", "TPM");
+                attributeValues.setAttribute(item, "tissue", columnName);
+                attributeValues.setAttribute(item, "expressionType", "TPM");
                 String expressionScore = line[i];
                 // TODO if there isn't an expression score, maybe skip?
                 if (StringUtils.isNotEmpty(expressionScore)) {
@@ -205,8 +369,7 @@ public class GtexConverter extends BioDirectoryConverter
                 }
                 item.addToCollection("dataSets", dataSetRNASeq);
                 store(item);
-                gene.addToCollection("rnaSeqResults", item);
-                gene.addToCollection("dataSets", dataSetRNASeq);
+                addToGene(gene, "rnaSeqResults", item.getIdentifier(), dataSetRNASeq);
             }
         }
     }
@@ -217,23 +380,39 @@ public class GtexConverter extends BioDirectoryConverter
         if (primaryIdentifier == null) {
             return null;
         }
+        return getResolvedGene(primaryIdentifier);
+    }
 
+    private Item getResolvedGene(String primaryIdentifier) throws ObjectStoreException {
         Item item = genes.get(primaryIdentifier);
         if (item == null) {
             item = createItem("Gene");
             item.setAttribute("primaryIdentifier", primaryIdentifier);
             item.setReference("organism", getOrganism(TAXON_ID));
             genes.put(primaryIdentifier, item);
+            if (storeGenesEarly) {
+                storedGenes.put(item.getIdentifier(), new StoredGene(store(item)));
+            }
         }
         return item;
     }
 
+    private void addToGene(Item gene, String collectionName, String refId, String dataSet) {
+        if (storeGenesEarly) {
+            // the gene is stored and the collection is the reverse of refId's gene reference
+            storedGenes.get(gene.getIdentifier()).dataSets.add(dataSet);
+        } else {
+            gene.addToCollection(collectionName, refId);
+            gene.addToCollection("dataSets", dataSet);
+        }
+    }
+
     private String getSNP(String primaryIdentifier, Item gene, String tissue,
                           String tssDistance, String pValue)
             throws ObjectStoreException {
         Item item = createItem("SNP");
         item.setAttribute("primaryIdentifier", primaryIdentifier);
-        item.setAttribute("tissue", tissue);
+        attributeValues.setAttribute(item, "tissue", tissue);
         item.setAttribute("tssDistance", tssDistance);
         item.setAttribute("pValue", pValue);
         item.setReference("organism", getOrganism(TAXON_ID));
@@ -244,20 +423,133 @@ public class GtexConverter extends BioDirectoryConverter
     }
 
     private String resolveGene(String identifier) {
-        String id = identifier;
+        if (resolutionCache == null) {
+            resolutionCache = new IdResolutionCache(rslv);
+            metrics.setResolutionCache(resolutionCache);
+        }
+        // without a resolver the versioned identifier is stored, as it always was
+        if (!resolutionCache.hasTaxon(TAXON_ID)) {
+            return identifier;
+        }
         // ENSG00000225880.4
-        String[] bits = id.split("\\.");
-        String ensemblIdentifier = bits[0];
-        if (rslv != null && rslv.hasTaxon(TAXON_ID)) {
-            int resCount = rslv.countResolutions(TAXON_ID, ensemblIdentifier);
-            if (resCount != 1) {
-                LOG.debug("RESOLVER: failed to resolve gene to one identifier, ignoring gene: "
-                        + ensemblIdentifier + " count: " + resCount + " Human identifier: "
-                        + rslv.resolveId(TAXON_ID, ensemblIdentifier));
-                return null;
+        String[] bits = identifier.split("\\.");
+        return resolutionCache.resolve(TAXON_ID, bits[0]);
+    }
+
+    /**
+     * Reads the tissue files in order, in chunks of up to CHUNK_LINES lines without their
+     * headers.  Called from the pipeline's reader thread.
+     */
+    private class SNPChunkReader implements OrderedPipeline.Source<SNPChunk>
+    {
+        private final Iterator<File> files;
+        private BufferedReader reader = null;
+        private String tissue = null;
+
+        SNPChunkReader(List<File> files) {
+            this.files = files.iterator();
+        }
+
+        @Override
+        public synchronized SNPChunk next() throws IOException {
+            while (true) {
+                if (reader == null) {
+                    if (!files.hasNext()) {
+                        return null;
+                    }
+                    File file = files.next();
+                    reader = new BufferedReader(metrics.countBytes(new FileReader(file)));
+                    tissue = parseFilename(file.getName());
+                    skipHeader();
+                }
+                StringBuilder lines = new StringBuilder();
+                int count = 0;
+                String line = null;
+                while (count < CHUNK_LINES && (line = reader.readLine()) != null) {
+                    lines.append(line).append('\n');
+                    count++;
+                }
+                if (line == null) {
+                    close();
+                }
+                if (count > 0) {
+                    return new SNPChunk(tissue, lines.toString());
+                }
+            }
+        }
+
+        // as DelimitedLineReader does, the header is the first line not starting with #
+        private void skipHeader() throws IOException {
+            String line;
+            do {
+                line = reader.readLine();
+            } while (line != null && line.startsWith("#"));
+        }
+
+        // also called by processSNPFiles() if the pipeline fails
+        synchronized void close() throws IOException {
+            if (reader != null) {
+                reader.close();
+                reader = null;
             }
-            id = rslv.resolveId(TAXON_ID, ensemblIdentifier).iterator().next();
         }
-        return id;
+    }
+
+    /**
+     * Some lines of one tissue file.
+     */
+    private static class SNPChunk
+    {
+        private final String tissue;
+        private final String lines;
+
+        SNPChunk(String tissue, String lines) {
+            this.tissue = tissue;
+            this.lines = lines;
+        }
+    }
+
+    /**
+     * The SNPs read from one chunk of a tissue file.
+     */
+    private static class TissueSNPs
+    {
+        private final String tissue;
+        private final List<SNPRow> rows = new ArrayList<SNPRow>();
+
+        TissueSNPs(String tissue) {
+            this.tissue = tissue;
+        }
+    }
+
+    /**
+     * One line of a signif_variant_gene_pairs file, with the gene already resolved.
+     */
+    private static class SNPRow
+    {
+        private final String identifier;
+        private final String gene;
+        private final String tssDistance;
+        private final String pValue;
+
+        SNPRow(String identifier, String gene, String tssDistance, String pValue) {
+            this.identifier = identifier;
+            this.gene = gene;
+            this.tssDistance = tssDistance;
+            this.pValue = pValue;
+        }
+    }
+
+    /**
+     * A gene that has already been stored and the data sets to add to it in close().
+     */
+    private static class StoredGene
+    {
+        private final Integer objectId;
+        private final Set<String> dataSets = new LinkedHashSet<String>();
+
+        StoredGene(Integer objectId) {
+            this.objectId = objectId;
+        }
     }
 }
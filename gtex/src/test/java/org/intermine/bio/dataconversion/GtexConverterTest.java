@@ -11,14 +11,21 @@ package org.intermine.bio.dataconversion;
  */
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.intermine.dataconversion.ItemsTestCase;
 import org.intermine.dataconversion.MockItemWriter;
 import org.intermine.metadata.Model;
-import org.intermine.model.fulldata.Item;
+import org.intermine.xml.full.Attribute;
+import org.intermine.xml.full.Item;
+import org.intermine.xml.full.Reference;
+import org.intermine.xml.full.ReferenceList;
 
 public class GtexConverterTest extends ItemsTestCase
 {
@@ -33,7 +40,7 @@ public class GtexConverterTest extends ItemsTestCase
 
     public void setUp() throws Exception {
         super.setUp();
-        itemWriter = new MockItemWriter(new HashMap<String, Item>());
+        itemWriter = new MockItemWriter(new HashMap<String, org.intermine.model.fulldata.Item>());
         converter = new GtexConverter(itemWriter, model);
         converter.rslv = IdResolverService.getMockIdResolver("Gene");
         converter.rslv.addResolverEntry("9606", "123", Collections.singleton("ENSG00000225630"));
@@ -49,8 +56,111 @@ public class GtexConverterTest extends ItemsTestCase
         // uncomment to write out a new target items file
         //writeItemsFile(itemWriter.getItems(), "gtex-tgt-items.xml");
 
-        Set<org.intermine.xml.full.Item> expected = readItemSet(targetFile);
+        Set<Item> expected = readItemSet(targetFile);
 
         assertEquals(expected, itemWriter.getItems());
     }
+
+    public void testThreads() throws Exception {
+        File tmp = new File(getClass().getClassLoader().getResource(targetFile).toURI());
+        File datadir = tmp.getParentFile();
+        converter.setGtexThreads("4");
+        converter.process(datadir);
+        converter.close();
+
+        Set<Item> expected = readItemSet(targetFile);
+
+        assertEquals(expected, itemWriter.getItems());
+    }
+
+    public void testAsyncStore() throws Exception {
+        File tmp = new File(getClass().getClassLoader().getResource(targetFile).toURI());
+        File datadir = tmp.getParentFile();
+        converter.setGtexAsyncStore("true");
+        converter.process(datadir);
+        converter.close();
+
+        Set<Item> expected = readItemSet(targetFile);
+
+        assertEquals(expected, itemWriter.getItems());
+    }
+
+    public void testStoreGenesEarly() throws Exception {
+        File tmp = new File(getClass().getClassLoader().getResource(targetFile).toURI());
+        File datadir = tmp.getParentFile();
+        converter.setGtexStoreGenesEarly("true");
+        converter.process(datadir);
+        converter.close();
+
+        // the gene is stored before the other items are created, so identifiers differ from
+        // the target file, and it only gets its data sets from the reference lists stored in
+        // close().  SNPs and rnaSeqResults are left to the reverse references.
+        Set<Item> items = itemWriter.getItems();
+        assertEquals(describeItems(readItemSet(targetFile)), describeItems(items));
+
+        Map<String, Item> byId = getItemsById(items);
+        int genes = 0;
+        for (Item item : items) {
+            if ("Gene".equals(item.getClassName())) {
+                genes++;
+                assertNull(item.getCollection("SNPs"));
+                assertNull(item.getCollection("rnaSeqResults"));
+                assertEquals(Arrays.asList("DataSet[name=RNA-Seq Data]",
+                        "DataSet[name=Single-Tissue cis-eQTL Data]"),
+                        describeRefs(item.getCollection("dataSets"), byId));
+            }
+        }
+        assertEquals(1, genes);
+    }
+
+    // each item, with references described by the items they refer to rather than their
+    // identifiers, sorted.  Only the dataSets collection of genes is included.
+    private static List<String> describeItems(Set<Item> items) {
+        Map<String, Item> byId = getItemsById(items);
+        List<String> descriptions = new ArrayList<String>();
+        for (Item item : items) {
+            List<String> fields = new ArrayList<String>();
+            for (Reference ref : item.getReferences()) {
+                fields.add(ref.getName() + "=" + describe(byId.get(ref.getRefId())));
+            }
+            for (ReferenceList collection : item.getCollections()) {
+                if ("Gene".equals(item.getClassName())
+                        && !"dataSets".equals(collection.getName())) {
+                    continue;
+                }
+                fields.add(collection.getName() + "=" + describeRefs(collection, byId));
+            }
+            Collections.sort(fields);
+            descriptions.add(describe(item) + fields);
+        }
+        Collections.sort(descriptions);
+        return descriptions;
+    }
+
+    private static List<String> describeRefs(ReferenceList collection, Map<String, Item> byId) {
+        List<String> refs = new ArrayList<String>();
+        for (String refId : collection.getRefIds()) {
+            refs.add(describe(byId.get(refId)));
+        }
+        Collections.sort(refs);
+        return refs;
+    }
+
+    // class and attributes
+    private static String describe(Item item) {
+        List<String> attributes = new ArrayList<String>();
+        for (Attribute attribute : item.getAttributes()) {
+            attributes.add(attribute.getName() + "=" + attribute.getValue());
+        }
+        Collections.sort(attributes);
+        return item.getClassName() + attributes;
+    }
+
+    private static Map<String, Item> getItemsById(Set<Item> items) {
+        Map<String, Item> byId = new HashMap<String, Item>();
+        for (Item item : items) {
+            byId.put(item.getIdentifier(), item);
+        }
+        return byId;
+    }
 }
@@ -12,14 +12,12 @@ package org.intermine.bio.dataconversion;
 
 import java.io.Reader;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
 import org.intermine.dataconversion.ItemWriter;
 import org.intermine.metadata.Model;
 import org.intermine.objectstore.ObjectStoreException;
-import org.intermine.util.FormattedTextParser;
 import org.intermine.xml.full.Item;
 
 
@@ -36,6 +34,16 @@ public class HgncConverter extends BioFileConverter
     private Map<String, String> genes = new HashMap<String, String>();
     private static final String TAXON_ID = "9606";
 
+    // columns read from hgnc_complete_set.txt, the gene identifiers then the synonyms
+    private static final String[] COLUMNS = new String[] {
+        "entrez_id", "symbol", "ensembl_gene_id",
+        "hgnc_id", "alias_symbol", "alias_name", "prev_symbol", "prev_name", "vega_id",
+        "ucsc_id", "ena", "refseq_accession"};
+    private static final int ENTREZ_ID = 0;
+    private static final int SYMBOL = 1;
+    private static final int ENSEMBL_GENE_ID = 2;
+    private static final int HGNC_ID = 3;
+
     /**
      * Constructor
      * @param writer the ItemWriter used to handle the resultant items
@@ -52,54 +60,25 @@ public class HgncConverter extends BioFileConverter
      */
     @Override
     public void process(Reader reader) throws Exception {
-        Iterator<?> lineIter = FormattedTextParser.parseTabDelimitedReader(reader);
-
-        // skip header
-        lineIter.next();
+        DelimitedLineReader line = new DelimitedLineReader(reader, '\t');
+        // fails here if the file format has changed
+        int[] columns = line.readHeader(COLUMNS);
 
         // each gene is on a new line
-        while (lineIter.hasNext()) {
-            String[] line = (String[]) lineIter.next();
-
-            String entrezId = line[18];
-
-            if (StringUtils.isEmpty(entrezId)) {
+        while (line.next()) {
+            if (line.isEmpty(columns[ENTREZ_ID])) {
                 // we are only interested in genes that have an NCBI id.
                 continue;
             }
-
-            String symbol = line[1];
-            String ensemblGeneId = line[19];
+            String entrezId = line.getString(columns[ENTREZ_ID]);
+            String symbol = line.getString(columns[SYMBOL]);
+            String ensemblGeneId = line.getString(columns[ENSEMBL_GENE_ID]);
 
             String geneRefId = getGeneId(entrezId, symbol, ensemblGeneId);
 
-            String hgncId = line[0];
-            createSynonym(geneRefId, hgncId);
-
-            String aliasSymbol = line[8];
-            createSynonym(geneRefId, aliasSymbol);
-
-            String aliasName = line[9];
-            createSynonym(geneRefId, aliasName);
-
-            String prevSymbol = line[10];
-            createSynonym(geneRefId, prevSymbol);
-
-            String prevName = line[11];
-            createSynonym(geneRefId, prevName);
-
-            String vegaId = line[20];
-            createSynonym(geneRefId, vegaId);
-
-            String ucscId = line[21];
-            createSynonym(geneRefId, ucscId);
-
-            String ena = line[22];
-            createSynonym(geneRefId, ena);
-
-            String refseqAccession = line[23];
-            createSynonym(geneRefId, refseqAccession);
-
+            for (int i = HGNC_ID; i < COLUMNS.length; i++) {
+                createSynonym(geneRefId, line.getString(columns[i]));
+            }
         }
     }
 
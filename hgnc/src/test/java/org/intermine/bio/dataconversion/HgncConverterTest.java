@@ -0,0 +1,139 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.intermine.dataconversion.ItemsTestCase;
+import org.intermine.dataconversion.MockItemWriter;
+import org.intermine.metadata.Model;
+import org.intermine.xml.full.Item;
+
+public class HgncConverterTest extends ItemsTestCase
+{
+    Model model = Model.getInstanceByName("genomic");
+    private final String hgncFile = "hgnc_complete_set.txt";
+
+    public HgncConverterTest(String arg) {
+        super(arg);
+    }
+
+    public void testProcess() throws Exception {
+        Set<Item> items = convert(new InputStreamReader(getClass().getClassLoader()
+                .getResourceAsStream(hgncFile)));
+
+        Map<String, Item> genes = new HashMap<String, Item>();
+        Map<String, Set<String>> synonyms = new HashMap<String, Set<String>>();
+        for (Item item : items) {
+            if ("Gene".equals(item.getClassName())) {
+                genes.put(item.getAttribute("primaryIdentifier").getValue(), item);
+            }
+        }
+        for (Item item : items) {
+            if ("Synonym".equals(item.getClassName())) {
+                String subject = item.getReference("subject").getRefId();
+                if (!synonyms.containsKey(subject)) {
+                    synonyms.put(subject, new HashSet<String>());
+                }
+                synonyms.get(subject).add(item.getAttribute("value").getValue());
+            }
+        }
+
+        // A1CF has no NCBI id
+        assertEquals(new HashSet<String>(Arrays.asList("1", "503538")), genes.keySet());
+        Item gene = genes.get("503538");
+        assertEquals("A1BG-AS1", gene.getAttribute("symbol").getValue());
+        assertEquals("ENSG00000268895", gene.getAttribute("secondaryIdentifier").getValue());
+        assertEquals(new HashSet<String>(Arrays.asList("HGNC:37133", "FLJ23569", "NCRNA00181",
+                "A1BGAS", "A1BG-AS", "A1BG antisense RNA (non-protein coding)",
+                "A1BG antisense RNA 1 (non-protein coding)", "OTTHUMG00000183508",
+                "uc002qse.3", "BC040926", "NR_015380")),
+                synonyms.get(gene.getIdentifier()));
+        gene = genes.get("1");
+        assertEquals("A1BG", gene.getAttribute("symbol").getValue());
+        assertEquals(new HashSet<String>(Arrays.asList("HGNC:5", "OTTHUMG00000183507",
+                "uc002qsd.5", "NM_130786")), synonyms.get(gene.getIdentifier()));
+    }
+
+    public void testColumnOrder() throws Exception {
+        // columns are found by name, so their order doesn't matter
+        List<String[]> lines = readLines();
+        StringBuilder reversed = new StringBuilder();
+        for (String[] line : lines) {
+            List<String> fields = new ArrayList<String>(Arrays.asList(line));
+            Collections.reverse(fields);
+            reversed.append(join(fields)).append('\n');
+        }
+        assertEquals(convert(new InputStreamReader(getClass().getClassLoader()
+                .getResourceAsStream(hgncFile))),
+                convert(new StringReader(reversed.toString())));
+    }
+
+    public void testMissingColumn() throws Exception {
+        List<String[]> lines = readLines();
+        int column = Arrays.asList(lines.get(0)).indexOf("ensembl_gene_id");
+        StringBuilder dropped = new StringBuilder();
+        for (String[] line : lines) {
+            List<String> fields = new ArrayList<String>(Arrays.asList(line));
+            fields.remove(column);
+            dropped.append(join(fields)).append('\n');
+        }
+        try {
+            convert(new StringReader(dropped.toString()));
+            fail("expected exception");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("[ensembl_gene_id]"));
+        }
+    }
+
+    private Set<Item> convert(Reader reader) throws Exception {
+        MockItemWriter itemWriter =
+            new MockItemWriter(new HashMap<String, org.intermine.model.fulldata.Item>());
+        HgncConverter converter = new HgncConverter(itemWriter, model);
+        converter.process(reader);
+        converter.close();
+        return itemWriter.getItems();
+    }
+
+    private List<String[]> readLines() throws Exception {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(getClass()
+                .getClassLoader().getResourceAsStream(hgncFile)));
+        List<String[]> lines = new ArrayList<String[]>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lines.add(line.split("\t", -1));
+        }
+        reader.close();
+        return lines;
+    }
+
+    private static String join(List<String> fields) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                sb.append('\t');
+            }
+            sb.append(fields.get(i));
+        }
+        return sb.toString();
+    }
+}
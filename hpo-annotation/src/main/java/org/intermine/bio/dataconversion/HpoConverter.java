@@ -15,6 +15,8 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -23,7 +25,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.apache.commons.collections.keyvalue.MultiKey;
 import org.apache.commons.lang.StringUtils;
 import org.intermine.dataconversion.ItemWriter;
 import org.intermine.metadata.Model;
@@ -49,18 +50,35 @@ public class HpoConverter extends BioDirectoryConverter
     private static final String NEG_FILE = "phenotype_annotation_negated.tab";
     private static final String GENE_FILE = "genes_to_phenotype.txt";
     private String omimFile = null;
+    private int threads = 1;
+    // lines of a file parsed at once by a worker thread
+    private static final int CHUNK_LINES = 10000;
     private static final String GENE_ENTRY = "Asterisk";
     private static final String GENE_PHENOTYPE_ENTRY = "Plus";
     private static final String OBSOLETE = "Caret";
 
-    private Map<String, Item> diseases = new HashMap<String, Item>();
-    private Map<String, Item> hpoTerms = new HashMap<String, Item>();
-    private Map<String, Item> genes = new HashMap<String, Item>();
-    private Set<String> omimDiseaseMasterList = new HashSet<String>();
+    // items are stored when they are created, these map to their identifiers
+    // keyed by MIM number
+    private LongHashMap<String> diseases = new LongHashMap<String>();
+    private Map<String, String> hpoTerms = new HashMap<String, String>();
+    private Map<String, String> genes = new HashMap<String, String>();
+    // MIM numbers of the OMIM entries that are diseases, see processOMIMFile()
+    private LongHashSet omimDiseaseMasterList = new LongHashSet();
     private Map<String, String> evidenceCodes = new HashMap<String, String>();
-    private Map<MultiKey, Item> annotations = new HashMap<MultiKey, Item>();
+    // keyed by HPO term, disease and qualifier packed into a long, see getAnnotationKey()
+    private LongHashMap<String> annotations = new LongHashMap<String>();
+    // for any that can't be packed, not expected with current files
+    private Map<String, String> otherAnnotations = new HashMap<String, String>();
+    // the collections of the items above, stored in close()
+    private CollectionLog collections = null;
     private Map<String, String> publications = new HashMap<String, String>();
     private String ontologyItemId = null;
+    private ConverterMetrics metrics;
+
+    private static final String HPO_PREFIX = "HP:";
+    private static final String OMIM_DB = "OMIM";
+    private static final String OMIM_PREFIX = OMIM_DB + ":";
+    private static final String NOT_QUALIFIER = "NOT";
 
     private static final String HUMAN_TAXON = "9606";
     private String organism = getOrganism(HUMAN_TAXON);
@@ -72,14 +90,16 @@ public class HpoConverter extends BioDirectoryConverter
      * @throws Exception if something goes wrong
      */
     public HpoConverter(ItemWriter writer, Model model) throws Exception {
-        super(writer, model, DATA_SOURCE_NAME, DATASET_TITLE, "https://hpo.jax.org/app/license");
+        super(new MetricsItemWriter(writer, "hpo-annotation"), model, DATA_SOURCE_NAME,
+                DATASET_TITLE, "https://hpo.jax.org/app/license");
+        metrics = ((MetricsItemWriter) getItemWriter()).getMetrics();
     }
 
     @Override
     public void process(File dataDir) throws Exception {
         Map<String, File> files = readFilesInDir(dataDir);
 
-        String[] requiredFiles = new String[] {HPOTEAM_FILE, NEG_FILE};
+        String[] requiredFiles = new String[] {GENE_FILE, HPOTEAM_FILE, NEG_FILE};
         Set<String> missingFiles = new HashSet<String>();
         for (String requiredFile : requiredFiles) {
             if (!files.containsKey(requiredFile)) {
@@ -92,11 +112,27 @@ public class HpoConverter extends BioDirectoryConverter
                     + dataDir.getAbsolutePath() + ", was missing " + missingFiles);
         }
 
-        ontologyItemId = storeOntology();
-        processOMIMFile(new FileReader(omimFile));
-        processGeneFile(new FileReader(files.get(GENE_FILE)));
-        processAnnotationFile(new FileReader(files.get(HPOTEAM_FILE)));
-        processAnnotationFile(new FileReader(files.get(NEG_FILE)));
+        collections = new CollectionLog();
+        boolean processed = false;
+        try {
+            ontologyItemId = storeOntology();
+            processOMIMFile(metrics.countBytes(new FileReader(omimFile)));
+            if (threads == 1) {
+                processGeneFile(metrics.countBytes(new FileReader(files.get(GENE_FILE))));
+                processAnnotationFile(metrics.countBytes(new FileReader(
+                        files.get(HPOTEAM_FILE))));
+                processAnnotationFile(metrics.countBytes(new FileReader(files.get(NEG_FILE))));
+            } else {
+                processFiles(Arrays.asList(files.get(GENE_FILE), files.get(HPOTEAM_FILE),
+                        files.get(NEG_FILE)));
+            }
+            processed = true;
+        } finally {
+            if (!processed) {
+                // unregistered here, as close() won't be called
+                metrics.close();
+            }
+        }
     }
 
     /**
@@ -111,6 +147,22 @@ public class HpoConverter extends BioDirectoryConverter
         }
     }
 
+    /**
+     * Set the number of threads parsing the files, from the hpo.threads source property.  With
+     * more than one, the gene file and the two annotation files are read in chunks of lines
+     * after the OMIM file has been read and the chunks parsed on worker threads, while items
+     * are still created and stored on the calling thread in the same order as with one, so the
+     * output doesn't change.  At most a few chunks per thread are held in memory at once.
+     *
+     * @param threads number of worker threads, defaults to 1
+     */
+    public void setHpoThreads(String threads) {
+        this.threads = Integer.parseInt(threads.trim());
+        if (this.threads < 1) {
+            throw new IllegalArgumentException("hpo.threads must be at least 1, got " + threads);
+        }
+    }
+
     private static Map<String, File> readFilesInDir(File dir) {
         Map<String, File> files = new HashMap<String, File>();
         for (File file : dir.listFiles()) {
@@ -121,17 +173,28 @@ public class HpoConverter extends BioDirectoryConverter
 
     /**
      * @param reader file reader
-     * @throws IOException if can't read file
-     * @throws ObjectStoreException if can't store to db
+     * @throws Exception if can't read file or store to db
      */
-    protected void processGeneFile(Reader reader) throws IOException, ObjectStoreException {
+    protected void processGeneFile(Reader reader) throws Exception {
+        parseGeneFile(reader, new OrderedPipeline.Sink<Row>() {
+            @Override
+            public void accept(Row row) throws IOException, ObjectStoreException {
+                row.store();
+            }
+        });
+    }
+
+    // called from worker threads, must not create items
+    private void parseGeneFile(Reader reader, OrderedPipeline.Sink<Row> sink) throws Exception {
         Iterator<?> lineIter = FormattedTextParser.
                 parseTabDelimitedReader(new BufferedReader(reader));
 
         while (lineIter.hasNext()) {
             String[] line = (String[]) lineIter.next();
+            metrics.rowRead();
 
             if (line[0].startsWith("#")) {
+                metrics.rowSkipped("comment");
                 continue;
             }
 
@@ -139,64 +202,123 @@ public class HpoConverter extends BioDirectoryConverter
             String identifier = line[0];
             String hpoId = line[2];
 
-            Item disease = getDisease(diseaseId);
-            if (disease == null) {
+            long mimNumber = parseNumber(diseaseId, OMIM_PREFIX);
+            if (!isDisease(mimNumber)) {
                 // whoops this is a gene. genes have OMIM IDs too. ignore.
+                metrics.rowSkipped("not a disease");
                 continue;
             }
-            Item gene = getGene(identifier);
-            gene.addToCollection("diseases", disease);
-            disease.addToCollection("genes", gene);
-            Item term = getTerm(hpoId);
-            term.addToCollection("diseases", disease);
+            sink.accept(new GeneRow(mimNumber, identifier, hpoId));
         }
     }
 
-    private Item getDisease(String omimId) {
-        // only create diseases that are really diseases not genes.
-        if (!omimDiseaseMasterList.contains(omimId)) {
-            return null;
+    // parse chunks of the files on worker threads, create and store items in file order
+    private void processFiles(List<File> files) throws Exception {
+        LineChunkReader chunks = new LineChunkReader(files);
+        // each parsed chunk is held in memory until it is stored, so don't read ahead too far
+        OrderedPipeline<LineChunk, List<Row>> pipeline =
+            new OrderedPipeline<LineChunk, List<Row>>("hpo", threads, threads * 2);
+        try {
+            pipeline.run(chunks, new OrderedPipeline.Transform<LineChunk, List<Row>>() {
+                @Override
+                public List<Row> apply(LineChunk chunk) throws Exception {
+                    final List<Row> rows = new ArrayList<Row>();
+                    OrderedPipeline.Sink<Row> sink = new OrderedPipeline.Sink<Row>() {
+                        @Override
+                        public void accept(Row row) {
+                            rows.add(row);
+                        }
+                    };
+                    Reader reader = new StringReader(chunk.lines);
+                    if (chunk.geneFile) {
+                        parseGeneFile(reader, sink);
+                    } else {
+                        parseAnnotationFile(reader, sink);
+                    }
+                    return rows;
+                }
+            }, new OrderedPipeline.Sink<List<Row>>() {
+                @Override
+                public void accept(List<Row> rows) throws IOException, ObjectStoreException {
+                    for (Row row : rows) {
+                        row.store();
+                    }
+                }
+            });
+        } finally {
+            chunks.close();
         }
-        Item item = diseases.get(omimId);
-        if (item == null) {
-            item = createItem("Disease");
-            item.setAttribute("primaryIdentifier", omimId);
-            diseases.put(omimId, item);
+    }
+
+    // only create diseases that are really diseases not genes. the master list is complete
+    // before any file is parsed and only read after that, so this is safe from worker threads
+    private boolean isDisease(long mimNumber) {
+        return mimNumber >= 0 && omimDiseaseMasterList.contains(mimNumber);
+    }
+
+    // mimNumber must be a disease, see isDisease()
+    private String getDisease(long mimNumber) throws ObjectStoreException {
+        String refId = diseases.get(mimNumber);
+        if (refId == null) {
+            Item item = createItem("Disease");
+            item.setAttribute("primaryIdentifier", OMIM_PREFIX + mimNumber);
+            refId = storeOwner(item);
+            diseases.put(mimNumber, refId);
         }
-        return item;
+        return refId;
     }
 
-    private Item getTerm(String hpoTerm) {
-        Item item = hpoTerms.get(hpoTerm);
-        if (item == null) {
-            item = createItem("HPOTerm");
+    private String getTerm(String hpoTerm) throws ObjectStoreException {
+        String refId = hpoTerms.get(hpoTerm);
+        if (refId == null) {
+            Item item = createItem("HPOTerm");
             item.setAttribute("identifier", hpoTerm);
             item.setReference("ontology", ontologyItemId);
-            hpoTerms.put(hpoTerm, item);
+            refId = storeOwner(item);
+            hpoTerms.put(hpoTerm, refId);
         }
-        return item;
+        return refId;
     }
 
-    private Item getGene(String identifier) throws ObjectStoreException {
-        Item item = genes.get(identifier);
-        if (item == null) {
-            item = createItem("Gene");
+    private String getGene(String identifier) throws ObjectStoreException {
+        String refId = genes.get(identifier);
+        if (refId == null) {
+            Item item = createItem("Gene");
             item.setAttribute("primaryIdentifier", identifier);
             item.setReference("organism", organism);
-            genes.put(identifier, item);
+            refId = storeOwner(item);
+            genes.put(identifier, refId);
         }
-        return item;
+        return refId;
+    }
+
+    // store an item that has collections, they are added to it in close()
+    private String storeOwner(Item item) throws ObjectStoreException {
+        Integer objectId = store(item);
+        collections.addOwner(item.getIdentifier(), objectId);
+        return item.getIdentifier();
     }
 
     /**
      * @param reader file reader
-     * @throws IOException if can't read file
-     * @throws ObjectStoreException if can't store to db
+     * @throws Exception if can't read file or store to db
      */
-    protected void processAnnotationFile(Reader reader) throws IOException, ObjectStoreException {
+    protected void processAnnotationFile(Reader reader) throws Exception {
+        parseAnnotationFile(reader, new OrderedPipeline.Sink<Row>() {
+            @Override
+            public void accept(Row row) throws IOException, ObjectStoreException {
+                row.store();
+            }
+        });
+    }
+
+    // called from worker threads, must not create items
+    private void parseAnnotationFile(Reader reader, OrderedPipeline.Sink<Row> sink)
+        throws Exception {
         Iterator<String[]> lineIter = FormattedTextParser.parseTabDelimitedReader(reader);
         while (lineIter.hasNext()) {
             String[] array = lineIter.next();
+            metrics.rowRead();
             // HPO Annotation File Format:
             // http://human-phenotype-ontology.github.io/documentation.html
             if (array.length < 9) {
@@ -207,90 +329,154 @@ public class HpoConverter extends BioDirectoryConverter
             // e.g. OMIM
             String db = array[0];
             if (ignoreDbList.contains(db)) {
+                metrics.rowSkipped("ignored database");
                 continue;
             }
 
-            // e.g. OMIM:100200
-            String dbId = db + ":" + array[1];
-            // e.g. NOT
-            String qualifier = array[3];
-            // HP:0000028
-            String hpoIdentifier = array[4];
-            //  PMID:17088400 OR OMIM:100050
-            String dbRef = array[5];
-            // e.g. IEA
-            String evidenceCode = array[6];
-            // e.g RARE
-            String frequency = array[8];
-            // HPO:curators
-            String assignedBy = array[13];
-
-            String evidenceCodeRefId = getEvidenceCode(evidenceCode);
-
-            Item disease = getDisease(dbId);
-            if (disease == null) {
-                // whoops this is a gene. genes have OMIM IDs too. ignore.
-                continue;
-            }
-            Item evidence = createItem("HPOEvidence");
-            evidence.setReference("diseaseReference", disease);
-            if (dbRef.isEmpty()) {
-                dbRef = dbId;
-            }
-            evidence.setAttribute("source", dbRef);
-            if (StringUtils.isNotEmpty(dbRef)) {
-                String[] bits = dbRef.split(";");
-                for (String bit : bits) {
-                    if (bit.toUpperCase().startsWith("PMID")) {
-                        String refId = getPublication(bit);
-                        if (refId != null) {
-                            evidence.addToCollection("publications", refId);
-                        }
+            // e.g. 100200, only OMIM entries can be diseases
+            long mimNumber = OMIM_DB.equals(db) ? parseNumber(array[1], "") : -1;
+            // genes still get their evidence code, so they are passed on too
+            sink.accept(new AnnotationRow(isDisease(mimNumber) ? mimNumber : -1, array));
+        }
+    }
+
+    private void storeAnnotation(long mimNumber, String[] array)
+        throws IOException, ObjectStoreException {
+        // e.g. OMIM
+        String db = array[0];
+        // e.g. NOT
+        String qualifier = array[3];
+        // HP:0000028
+        String hpoIdentifier = array[4];
+        //  PMID:17088400 OR OMIM:100050
+        String dbRef = array[5];
+        // e.g. IEA
+        String evidenceCode = array[6];
+        // e.g RARE
+        String frequency = array[8];
+        // HPO:curators
+        String assignedBy = array[13];
+
+        String evidenceCodeRefId = getEvidenceCode(evidenceCode);
+
+        if (mimNumber < 0) {
+            // whoops this is a gene. genes have OMIM IDs too. ignore.
+            metrics.rowSkipped("not a disease");
+            return;
+        }
+        String disease = getDisease(mimNumber);
+        // e.g. OMIM:100200
+        String dbId = db + ":" + array[1];
+        Item evidence = createItem("HPOEvidence");
+        evidence.setReference("diseaseReference", disease);
+        if (dbRef.isEmpty()) {
+            dbRef = dbId;
+        }
+        evidence.setAttribute("source", dbRef);
+        if (StringUtils.isNotEmpty(dbRef)) {
+            String[] bits = dbRef.split(";");
+            for (String bit : bits) {
+                if (bit.toUpperCase().startsWith("PMID")) {
+                    String refId = getPublication(bit);
+                    if (refId != null) {
+                        evidence.addToCollection("publications", refId);
                     }
                 }
             }
+        }
 
-            evidence.setReference("code", evidenceCodeRefId);
-            if (!frequency.isEmpty()) {
-                evidence.setAttribute("frequencyModifier", frequency);
-            }
-            if (!assignedBy.isEmpty()) {
-                evidence.setAttribute("assignedBy", assignedBy);
-            }
-            store(evidence);
-
-            Item annotation = getAnnotation(hpoIdentifier, dbId, qualifier);
-            annotation.addToCollection("evidences", evidence);
-            if (disease != null) {
-                disease.addToCollection("hpoAnnotations", annotation);
-            }
+        evidence.setReference("code", evidenceCodeRefId);
+        if (!frequency.isEmpty()) {
+            evidence.setAttribute("frequencyModifier", frequency);
+        }
+        if (!assignedBy.isEmpty()) {
+            evidence.setAttribute("assignedBy", assignedBy);
         }
+        store(evidence);
+
+        String annotation = getAnnotation(hpoIdentifier, mimNumber, dbId, qualifier);
+        collections.add(annotation, "evidences", evidence.getIdentifier());
+        collections.add(disease, "hpoAnnotations", annotation);
     }
 
-    private Item getAnnotation(String hpoId, String diseaseId, String qualifier)
-        throws ObjectStoreException {
-        MultiKey key = new MultiKey(hpoId, diseaseId, qualifier);
-        Item annotation = annotations.get(key);
-        if (annotation == null) {
-            annotation = createItem("HPOAnnotation");
-            Item hpoTerm = getTerm(hpoId);
+    private String getAnnotation(String hpoId, long mimNumber, String diseaseId,
+            String qualifier) throws IOException, ObjectStoreException {
+        long key = getAnnotationKey(hpoId, mimNumber, qualifier);
+        String otherKey = (key < 0) ? hpoId + "\t" + diseaseId + "\t" + qualifier : null;
+        String refId = (key < 0) ? otherAnnotations.get(otherKey) : annotations.get(key);
+        if (refId == null) {
+            Item annotation = createItem("HPOAnnotation");
+            String hpoTerm = getTerm(hpoId);
             annotation.setReference("hpoTerm", hpoTerm);
-            hpoTerm.addToCollection("hpoAnnotations", annotation);
             if (!qualifier.isEmpty()) {
                 annotation.setAttribute("qualifier", qualifier);
             }
-            annotations.put(key, annotation);
+            refId = storeOwner(annotation);
+            collections.add(hpoTerm, "hpoAnnotations", refId);
+            if (key < 0) {
+                otherAnnotations.put(otherKey, refId);
+            } else {
+                annotations.put(key, refId);
+            }
+        }
+        return refId;
+    }
+
+    /**
+     * Pack an annotation into a long: the HPO number in bits 33 and up, the OMIM number in
+     * bits 1 to 32 and whether the qualifier is NOT in bit 0.
+     *
+     * @param hpoId e.g. HP:0000028
+     * @param omim e.g. 100200
+     * @param qualifier empty or NOT
+     * @return the key, or -1 if the HPO identifier isn't numeric or the qualifier isn't known
+     */
+    private static long getAnnotationKey(String hpoId, long omim, String qualifier) {
+        long hpo = parseNumber(hpoId, HPO_PREFIX);
+        if (hpo < 0 || hpo >= (1L << 30) || omim < 0 || omim >= (1L << 32)) {
+            return -1;
         }
-        return annotation;
+        long not;
+        if (qualifier.isEmpty()) {
+            not = 0;
+        } else if (NOT_QUALIFIER.equals(qualifier)) {
+            not = 1;
+        } else {
+            return -1;
+        }
+        return (hpo << 33) | (omim << 1) | not;
+    }
+
+    // the number after the prefix, or -1 if there isn't one
+    private static long parseNumber(String identifier, String prefix) {
+        int length = identifier.length();
+        if (!identifier.startsWith(prefix) || length == prefix.length()
+                || length - prefix.length() > 18) {
+            return -1;
+        }
+        long number = 0;
+        for (int i = prefix.length(); i < length; i++) {
+            char c = identifier.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            number = number * 10 + (c - '0');
+        }
+        return number;
     }
 
     @Override
     public void close() throws Exception {
-        store(hpoTerms.values());
-        store(diseases.values());
-        store(genes.values());
-        store(annotations.values());
+        if (collections != null) {
+            // one item's collections are read back into memory at a time
+            try {
+                collections.storeCollections(this);
+            } finally {
+                collections.close();
+            }
+        }
         super.close();
+        metrics.close();
     }
 
     private String storeOntology() throws ObjectStoreException {
@@ -339,6 +525,7 @@ public class HpoConverter extends BioDirectoryConverter
 
         while (lineIter.hasNext()) {
             String[] line = (String[]) lineIter.next();
+            metrics.rowRead();
 
             String prefix = line[0].trim();
             String mimId = line[1];
@@ -350,7 +537,120 @@ public class HpoConverter extends BioDirectoryConverter
                 continue;
             }
 
-            omimDiseaseMasterList.add("OMIM:" + mimId);
+            long mimNumber = parseNumber(mimId, "");
+            if (mimNumber >= 0) {
+                omimDiseaseMasterList.add(mimNumber);
+            }
+        }
+    }
+
+    /**
+     * Reads the files in order, in chunks of up to CHUNK_LINES lines.  Called from the
+     * pipeline's reader thread.
+     */
+    private class LineChunkReader implements OrderedPipeline.Source<LineChunk>
+    {
+        private final Iterator<File> files;
+        private BufferedReader reader = null;
+        private boolean geneFile = false;
+
+        LineChunkReader(List<File> files) {
+            this.files = files.iterator();
+        }
+
+        @Override
+        public synchronized LineChunk next() throws IOException {
+            while (true) {
+                if (reader == null) {
+                    if (!files.hasNext()) {
+                        return null;
+                    }
+                    File file = files.next();
+                    reader = new BufferedReader(metrics.countBytes(new FileReader(file)));
+                    geneFile = GENE_FILE.equals(file.getName());
+                }
+                StringBuilder lines = new StringBuilder();
+                int count = 0;
+                String line = null;
+                while (count < CHUNK_LINES && (line = reader.readLine()) != null) {
+                    lines.append(line).append('\n');
+                    count++;
+                }
+                if (line == null) {
+                    close();
+                }
+                if (count > 0) {
+                    return new LineChunk(geneFile, lines.toString());
+                }
+            }
+        }
+
+        // also called by processFiles() if the pipeline fails
+        synchronized void close() throws IOException {
+            if (reader != null) {
+                reader.close();
+                reader = null;
+            }
+        }
+    }
+
+    /**
+     * Some lines of one file.
+     */
+    private static class LineChunk
+    {
+        private final boolean geneFile;
+        private final String lines;
+
+        LineChunk(boolean geneFile, String lines) {
+            this.geneFile = geneFile;
+            this.lines = lines;
+        }
+    }
+
+    // a parsed line, created on any thread and stored on the thread that runs process()
+    private abstract class Row
+    {
+        abstract void store() throws IOException, ObjectStoreException;
+    }
+
+    private class GeneRow extends Row
+    {
+        private final long mimNumber;
+        private final String identifier;
+        private final String hpoId;
+
+        GeneRow(long mimNumber, String identifier, String hpoId) {
+            this.mimNumber = mimNumber;
+            this.identifier = identifier;
+            this.hpoId = hpoId;
+        }
+
+        @Override
+        void store() throws IOException, ObjectStoreException {
+            String disease = getDisease(mimNumber);
+            String gene = getGene(identifier);
+            collections.add(gene, "diseases", disease);
+            collections.add(disease, "genes", gene);
+            String term = getTerm(hpoId);
+            collections.add(term, "diseases", disease);
+        }
+    }
+
+    private class AnnotationRow extends Row
+    {
+        // -1 if the line isn't for a disease
+        private final long mimNumber;
+        private final String[] line;
+
+        AnnotationRow(long mimNumber, String[] line) {
+            this.mimNumber = mimNumber;
+            this.line = line;
+        }
+
+        @Override
+        void store() throws IOException, ObjectStoreException {
+            storeAnnotation(mimNumber, line);
         }
     }
 }
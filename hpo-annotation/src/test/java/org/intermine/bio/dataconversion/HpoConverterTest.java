@@ -0,0 +1,72 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Set;
+
+import org.intermine.dataconversion.ItemsTestCase;
+import org.intermine.dataconversion.MockItemWriter;
+import org.intermine.metadata.Model;
+import org.intermine.xml.full.Item;
+
+public class HpoConverterTest extends ItemsTestCase
+{
+    Model model = Model.getInstanceByName("genomic");
+    private final String targetFile = "HpoConverterTest_tgt.xml";
+
+    public HpoConverterTest(String arg) {
+        super(arg);
+    }
+
+    public void testProcess() throws Exception {
+        Set<Item> items = convert("1");
+
+        // uncomment to write out a new target items file
+        //writeItemsFile(items, "hpo-tgt-items.xml");
+
+        assertEquals(readItemSet(targetFile), items);
+    }
+
+    public void testThreads() throws Exception {
+        assertEquals(convert("1"), convert("3"));
+    }
+
+    public void testMissingGeneFile() throws Exception {
+        HpoConverter converter = new HpoConverter(
+                new MockItemWriter(new HashMap<String, org.intermine.model.fulldata.Item>()),
+                model);
+        converter.setHpoThreads("3");
+        // has the OMIM file but none of the HPO files
+        File dataDir = new File(getClass().getClassLoader().getResource("mimTitles.txt")
+                .toURI()).getParentFile();
+        try {
+            converter.process(dataDir);
+            fail("expected exception");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("genes_to_phenotype.txt"));
+        }
+    }
+
+    private Set<Item> convert(String threads) throws Exception {
+        MockItemWriter itemWriter =
+            new MockItemWriter(new HashMap<String, org.intermine.model.fulldata.Item>());
+        HpoConverter converter = new HpoConverter(itemWriter, model);
+        File omimFile = new File(getClass().getClassLoader().getResource("mimTitles.txt")
+                .toURI());
+        converter.setHpoDiseaseFile(omimFile.getAbsolutePath());
+        converter.setHpoThreads(threads);
+        converter.process(new File(omimFile.getParentFile(), "hpo"));
+        converter.close();
+        return itemWriter.getItems();
+    }
+}
@@ -12,7 +12,6 @@ package org.intermine.bio.dataconversion;
 
 import java.io.Reader;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
@@ -20,7 +19,6 @@ import org.apache.log4j.Logger;
 import org.intermine.dataconversion.ItemWriter;
 import org.intermine.metadata.Model;
 import org.intermine.objectstore.ObjectStoreException;
-import org.intermine.util.FormattedTextParser;
 import org.intermine.xml.full.Item;
 
 /**
@@ -46,6 +44,7 @@ public class HugeGwasConverter extends BioFileConverter
     private static final Logger LOG = Logger.getLogger(HugeGwasConverter.class);
 
     protected IdResolver rslv;
+    private IdResolutionCache resolutionCache;
 
     /**
      * Constructor
@@ -65,37 +64,36 @@ public class HugeGwasConverter extends BioFileConverter
             rslv = IdResolverService.getIdResolverByTaxonId(HUMAN_TAXON, false);
         }
 
-        Iterator<?> lineIter = FormattedTextParser.parseTabDelimitedReader(reader);
+        DelimitedLineReader line = new DelimitedLineReader(reader, '\t');
 
         // skip header
-        lineIter.next();
+        line.next();
 
-        while (lineIter.hasNext()) {
-            String[] line = (String[]) lineIter.next();
-            if (line.length <= 1) {
+        while (line.next()) {
+            if (line.getFieldCount() <= 1) {
                 continue;
             }
 
-            String pubIdentifier = getPub(line[1]);
-            String geneIdentifier = getGene(line[17]);
-            String snp = line[21];
+            String pubIdentifier = getPub(line.getString(1));
+            String geneIdentifier = getGene(line.getString(17));
+            String snp = line.getString(21);
 
             // gwas
-            String firstAuthor = line[2];
-            String initialSample = line[8];
-            String name = line[6];
-            String replicateSample = line[9];
-            String expDate = line[3];
+            String firstAuthor = line.getString(2);
+            String initialSample = line.getString(8);
+            String name = line.getString(6);
+            String replicateSample = line.getString(9);
+            String expDate = line.getString(3);
             String year = null;
             if (expDate != null) {
                 year = expDate.substring(0, 4);
             }
 
             // result
-            String associatedVariantRiskAllele = line[20];
-            String phenotype = line[7];
-            Double pValue = parsePValue(line[27]);
-            String riskAlleleFreqInControls = line[26];
+            String associatedVariantRiskAllele = line.getString(20);
+            String phenotype = line.getString(7);
+            Double pValue = parsePValue(line.getString(27));
+            String riskAlleleFreqInControls = line.getString(26);
 
             Item result = createItem("GWASResult");
             result.setReference("SNP", getSnpIdentifier(snp));
@@ -227,18 +225,20 @@ public class HugeGwasConverter extends BioFileConverter
     }
 
     private String resolveGene(String identifier) {
-        String id = identifier;
-
-        if (rslv != null && rslv.hasTaxon(HUMAN_TAXON)) {
-            int resCount = rslv.countResolutions(HUMAN_TAXON, identifier);
-            if (resCount != 1) {
-                LOG.info("RESOLVER: failed to resolve gene to one identifier, ignoring gene: "
-                         + identifier + " count: " + resCount + " Human identifier: "
-                         + rslv.resolveId(HUMAN_TAXON, identifier));
-                return null;
-            }
-            id = rslv.resolveId(HUMAN_TAXON, identifier).iterator().next();
+        if (resolutionCache == null) {
+            resolutionCache = new IdResolutionCache(rslv);
+        }
+        return resolutionCache.resolve(HUMAN_TAXON, identifier);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws Exception {
+        if (resolutionCache != null) {
+            resolutionCache.logFailures();
         }
-        return id;
+        super.close();
     }
 }
@@ -0,0 +1,367 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.intermine.dataconversion.ItemWriter;
+import org.intermine.model.fulldata.Attribute;
+import org.intermine.model.fulldata.Item;
+import org.intermine.model.fulldata.Reference;
+import org.intermine.model.fulldata.ReferenceList;
+import org.intermine.objectstore.ObjectStoreException;
+
+/**
+ * An ItemWriter that can hand what is stored to a writer thread, so a converter carries on
+ * reading its files while the Items are written.  Stores go straight to the wrapped writer
+ * until setAsync(true) is called.  After that they are collected in batches and the batches
+ * put on a bounded queue, so the lock is taken once a batch rather than once an Item.  The
+ * writer thread takes the batches off, passing runs of Items to storeAll() and everything
+ * else to the wrapped writer in the order it was stored.
+ *
+ * The object ids of Items are only known once they have been written, so store(Item) returns
+ * null in async mode and a converter that needs the ids, eg. to store a ReferenceList for an
+ * Item later, can't use it.  If the wrapped writer fails the writer thread stops, and the
+ * next store() or flush() throws the failure.  Converters should flush() at the end of
+ * process(), so a failure is seen there rather than in close(), and abort() if process()
+ * fails so the writer thread isn't left waiting.  close() flushes and closes the wrapped
+ * writer.  Only one thread may store.
+ *
+ * A MetricsItemWriter around this writer only times handing stores to the writer thread,
+ * setMetrics() counts the time the writer thread spends writing as well.
+ *
+ * @author InterMine
+ */
+public class AsyncItemWriter implements ItemWriter
+{
+    private static final Logger LOG = Logger.getLogger(AsyncItemWriter.class);
+    private static final int DEFAULT_QUEUE_SIZE = 10000;
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    // how often a blocked store() checks whether the writer thread has failed
+    private static final long POLL_MILLIS = 100;
+    private static final List<Object> END = new ArrayList<Object>();
+
+    private final ItemWriter writer;
+    private final String name;
+    private boolean async = false;
+    private int queueSize = DEFAULT_QUEUE_SIZE;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private List<Object> batch = null;
+    private BlockingQueue<List<Object>> queue = null;
+    private Thread thread = null;
+    private volatile Throwable failure = null;
+    private ConverterMetrics metrics = null;
+    private long batchCount = 0;
+    private long storeCount = 0;
+
+    /**
+     * Constructor
+     *
+     * @param writer the ItemWriter to write to
+     * @param name name of the writer thread, eg. the source name
+     */
+    public AsyncItemWriter(ItemWriter writer, String name) {
+        this.writer = writer;
+        this.name = name;
+    }
+
+    /**
+     * @param async true to write on a separate thread from the next store()
+     */
+    public void setAsync(boolean async) {
+        if (thread != null) {
+            throw new IllegalStateException("Can't change mode while the writer thread runs");
+        }
+        this.async = async;
+    }
+
+    /**
+     * @return true if stores are written on a separate thread
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
+    /**
+     * @param metrics metrics to add the time spent writing on the writer thread to
+     */
+    public void setMetrics(ConverterMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param queueSize number of stores that can wait to be written before store() blocks,
+     * rounded up to a whole number of batches
+     */
+    public void setQueueSize(int queueSize) {
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("Queue size must be at least 1, got " + queueSize);
+        }
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * @param batchSize largest number of Items passed to one storeAll()
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1, got " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * @return the object id, or null in async mode
+     */
+    @Override
+    public Integer store(Item item) throws ObjectStoreException {
+        if (!async) {
+            return writer.store(item);
+        }
+        put(item);
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void store(final ReferenceList refList, final Integer itemId)
+        throws ObjectStoreException {
+        if (!async) {
+            writer.store(refList, itemId);
+            return;
+        }
+        put(new Store() {
+            @Override
+            public void store() throws ObjectStoreException {
+                writer.store(refList, itemId);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void store(final Reference ref, final Integer itemId) throws ObjectStoreException {
+        if (!async) {
+            writer.store(ref, itemId);
+            return;
+        }
+        put(new Store() {
+            @Override
+            public void store() throws ObjectStoreException {
+                writer.store(ref, itemId);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void store(final Attribute att, final Integer itemId) throws ObjectStoreException {
+        if (!async) {
+            writer.store(att, itemId);
+            return;
+        }
+        put(new Store() {
+            @Override
+            public void store() throws ObjectStoreException {
+                writer.store(att, itemId);
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void storeAll(Collection<Item> items) throws ObjectStoreException {
+        if (!async) {
+            writer.storeAll(items);
+            return;
+        }
+        for (Item item : items) {
+            put(item);
+        }
+    }
+
+    /**
+     * Wait until everything stored so far has been written.  The writer thread is stopped,
+     * the next store() starts a new one.
+     *
+     * @throws ObjectStoreException if the wrapped writer failed
+     */
+    public void flush() throws ObjectStoreException {
+        if (thread != null) {
+            if (!batch.isEmpty()) {
+                putBatch();
+            }
+            batch = END;
+            putBatch();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ObjectStoreException("Interrupted waiting for items to be stored", e);
+            }
+            thread = null;
+            queue = null;
+            batch = null;
+            LOG.info("Wrote " + storeCount + " stores in " + batchCount + " batches");
+        }
+        checkFailure();
+    }
+
+    /**
+     * Stop the writer thread without writing what is still waiting, e.g. when the converter
+     * has failed.  What the writer thread is writing already is finished first.  Does nothing
+     * if the writer thread isn't running.
+     *
+     * @throws ObjectStoreException if interrupted waiting for the writer thread
+     */
+    public void abort() throws ObjectStoreException {
+        if (thread != null) {
+            // this is the only thread that puts, so once cleared there is room for END
+            queue.clear();
+            queue.offer(END);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ObjectStoreException("Interrupted waiting for the writer thread", e);
+            }
+            LOG.info("Aborted writing after " + storeCount + " stores in " + batchCount
+                    + " batches");
+            thread = null;
+            queue = null;
+            batch = null;
+        }
+    }
+
+    /**
+     * Flush and close the wrapped writer.
+     *
+     * @throws ObjectStoreException if anything fails
+     */
+    @Override
+    public void close() throws ObjectStoreException {
+        flush();
+        writer.close();
+    }
+
+    private void put(Object store) throws ObjectStoreException {
+        // a volatile read, so the converter stops soon after the writer thread fails
+        checkFailure();
+        if (thread == null) {
+            start();
+        }
+        batch.add(store);
+        if (batch.size() == batchSize) {
+            putBatch();
+        }
+    }
+
+    private void putBatch() throws ObjectStoreException {
+        checkFailure();
+        try {
+            while (!queue.offer(batch, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (!thread.isAlive()) {
+                    checkFailure();
+                    throw new ObjectStoreException("Writer thread " + thread.getName()
+                            + " has stopped");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ObjectStoreException("Interrupted waiting to store", e);
+        }
+        batch = new ArrayList<Object>(batchSize);
+    }
+
+    private void checkFailure() throws ObjectStoreException {
+        Throwable t = failure;
+        if (t != null) {
+            throw new ObjectStoreException("Storing items failed", t);
+        }
+    }
+
+    private void start() {
+        batch = new ArrayList<Object>(batchSize);
+        queue = new ArrayBlockingQueue<List<Object>>(Math.max(1, (queueSize + batchSize - 1)
+                / batchSize));
+        final BlockingQueue<List<Object>> batches = queue;
+        thread = new Thread(name + "-store") {
+            @Override
+            public void run() {
+                try {
+                    write(batches);
+                } catch (Throwable t) {
+                    LOG.error("Storing items failed", t);
+                    failure = t;
+                }
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // runs on the writer thread, until END is taken or the writer fails
+    private void write(BlockingQueue<List<Object>> batches) throws Exception {
+        List<Item> items = new ArrayList<Item>(batchSize);
+        while (true) {
+            List<Object> stores = batches.take();
+            if (stores == END) {
+                return;
+            }
+            batchCount++;
+            storeCount += stores.size();
+            long start = System.nanoTime();
+            for (Object store : stores) {
+                if (store instanceof Item) {
+                    items.add((Item) store);
+                    continue;
+                }
+                // keep the order, Items stored before eg. a reference list are written first
+                if (!items.isEmpty()) {
+                    writer.storeAll(items);
+                    items.clear();
+                }
+                ((Store) store).store();
+            }
+            if (!items.isEmpty()) {
+                writer.storeAll(items);
+                items.clear();
+            }
+            if (metrics != null) {
+                metrics.addWriteTime(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * A store of something other than an Item, done on the writer thread.
+     */
+    private interface Store
+    {
+        void store() throws ObjectStoreException;
+    }
+}
@@ -0,0 +1,259 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.intermine.dataconversion.DataConverter;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.xml.full.ReferenceList;
+
+/**
+ * Collects the contents of Item collections on disk rather than in the Items, for converters
+ * that build up very large collections before they can store them.  Owners are stored as soon
+ * as they are created and registered with addOwner(), each collection entry is appended to a
+ * temporary file as it is found, and storeCollections() stores the collections of one owner at
+ * a time with DataConverter.store(ReferenceList, Integer).
+ *
+ * Entries are written through a direct buffer and read back from memory mapped segments of
+ * the file.  The entries for each owner are chained from newest to oldest, so only one
+ * position per owner is kept on the heap.  Collections are stored with their entries in the
+ * order they were first added, as Item.addToCollection() would have.
+ *
+ * Identifiers must be ASCII, as Item identifiers are.  Not thread-safe.
+ *
+ * @author InterMine
+ */
+public class CollectionLog implements Closeable
+{
+    // records never cross a segment boundary, so each can be read from a single mapping
+    private static final int SEGMENT_SIZE = 1 << 30;
+    private static final int BUFFER_SIZE = 1 << 20;
+    // previous record, collection, length of the identifier
+    private static final int HEADER_SIZE = 8 + 4 + 2;
+    private static final int MAX_LENGTH = Short.MAX_VALUE;
+    private static final long NONE = -1L;
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    // where the next record will go, including what is still in the buffer
+    private long position = 0;
+    private long size = 0;
+    private boolean stored = false;
+
+    private final Map<String, Integer> owners = new HashMap<String, Integer>();
+    private int[] objectIds = new int[1024];
+    private long[] lastRecords = new long[1024];
+    private final Map<String, Integer> collectionIndexes = new HashMap<String, Integer>();
+    private final List<String> collectionNames = new ArrayList<String>();
+
+    /**
+     * Create a log in a temporary file, deleted on close().
+     *
+     * @throws IOException if the file can't be created
+     */
+    public CollectionLog() throws IOException {
+        file = File.createTempFile("collections", ".log");
+        file.deleteOnExit();
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+    }
+
+    /**
+     * Register an Item that has been stored and may have collections.  The Item must have been
+     * stored with a synchronous ItemWriter, an AsyncItemWriter doesn't return the object id.
+     *
+     * @param refId identifier of the Item
+     * @param objectId the id store() returned for the Item
+     */
+    public void addOwner(String refId, Integer objectId) {
+        if (objectId == null) {
+            throw new IllegalArgumentException("No object id for owner " + refId
+                    + ", it must be stored with a synchronous ItemWriter");
+        }
+        if (owners.containsKey(refId)) {
+            throw new IllegalArgumentException("Owner " + refId + " has already been added");
+        }
+        int index = owners.size();
+        if (index == objectIds.length) {
+            objectIds = Arrays.copyOf(objectIds, index * 2);
+            lastRecords = Arrays.copyOf(lastRecords, index * 2);
+        }
+        objectIds[index] = objectId;
+        lastRecords[index] = NONE;
+        owners.put(refId, index);
+    }
+
+    /**
+     * Add an entry to a collection.
+     *
+     * @param ownerRefId identifier of an owner already added with addOwner()
+     * @param collection name of the collection
+     * @param refId identifier of the Item to add to the collection
+     * @throws IOException if the entry can't be written
+     */
+    public void add(String ownerRefId, String collection, String refId) throws IOException {
+        if (stored) {
+            throw new IllegalStateException("Collections have already been stored");
+        }
+        Integer owner = owners.get(ownerRefId);
+        if (owner == null) {
+            throw new IllegalArgumentException("Unknown owner " + ownerRefId
+                    + ", add it with addOwner() first");
+        }
+        int length = refId.length();
+        if (length > MAX_LENGTH) {
+            throw new IllegalArgumentException("Identifier is too long: " + refId);
+        }
+        int recordSize = HEADER_SIZE + length;
+        long segmentEnd = (position / SEGMENT_SIZE + 1) * SEGMENT_SIZE;
+        if (position + recordSize > segmentEnd) {
+            pad(segmentEnd - position);
+        }
+        if (buffer.remaining() < recordSize) {
+            flush();
+        }
+        buffer.putLong(lastRecords[owner]);
+        buffer.putInt(getCollectionIndex(collection));
+        buffer.putShort((short) length);
+        for (int i = 0; i < length; i++) {
+            char c = refId.charAt(i);
+            if (c > 127) {
+                throw new IllegalArgumentException("Identifier isn't ASCII: " + refId);
+            }
+            buffer.put((byte) c);
+        }
+        lastRecords[owner] = position;
+        position += recordSize;
+        size++;
+    }
+
+    /**
+     * @return number of collection entries added
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Store the collections of every owner, one owner at a time, in the order the owners were
+     * added.  Can only be called once.
+     *
+     * @param converter the converter to store with
+     * @throws IOException if the log can't be read
+     * @throws ObjectStoreException if a collection can't be stored
+     */
+    public void storeCollections(DataConverter converter) throws IOException,
+        ObjectStoreException {
+        if (stored) {
+            throw new IllegalStateException("Collections have already been stored");
+        }
+        stored = true;
+        flush();
+        MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((position + SEGMENT_SIZE - 1)
+                / SEGMENT_SIZE)];
+        for (int i = 0; i < segments.length; i++) {
+            long start = (long) i * SEGMENT_SIZE;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                    Math.min(SEGMENT_SIZE, position - start));
+        }
+        List<Integer> collections = new ArrayList<Integer>();
+        List<String> refIds = new ArrayList<String>();
+        StringBuilder sb = new StringBuilder();
+        for (int owner = 0; owner < owners.size(); owner++) {
+            collections.clear();
+            refIds.clear();
+            long record = lastRecords[owner];
+            while (record != NONE) {
+                ByteBuffer segment = segments[(int) (record / SEGMENT_SIZE)];
+                int offset = (int) (record % SEGMENT_SIZE);
+                long previous = segment.getLong(offset);
+                collections.add(segment.getInt(offset + 8));
+                int length = segment.getShort(offset + 12);
+                sb.setLength(0);
+                for (int i = 0; i < length; i++) {
+                    sb.append((char) segment.get(offset + HEADER_SIZE + i));
+                }
+                refIds.add(sb.toString());
+                record = previous;
+            }
+            // newest first, so go backwards to get the order they were added in
+            Map<Integer, ReferenceList> lists = new LinkedHashMap<Integer, ReferenceList>();
+            for (int i = refIds.size() - 1; i >= 0; i--) {
+                ReferenceList list = lists.get(collections.get(i));
+                if (list == null) {
+                    list = new ReferenceList(collectionNames.get(collections.get(i)));
+                    lists.put(collections.get(i), list);
+                }
+                list.addRefId(refIds.get(i));
+            }
+            for (ReferenceList list : lists.values()) {
+                converter.store(list, objectIds[owner]);
+            }
+        }
+    }
+
+    /**
+     * Delete the temporary file.
+     *
+     * @throws IOException if the file can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+        randomAccessFile.close();
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    private int getCollectionIndex(String collection) {
+        Integer index = collectionIndexes.get(collection);
+        if (index == null) {
+            index = collectionNames.size();
+            collectionNames.add(collection);
+            collectionIndexes.put(collection, index);
+        }
+        return index;
+    }
+
+    private void pad(long bytes) throws IOException {
+        for (long i = 0; i < bytes; i++) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.put((byte) 0);
+        }
+        position += bytes;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,533 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.FilterInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Counts what a converter reads and stores and times where it spends its time, so that when
+ * a build slows down the source and phase responsible can be found.  The metrics are published
+ * over JMX from the first countBytes(), when the converter starts reading, until close(), as
+ * org.intermine.bio.dataconversion:type=ConverterMetrics with the source name, and written as
+ * JSON to the log by close().  Converters close the metrics if processing fails as well, as
+ * their own close() isn't called then.  If the system property
+ * humanmine.metricsDir is set the JSON is also written to SOURCE-metrics.json in that
+ * directory.
+ *
+ * Items and store times are counted by a MetricsItemWriter wrapped around the converter's
+ * writer, and resolver calls and identifiers that failed to resolve by the IdResolutionCache
+ * passed to setResolutionCache(), whose failure summary close() also logs.  The
+ * converter counts its own rows.  Parse time is the time since the converter was created that
+ * wasn't spent resolving or storing.  Resolve time is summed over all threads, so with worker
+ * threads it can add up to more than the elapsed time.  With an AsyncItemWriter inside the
+ * MetricsItemWriter, store time is only the time spent handing Items to the writer thread.
+ * The time the writer thread spends writing is counted as write time if the AsyncItemWriter
+ * was given these metrics, it overlaps with the other phases.  Safe to use from several
+ * threads.
+ *
+ * @author InterMine
+ */
+public class ConverterMetrics implements ConverterMetricsMBean
+{
+    /**
+     * System property naming a directory to write the JSON summaries to.
+     */
+    public static final String METRICS_DIR_PROPERTY = "humanmine.metricsDir";
+
+    private static final Logger LOG = Logger.getLogger(ConverterMetrics.class);
+    private static final String DOMAIN = "org.intermine.bio.dataconversion";
+    // number of identifiers that failed to resolve listed in the summary
+    private static final int TOP_UNRESOLVED = 10;
+
+    private final String source;
+    private final long startNanos = System.nanoTime();
+    private volatile long endNanos = 0;
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong rowsSkipped = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong storeNanos = new AtomicLong();
+    private final AtomicLong writeNanos = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLong> skipReasons =
+        new ConcurrentHashMap<String, AtomicLong>();
+    private final ConcurrentMap<String, AtomicLong> itemClasses =
+        new ConcurrentHashMap<String, AtomicLong>();
+    private volatile IdResolutionCache resolutionCache = null;
+    // guarded by this
+    private ObjectName objectName = null;
+    private boolean registered = false;
+    private boolean closed = false;
+
+    /**
+     * Constructor
+     *
+     * @param source name of the source, e.g. gtex
+     */
+    public ConverterMetrics(String source) {
+        this.source = source;
+    }
+
+    /**
+     * Count a row, or entry, read from a file.
+     */
+    public void rowRead() {
+        rowsRead.incrementAndGet();
+    }
+
+    /**
+     * Count a row that was read but didn't produce any data.
+     *
+     * @param reason why, e.g. "unresolved gene", from a small fixed set of reasons
+     */
+    public void rowSkipped(String reason) {
+        rowsSkipped.incrementAndGet();
+        increment(skipReasons, reason);
+    }
+
+    /**
+     * Count an Item stored.
+     *
+     * @param className class of the Item
+     */
+    public void itemStored(String className) {
+        increment(itemClasses, className);
+    }
+
+    /**
+     * Add time spent storing.
+     *
+     * @param nanos the time
+     */
+    public void addStoreTime(long nanos) {
+        storeNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Add time spent writing on the writer thread of an AsyncItemWriter.
+     *
+     * @param nanos the time
+     */
+    public void addWriteTime(long nanos) {
+        writeNanos.addAndGet(nanos);
+    }
+
+    /**
+     * @param resolutionCache the cache the converter resolves identifiers with
+     */
+    public void setResolutionCache(IdResolutionCache resolutionCache) {
+        this.resolutionCache = resolutionCache;
+    }
+
+    /**
+     * Wrap an InputStream to count the bytes read from it.  The first call registers the
+     * metrics with the platform MBean server.
+     *
+     * @param in the stream
+     * @return a stream that counts what is read
+     */
+    public InputStream countBytes(InputStream in) {
+        register();
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    bytesRead.incrementAndGet();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    bytesRead.addAndGet(n);
+                }
+                return n;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = super.skip(n);
+                bytesRead.addAndGet(skipped);
+                return skipped;
+            }
+        };
+    }
+
+    /**
+     * Wrap a Reader to count what is read from it.  Each character is counted as a byte, which
+     * is exact for the ASCII files most sources have.  The first call registers the metrics
+     * with the platform MBean server.
+     *
+     * @param reader the reader
+     * @return a reader that counts what is read
+     */
+    public Reader countBytes(Reader reader) {
+        register();
+        return new FilterReader(reader) {
+            @Override
+            public int read() throws IOException {
+                int c = super.read();
+                if (c >= 0) {
+                    bytesRead.incrementAndGet();
+                }
+                return c;
+            }
+
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                int n = super.read(cbuf, off, len);
+                if (n > 0) {
+                    bytesRead.addAndGet(n);
+                }
+                return n;
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long skipped = super.skip(n);
+                bytesRead.addAndGet(skipped);
+                return skipped;
+            }
+        };
+    }
+
+    /**
+     * @param className an Item class
+     * @return number of Items of the class stored
+     */
+    public long getItemsStored(String className) {
+        AtomicLong count = itemClasses.get(className);
+        return (count == null) ? 0 : count.get();
+    }
+
+    /**
+     * @param reason a reason passed to rowSkipped()
+     * @return number of rows skipped for the reason
+     */
+    public long getRowsSkipped(String reason) {
+        AtomicLong count = skipReasons.get(reason);
+        return (count == null) ? 0 : count.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getRowsRead() {
+        return rowsRead.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getRowsSkipped() {
+        return rowsSkipped.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getItemsStored() {
+        long count = 0;
+        for (AtomicLong classCount : itemClasses.values()) {
+            count += classCount.get();
+        }
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getResolverCalls() {
+        return getResolverHits() + getResolverMisses();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getResolverHits() {
+        IdResolutionCache cache = resolutionCache;
+        return (cache == null) ? 0 : cache.getHitCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getResolverMisses() {
+        IdResolutionCache cache = resolutionCache;
+        return (cache == null) ? 0 : cache.getMissCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getUnresolvedRows() {
+        IdResolutionCache cache = resolutionCache;
+        return (cache == null) ? 0 : cache.getMissingCount() + cache.getAmbiguousCount();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getElapsedMillis() {
+        long end = endNanos;
+        return toMillis(((end == 0) ? System.nanoTime() : end) - startNanos);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getParseMillis() {
+        return Math.max(0, getElapsedMillis() - getResolveMillis() - getStoreMillis());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getResolveMillis() {
+        IdResolutionCache cache = resolutionCache;
+        return (cache == null) ? 0 : toMillis(cache.getLookupNanos());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getStoreMillis() {
+        return toMillis(storeNanos.get());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getWriteMillis() {
+        return toMillis(writeNanos.get());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getSummary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"source\": ").append(quote(source));
+        sb.append(", \"elapsedMillis\": ").append(getElapsedMillis());
+        sb.append(", \"rows\": {\"read\": ").append(getRowsRead());
+        sb.append(", \"skipped\": ").append(getRowsSkipped());
+        sb.append(", \"skippedBy\": ");
+        appendCounts(sb, skipReasons);
+        sb.append("}, \"bytesRead\": ").append(getBytesRead());
+        sb.append(", \"items\": {\"stored\": ").append(getItemsStored());
+        sb.append(", \"byClass\": ");
+        appendCounts(sb, itemClasses);
+        sb.append("}, \"resolver\": {\"calls\": ").append(getResolverCalls());
+        sb.append(", \"hits\": ").append(getResolverHits());
+        sb.append(", \"misses\": ").append(getResolverMisses());
+        sb.append("}, \"unresolved\": ");
+        appendUnresolved(sb);
+        sb.append(", \"phases\": {\"parseMillis\": ").append(getParseMillis());
+        sb.append(", \"resolveMillis\": ").append(getResolveMillis());
+        sb.append(", \"storeMillis\": ").append(getStoreMillis());
+        sb.append(", \"writeMillis\": ").append(getWriteMillis());
+        sb.append("}}");
+        return sb.toString();
+    }
+
+    /**
+     * Stop the clock, log the summary, write it to the metrics directory if there is one and
+     * unregister from JMX.  Only the first call does anything.
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        endNanos = System.nanoTime();
+        String summary = getSummary();
+        LOG.info("Metrics: " + summary);
+        IdResolutionCache cache = resolutionCache;
+        if (cache != null) {
+            cache.logFailures();
+        }
+        String dir = System.getProperty(METRICS_DIR_PROPERTY);
+        if (dir != null && !dir.trim().isEmpty()) {
+            File file = new File(dir.trim(), source + "-metrics.json");
+            try {
+                Writer writer = new FileWriter(file);
+                try {
+                    writer.write(summary);
+                    writer.write('\n');
+                } finally {
+                    writer.close();
+                }
+            } catch (IOException e) {
+                LOG.warn("Couldn't write metrics to " + file, e);
+            }
+        }
+        unregister();
+    }
+
+    @Override
+    public String toString() {
+        return getSummary();
+    }
+
+    private synchronized void register() {
+        if (registered || closed) {
+            return;
+        }
+        registered = true;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(DOMAIN + ":type=ConverterMetrics,source="
+                    + ObjectName.quote(source));
+            // a converter for the same source run again in this JVM replaces the old one
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+            objectName = name;
+        } catch (JMException e) {
+            LOG.warn("Couldn't publish metrics for " + source + " over JMX", e);
+        }
+    }
+
+    private synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            LOG.warn("Couldn't unregister metrics for " + source, e);
+        }
+        objectName = null;
+    }
+
+    private static void increment(ConcurrentMap<String, AtomicLong> counts, String key) {
+        AtomicLong count = counts.get(key);
+        if (count == null) {
+            counts.putIfAbsent(key, new AtomicLong());
+            count = counts.get(key);
+        }
+        count.incrementAndGet();
+    }
+
+    private static void appendCounts(StringBuilder sb, Map<String, AtomicLong> counts) {
+        sb.append('{');
+        boolean first = true;
+        // sorted so the summary is in the same order on every run
+        for (Map.Entry<String, AtomicLong> entry : new TreeMap<String, AtomicLong>(counts)
+                .entrySet()) {
+            if (!first) {
+                sb.append(", ");
+            }
+            first = false;
+            sb.append(quote(entry.getKey())).append(": ").append(entry.getValue().get());
+        }
+        sb.append('}');
+    }
+
+    private void appendUnresolved(StringBuilder sb) {
+        IdResolutionCache cache = resolutionCache;
+        if (cache == null) {
+            sb.append("{\"rows\": 0}");
+            return;
+        }
+        sb.append("{\"rows\": ").append(cache.getMissingCount() + cache.getAmbiguousCount());
+        sb.append(", \"missing\": ").append(cache.getMissingCount());
+        sb.append(", \"ambiguous\": ").append(cache.getAmbiguousCount());
+        sb.append(", \"distinctMissing\": ").append(cache.getDistinctMissingCount());
+        sb.append(", \"distinctAmbiguous\": ").append(cache.getDistinctAmbiguousCount());
+        sb.append(", \"top\": {");
+        // most frequent first
+        List<TopKCounter.Entry> top = cache.getTopFailures(TOP_UNRESOLVED);
+        for (int i = 0; i < top.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(quote(top.get(i).getKey())).append(": ").append(top.get(i).getCount());
+        }
+        sb.append("}}");
+    }
+
+    private static String quote(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < ' ') {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
@@ -0,0 +1,95 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+/**
+ * The counts and timings of a converter, as published over JMX by ConverterMetrics.
+ *
+ * @author InterMine
+ */
+public interface ConverterMetricsMBean
+{
+    /**
+     * @return name of the source, e.g. gtex
+     */
+    String getSource();
+
+    /**
+     * @return number of rows or entries read from the files
+     */
+    long getRowsRead();
+
+    /**
+     * @return number of rows read that didn't produce any data
+     */
+    long getRowsSkipped();
+
+    /**
+     * @return number of bytes read from the files
+     */
+    long getBytesRead();
+
+    /**
+     * @return number of Items stored
+     */
+    long getItemsStored();
+
+    /**
+     * @return number of identifiers looked up in the resolver cache
+     */
+    long getResolverCalls();
+
+    /**
+     * @return number of lookups answered from the resolver cache
+     */
+    long getResolverHits();
+
+    /**
+     * @return number of lookups that queried the resolver
+     */
+    long getResolverMisses();
+
+    /**
+     * @return number of rows whose identifier didn't resolve to exactly one gene
+     */
+    long getUnresolvedRows();
+
+    /**
+     * @return milliseconds since the converter was created, or until it was closed
+     */
+    long getElapsedMillis();
+
+    /**
+     * @return milliseconds not spent resolving or storing
+     */
+    long getParseMillis();
+
+    /**
+     * @return milliseconds spent querying the resolver
+     */
+    long getResolveMillis();
+
+    /**
+     * @return milliseconds spent in the ItemWriter, with an AsyncItemWriter only the time
+     * spent handing stores to its writer thread
+     */
+    long getStoreMillis();
+
+    /**
+     * @return milliseconds the writer thread of an AsyncItemWriter spent writing
+     */
+    long getWriteMillis();
+
+    /**
+     * @return all the metrics as JSON, including the counts per Item class and skip reason
+     */
+    String getSummary();
+}
@@ -0,0 +1,453 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A cursor over a tab or comma delimited file that doesn't allocate per line.  Lines are read
+ * into a reusable char buffer and only the positions of the fields are recorded; a String is
+ * only created when a field is asked for with getString().
+ *
+ * Like FormattedTextParser, lines starting with # are skipped and an empty line has no fields.
+ * In CSV mode fields may be quoted, with "" for a quote inside a quoted field, but quoted
+ * fields can't span lines.  Files that may have such fields, like DepMap's sample_info.csv,
+ * should be read with FormattedTextParser.parseCsvDelimitedReader() instead.
+ *
+ * A converter that only needs some columns of a wide file can say which, either by index with
+ * setColumns() or by name with readHeader().  The rest of a line after the last column needed
+ * isn't split at all, and readHeader() fails before any data is read if a column is missing.
+ *
+ * Lines are split lazily, only as far as the highest field asked for so far.  A Filter set
+ * with setFilter() sees each line before next() returns it and can drop it after looking at
+ * the first few fields, without the rest of the line being split.
+ *
+ * <pre>
+ * DelimitedLineReader line = new DelimitedLineReader(reader, '\t');
+ * int[] columns = line.readHeader("AlleleID", "Assembly");
+ * while (line.next()) {
+ *     if (line.fieldEquals(columns[1], "GRCh38")) {
+ *         String id = line.getString(columns[0]);
+ *     }
+ * }
+ * </pre>
+ *
+ * @author InterMine
+ */
+public class DelimitedLineReader implements Closeable
+{
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final char QUOTE = '"';
+
+    private final Reader reader;
+    private final char delimiter;
+    private final boolean csv;
+
+    private char[] buf;
+    private int pos = 0;
+    private int limit = 0;
+    private boolean eof = false;
+
+    private int lineStart = 0;
+    private int lineEnd = 0;
+    private long lineNumber = 0;
+
+    private int fieldCount = 0;
+    private int fieldLimit = Integer.MAX_VALUE;
+    // where splitting of the current line has got to
+    private int splitPos = 0;
+    private boolean splitDone = true;
+
+    private Filter filter = null;
+    private long filteredCount = 0;
+    private int[] starts = new int[32];
+    private int[] ends = new int[32];
+    private boolean[] quoted = new boolean[32];
+
+    /**
+     * Decides whether a line is returned by next().
+     */
+    public interface Filter
+    {
+        /**
+         * Called from next() for each line that isn't a comment.  Only the fields looked at
+         * are split.
+         *
+         * @param line the reader, positioned at the line
+         * @return true to return the line, false to skip it
+         */
+        boolean accept(DelimitedLineReader line);
+    }
+
+    /**
+     * Constructor
+     * @param reader the input
+     * @param delimiter field delimiter, a comma means CSV with quoted fields
+     */
+    public DelimitedLineReader(Reader reader, char delimiter) {
+        this(reader, delimiter, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor
+     * @param reader the input
+     * @param delimiter field delimiter, a comma means CSV with quoted fields
+     * @param bufferSize initial size of the buffer, it grows to fit the longest line
+     */
+    DelimitedLineReader(Reader reader, char delimiter, int bufferSize) {
+        this.reader = reader;
+        this.delimiter = delimiter;
+        this.csv = (delimiter == ',');
+        this.buf = new char[bufferSize];
+    }
+
+    /**
+     * Move to the next line.  Fields of the previous line are no longer available.
+     *
+     * @return false if there are no more lines
+     * @throws IOException if the input can't be read
+     */
+    public boolean next() throws IOException {
+        while (readLine()) {
+            lineNumber++;
+            if (lineEnd > lineStart && buf[lineStart] == '#') {
+                continue;
+            }
+            startSplit();
+            if (filter != null && !filter.accept(this)) {
+                filteredCount++;
+                continue;
+            }
+            return true;
+        }
+        fieldCount = 0;
+        splitDone = true;
+        return false;
+    }
+
+    /**
+     * Set a filter for the lines returned by next(), or null to return all of them.
+     *
+     * @param filter the filter
+     */
+    public void setFilter(Filter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * @return number of lines the filter has dropped so far
+     */
+    public long getFilteredCount() {
+        return filteredCount;
+    }
+
+    /**
+     * Read the next line as a header and find the named columns in it.  A # at the start of
+     * the header is ignored, so "#AlleleID" matches "AlleleID".  Lines after the header are
+     * only split as far as the last of the columns, see setColumns().
+     *
+     * @param columns names of the columns needed
+     * @return the index of each column, in the order given
+     * @throws IOException if the input can't be read
+     * @throws IllegalArgumentException if there is no header or any of the columns is missing
+     */
+    public int[] readHeader(String... columns) throws IOException {
+        if (!readLine()) {
+            throw new IllegalArgumentException("No header found, expected columns "
+                    + Arrays.toString(columns));
+        }
+        lineNumber++;
+        fieldLimit = Integer.MAX_VALUE;
+        startSplit();
+        splitAll();
+        Map<String, Integer> positions = new HashMap<String, Integer>();
+        List<String> header = new ArrayList<String>();
+        for (int i = 0; i < fieldCount; i++) {
+            String name = getString(i).trim();
+            if (i == 0 && name.startsWith("#")) {
+                name = name.substring(1);
+            }
+            header.add(name);
+            if (!positions.containsKey(name)) {
+                positions.put(name, i);
+            }
+        }
+        int[] indexes = new int[columns.length];
+        List<String> missing = new ArrayList<String>();
+        for (int i = 0; i < columns.length; i++) {
+            Integer index = positions.get(columns[i]);
+            if (index == null) {
+                missing.add(columns[i]);
+            } else {
+                indexes[i] = index;
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("Header on line " + lineNumber
+                    + " is missing columns " + missing + ", found " + header);
+        }
+        setColumns(indexes);
+        return indexes;
+    }
+
+    /**
+     * Say which columns will be read.  Lines are then only split as far as the last of them,
+     * so getFieldCount() is never more than the highest index plus one.
+     *
+     * @param indexes indexes of the columns needed
+     */
+    public void setColumns(int... indexes) {
+        int max = -1;
+        for (int index : indexes) {
+            if (index < 0) {
+                throw new IllegalArgumentException("Negative column index: " + index);
+            }
+            max = Math.max(max, index);
+        }
+        fieldLimit = (max < 0) ? Integer.MAX_VALUE : max + 1;
+    }
+
+    /**
+     * @return number of fields in the current line, 0 for an empty line
+     */
+    public int getFieldCount() {
+        splitAll();
+        return fieldCount;
+    }
+
+    /**
+     * @return number of the current line in the input, counting from 1
+     */
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * @param index index of a field
+     * @return the value of the field
+     */
+    public String getString(int index) {
+        checkIndex(index);
+        int start = starts[index];
+        int length = ends[index] - start;
+        if (quoted[index] && indexOfQuote(start, ends[index]) >= 0) {
+            return new String(buf, start, length).replace("\"\"", "\"");
+        }
+        return new String(buf, start, length);
+    }
+
+    /**
+     * Compare a field to a value without creating a String.
+     *
+     * @param index index of a field
+     * @param value value to compare to
+     * @return true if the field is equal to the value
+     */
+    public boolean fieldEquals(int index, String value) {
+        checkIndex(index);
+        return getLength(index) == value.length() && regionMatches(index, value);
+    }
+
+    /**
+     * Check the start of a field without creating a String.
+     *
+     * @param index index of a field
+     * @param prefix prefix to look for
+     * @return true if the field starts with prefix
+     */
+    public boolean fieldStartsWith(int index, String prefix) {
+        checkIndex(index);
+        return getLength(index) >= prefix.length() && regionMatches(index, prefix);
+    }
+
+    /**
+     * @param index index of a field
+     * @return true if the field is empty
+     */
+    public boolean isEmpty(int index) {
+        checkIndex(index);
+        return starts[index] == ends[index];
+    }
+
+    /**
+     * Close the underlying reader.
+     *
+     * @throws IOException if the reader can't be closed
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private int getLength(int index) {
+        if (quoted[index] && indexOfQuote(starts[index], ends[index]) >= 0) {
+            return getString(index).length();
+        }
+        return ends[index] - starts[index];
+    }
+
+    private boolean regionMatches(int index, String value) {
+        if (quoted[index] && indexOfQuote(starts[index], ends[index]) >= 0) {
+            return getString(index).startsWith(value);
+        }
+        int start = starts[index];
+        for (int i = 0; i < value.length(); i++) {
+            if (buf[start + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOfQuote(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buf[i] == QUOTE) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void checkIndex(int index) {
+        while (index >= fieldCount && !splitDone) {
+            splitField();
+        }
+        if (index < 0 || index >= fieldCount) {
+            throw new IndexOutOfBoundsException("Line " + lineNumber + " has " + fieldCount
+                    + " fields, can't read field " + index);
+        }
+    }
+
+    // find the next line, sets lineStart and lineEnd and moves pos past the line terminator,
+    // which is \n, \r or \r\n as for BufferedReader.readLine()
+    private boolean readLine() throws IOException {
+        int i = pos;
+        while (true) {
+            while (i < limit) {
+                char c = buf[i];
+                if (c == '\n' || c == '\r') {
+                    if (c == '\r' && i + 1 == limit && !eof) {
+                        // need the next char to know if this is \r\n
+                        break;
+                    }
+                    lineStart = pos;
+                    lineEnd = i;
+                    pos = i + 1;
+                    if (c == '\r' && pos < limit && buf[pos] == '\n') {
+                        pos++;
+                    }
+                    return true;
+                }
+                i++;
+            }
+            if (eof) {
+                if (pos == limit) {
+                    return false;
+                }
+                // last line has no terminator
+                lineStart = pos;
+                lineEnd = limit;
+                pos = limit;
+                return true;
+            }
+            int scanned = i - pos;
+            fill();
+            i = pos + scanned;
+        }
+    }
+
+    // move the unread part of the buffer to the start, growing it if full, and read more
+    private void fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buf.length) {
+            char[] bigger = new char[buf.length * 2];
+            System.arraycopy(buf, 0, bigger, 0, limit);
+            buf = bigger;
+        }
+        int read = reader.read(buf, limit, buf.length - limit);
+        if (read < 0) {
+            eof = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    private void startSplit() {
+        fieldCount = 0;
+        splitPos = lineStart;
+        splitDone = (lineStart == lineEnd);
+    }
+
+    private void splitAll() {
+        while (!splitDone) {
+            splitField();
+        }
+    }
+
+    // record the field starting at splitPos and move past the delimiter after it
+    private void splitField() {
+        int i = splitPos;
+        if (csv && i < lineEnd && buf[i] == QUOTE) {
+            int start = ++i;
+            while (i < lineEnd) {
+                if (buf[i] == QUOTE) {
+                    if (i + 1 < lineEnd && buf[i + 1] == QUOTE) {
+                        i += 2;
+                        continue;
+                    }
+                    break;
+                }
+                i++;
+            }
+            addField(start, i, true);
+            // anything after the closing quote is ignored
+            while (i < lineEnd && buf[i] != delimiter) {
+                i++;
+            }
+        } else {
+            int start = i;
+            while (i < lineEnd && buf[i] != delimiter) {
+                i++;
+            }
+            addField(start, i, false);
+        }
+        if (i >= lineEnd || fieldCount == fieldLimit) {
+            splitDone = true;
+        } else {
+            // skip the delimiter, if it ends the line the next field is empty
+            splitPos = i + 1;
+        }
+    }
+
+    private void addField(int start, int end, boolean isQuoted) {
+        if (fieldCount == starts.length) {
+            int size = starts.length * 2;
+            starts = Arrays.copyOf(starts, size);
+            ends = Arrays.copyOf(ends, size);
+            quoted = Arrays.copyOf(quoted, size);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        quoted[fieldCount] = isQuoted;
+        fieldCount++;
+    }
+}
@@ -0,0 +1,367 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts the lines of a tab delimited file by one column in bounded memory, for converters
+ * that need the lines with the same key next to each other.  Lines are read into memory until
+ * the limit is reached, sorted and written to a temporary file, and the sorted runs are then
+ * merged as the returned Reader is read.  If the whole input fits in memory no files are
+ * written.
+ *
+ * Keys are compared as Strings.  The sort is stable, lines with the same key stay in the order
+ * they were read.  Lines without the key column sort as if it were empty.  The returned Reader
+ * has a newline after every line and deletes the temporary files when it is closed.
+ *
+ * Not thread-safe.
+ *
+ * @author InterMine
+ */
+public class ExternalSorter
+{
+    private static final long DEFAULT_MAX_MEMORY = 64L * 1024 * 1024;
+    // rough heap taken by a String and its slot in the list, on top of its chars
+    private static final int LINE_OVERHEAD = 64;
+
+    private final int keyColumn;
+    private final Comparator<String> comparator;
+    private long maxMemory = DEFAULT_MAX_MEMORY;
+    private boolean inputSorted = true;
+    private long lineCount = 0;
+    private int runCount = 0;
+
+    /**
+     * Constructor
+     * @param keyColumn index of the column to sort by
+     */
+    public ExternalSorter(int keyColumn) {
+        if (keyColumn < 0) {
+            throw new IllegalArgumentException("Negative column: " + keyColumn);
+        }
+        this.keyColumn = keyColumn;
+        comparator = new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return compareKeys(a, b);
+            }
+        };
+    }
+
+    /**
+     * @param maxMemory roughly how many bytes of lines to hold in memory before writing a
+     * sorted run to disk, defaults to 64 MB
+     */
+    public void setMaxMemory(long maxMemory) {
+        if (maxMemory < 1) {
+            throw new IllegalArgumentException("maxMemory must be positive, got " + maxMemory);
+        }
+        this.maxMemory = maxMemory;
+    }
+
+    /**
+     * Read all of the input and return its lines sorted by the key column.
+     *
+     * @param input the lines to sort, read to the end but not closed
+     * @return the sorted lines, must be closed to delete the temporary files
+     * @throws IOException if the input can't be read or a run can't be written
+     */
+    public Reader sort(Reader input) throws IOException {
+        inputSorted = true;
+        lineCount = 0;
+        runCount = 0;
+        BufferedReader reader = (input instanceof BufferedReader) ? (BufferedReader) input
+                : new BufferedReader(input);
+        List<File> runs = new ArrayList<File>();
+        List<String> lines = new ArrayList<String>();
+        try {
+            long memory = 0;
+            String previous = null;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (previous != null && compareKeys(previous, line) > 0) {
+                    inputSorted = false;
+                }
+                previous = line;
+                lines.add(line);
+                lineCount++;
+                memory += LINE_OVERHEAD + 2L * line.length();
+                if (memory >= maxMemory) {
+                    runs.add(writeRun(lines));
+                    lines.clear();
+                    memory = 0;
+                }
+            }
+            if (runs.isEmpty()) {
+                // all in memory
+                runCount = 1;
+                Collections.sort(lines, comparator);
+                return new ListReader(lines.iterator());
+            }
+            if (!lines.isEmpty()) {
+                runs.add(writeRun(lines));
+            }
+            runCount = runs.size();
+            return new MergeReader(runs);
+        } catch (IOException e) {
+            delete(runs);
+            throw e;
+        } catch (RuntimeException e) {
+            delete(runs);
+            throw e;
+        }
+    }
+
+    /**
+     * @return true if the last input read by sort() was already in key order
+     */
+    public boolean isInputSorted() {
+        return inputSorted;
+    }
+
+    /**
+     * @return number of lines read by the last sort()
+     */
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return number of sorted runs the last sort() merged, 1 if it was sorted in memory
+     */
+    public int getRunCount() {
+        return runCount;
+    }
+
+    /**
+     * Compare the key columns of two lines.
+     *
+     * @param a a line
+     * @param b another line
+     * @return the String comparison of their keys
+     */
+    int compareKeys(String a, String b) {
+        int aStart = fieldStart(a);
+        int bStart = fieldStart(b);
+        int aEnd = fieldEnd(a, aStart);
+        int bEnd = fieldEnd(b, bStart);
+        int length = Math.min(aEnd - aStart, bEnd - bStart);
+        for (int i = 0; i < length; i++) {
+            char c1 = a.charAt(aStart + i);
+            char c2 = b.charAt(bStart + i);
+            if (c1 != c2) {
+                return c1 - c2;
+            }
+        }
+        return (aEnd - aStart) - (bEnd - bStart);
+    }
+
+    // start of the key column, or the end of the line if there isn't one
+    private int fieldStart(String line) {
+        int start = 0;
+        for (int column = 0; column < keyColumn; column++) {
+            int tab = line.indexOf('\t', start);
+            if (tab < 0) {
+                return line.length();
+            }
+            start = tab + 1;
+        }
+        return start;
+    }
+
+    private static int fieldEnd(String line, int start) {
+        int tab = line.indexOf('\t', start);
+        return (tab < 0) ? line.length() : tab;
+    }
+
+    private File writeRun(List<String> lines) throws IOException {
+        Collections.sort(lines, comparator);
+        File file = File.createTempFile("sort", ".run");
+        file.deleteOnExit();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file),
+                StandardCharsets.UTF_8));
+        try {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        } finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    private static void delete(List<File> files) {
+        for (File file : files) {
+            if (!file.delete()) {
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * A Reader over lines that come one at a time, with a newline after each.
+     */
+    private abstract static class LineReader extends Reader
+    {
+        private String line = null;
+        // position in line, line.length() for the newline
+        private int position = 0;
+
+        // the next line, or null at the end
+        abstract String nextLine() throws IOException;
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            int count = 0;
+            while (count < length) {
+                if (line == null || position > line.length()) {
+                    line = nextLine();
+                    position = 0;
+                    if (line == null) {
+                        break;
+                    }
+                }
+                if (position == line.length()) {
+                    buffer[offset + count++] = '\n';
+                    position++;
+                } else {
+                    int n = Math.min(length - count, line.length() - position);
+                    line.getChars(position, position + n, buffer, offset + count);
+                    position += n;
+                    count += n;
+                }
+            }
+            return (count == 0) ? -1 : count;
+        }
+    }
+
+    /**
+     * Lines sorted in memory.
+     */
+    private static class ListReader extends LineReader
+    {
+        private Iterator<String> lines;
+
+        ListReader(Iterator<String> lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        String nextLine() {
+            return (lines != null && lines.hasNext()) ? lines.next() : null;
+        }
+
+        @Override
+        public void close() {
+            lines = null;
+        }
+    }
+
+    /**
+     * Merges sorted runs, taking lines with equal keys from earlier runs first.
+     */
+    private class MergeReader extends LineReader
+    {
+        private final List<File> files;
+        private final List<Run> runs = new ArrayList<Run>();
+        private final PriorityQueue<Run> queue;
+
+        MergeReader(List<File> files) throws IOException {
+            this.files = files;
+            queue = new PriorityQueue<Run>(files.size(), new Comparator<Run>() {
+                @Override
+                public int compare(Run a, Run b) {
+                    int result = compareKeys(a.line, b.line);
+                    return (result != 0) ? result : a.index - b.index;
+                }
+            });
+            try {
+                for (File file : files) {
+                    Run run = new Run(runs.size(), new BufferedReader(new InputStreamReader(
+                            new FileInputStream(file), StandardCharsets.UTF_8)));
+                    runs.add(run);
+                    if (run.advance()) {
+                        queue.add(run);
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        String nextLine() throws IOException {
+            Run run = queue.poll();
+            if (run == null) {
+                return null;
+            }
+            String line = run.line;
+            if (run.advance()) {
+                queue.add(run);
+            }
+            return line;
+        }
+
+        @Override
+        public void close() throws IOException {
+            queue.clear();
+            try {
+                for (Run run : runs) {
+                    run.reader.close();
+                }
+            } finally {
+                delete(files);
+            }
+        }
+    }
+
+    /**
+     * The next unmerged line of a sorted run.
+     */
+    private static class Run
+    {
+        private final int index;
+        private final BufferedReader reader;
+        private String line = null;
+
+        Run(int index, BufferedReader reader) {
+            this.index = index;
+            this.reader = reader;
+        }
+
+        boolean advance() throws IOException {
+            line = reader.readLine();
+            return line != null;
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Memoizes IdResolver lookups so each distinct identifier is only resolved once per taxon.
+ * Both successful and failed resolutions are cached. Instances are safe to share between
+ * threads.
+ *
+ * If there is no resolver, or the resolver has no data for the taxon, identifiers are passed
+ * through unchanged, as the converters did before this class existed.
+ *
+ * Identifiers that don't resolve to exactly one gene are counted rather than logged, each row
+ * that asks for one as well as each distinct identifier, separately for identifiers that
+ * resolve to no gene and to several.  The most frequent are kept in a TopKCounter, and
+ * logFailures() logs a summary of them all once the converter has finished.  Set the log
+ * level of this class to TRACE to log every failed row as well.
+ *
+ * @author InterMine
+ */
+public class IdResolutionCache
+{
+    private static final Logger LOG = Logger.getLogger(IdResolutionCache.class);
+    // number of failed identifiers counted, and of those included in the summary
+    private static final int FAILURE_CAPACITY = 100;
+    private static final int FAILURE_SUMMARY_SIZE = 20;
+
+    private final IdResolver resolver;
+    // taxon ID -> identifier -> resolution
+    private final ConcurrentMap<String, ConcurrentMap<String, Resolution>> resolutions
+        = new ConcurrentHashMap<String, ConcurrentMap<String, Resolution>>();
+    private final ConcurrentMap<String, Boolean> taxa = new ConcurrentHashMap<String, Boolean>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong lookupNanos = new AtomicLong();
+    // rows, and distinct identifiers, that resolved to no gene or to more than one
+    private final AtomicLong missingRows = new AtomicLong();
+    private final AtomicLong ambiguousRows = new AtomicLong();
+    private final AtomicLong missingIds = new AtomicLong();
+    private final AtomicLong ambiguousIds = new AtomicLong();
+    private final TopKCounter failures = new TopKCounter(FAILURE_CAPACITY);
+
+    /**
+     * Constructor
+     * @param resolver the resolver to query, may be null
+     */
+    public IdResolutionCache(IdResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    /**
+     * @return the underlying resolver, may be null
+     */
+    public IdResolver getIdResolver() {
+        return resolver;
+    }
+
+    /**
+     * Resolve an identifier to a single primary identifier.
+     *
+     * @param taxonId taxon of the organism, e.g. 9606
+     * @param identifier identifier to resolve
+     * @return the primary identifier, or null if the identifier resolved to zero or to more
+     * than one gene
+     */
+    public String resolve(String taxonId, String identifier) {
+        if (identifier == null) {
+            return null;
+        }
+        if (!hasTaxon(taxonId)) {
+            return identifier;
+        }
+        Resolution resolution = getResolution(taxonId, identifier);
+        if (resolution.getPrimaryIdentifier() == null) {
+            failed(taxonId, identifier, resolution.getCount());
+        }
+        return resolution.getPrimaryIdentifier();
+    }
+
+    /**
+     * Look up, and cache, the resolution of an identifier.  The resolver must have data for
+     * the taxon.
+     *
+     * @param taxonId taxon of the organism
+     * @param identifier identifier to resolve
+     * @return the resolution
+     */
+    protected Resolution getResolution(String taxonId, String identifier) {
+        ConcurrentMap<String, Resolution> taxonResolutions = resolutions.get(taxonId);
+        if (taxonResolutions == null) {
+            resolutions.putIfAbsent(taxonId, new ConcurrentHashMap<String, Resolution>());
+            taxonResolutions = resolutions.get(taxonId);
+        }
+        Resolution resolution = taxonResolutions.get(identifier);
+        if (resolution != null) {
+            hits.incrementAndGet();
+            return resolution;
+        }
+        // computeIfAbsent makes sure concurrent callers only query the resolver once
+        return taxonResolutions.computeIfAbsent(identifier, id -> lookup(taxonId, id));
+    }
+
+    private Resolution lookup(String taxonId, String identifier) {
+        misses.incrementAndGet();
+        long start = System.nanoTime();
+        Set<String> ids = resolver.resolveId(taxonId, identifier);
+        lookupNanos.addAndGet(System.nanoTime() - start);
+        int count = (ids == null) ? 0 : ids.size();
+        if (count != 1) {
+            (count == 0 ? missingIds : ambiguousIds).incrementAndGet();
+            return new Resolution(null, count);
+        }
+        return new Resolution(ids.iterator().next(), count);
+    }
+
+    private void failed(String taxonId, String identifier, int count) {
+        (count == 0 ? missingRows : ambiguousRows).incrementAndGet();
+        failures.add(identifier);
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("RESOLVER: failed to resolve gene to one identifier, ignoring gene: "
+                    + identifier + " taxon: " + taxonId + " count: " + count);
+        }
+    }
+
+    /**
+     * @param taxonId taxon of the organism, e.g. 9606
+     * @return true if there is a resolver with data for the taxon, false if identifiers of
+     * the taxon are passed through unchanged
+     */
+    public boolean hasTaxon(String taxonId) {
+        if (resolver == null) {
+            return false;
+        }
+        Boolean hasTaxon = taxa.get(taxonId);
+        if (hasTaxon == null) {
+            hasTaxon = Boolean.valueOf(resolver.hasTaxon(taxonId));
+            taxa.put(taxonId, hasTaxon);
+        }
+        return hasTaxon.booleanValue();
+    }
+
+    /**
+     * @return number of lookups answered from the cache
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return number of lookups that had to query the resolver
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return time spent querying the resolver, summed over all threads
+     */
+    public long getLookupNanos() {
+        return lookupNanos.get();
+    }
+
+    /**
+     * @return number of rows whose identifier resolved to no gene
+     */
+    public long getMissingCount() {
+        return missingRows.get();
+    }
+
+    /**
+     * @return number of rows whose identifier resolved to more than one gene
+     */
+    public long getAmbiguousCount() {
+        return ambiguousRows.get();
+    }
+
+    /**
+     * @return number of distinct identifiers that resolved to no gene
+     */
+    public long getDistinctMissingCount() {
+        return missingIds.get();
+    }
+
+    /**
+     * @return number of distinct identifiers that resolved to more than one gene
+     */
+    public long getDistinctAmbiguousCount() {
+        return ambiguousIds.get();
+    }
+
+    /**
+     * @param n largest number of identifiers to return
+     * @return the identifiers that failed to resolve in the most rows, most rows first
+     */
+    public List<TopKCounter.Entry> getTopFailures(int n) {
+        return failures.getTop(n);
+    }
+
+    /**
+     * @return the counts of identifiers that failed to resolve and the most frequent of them,
+     * with the number of genes each resolved to
+     */
+    public String getFailureSummary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("RESOLVER: failed to resolve ").append(getMissingCount() + getAmbiguousCount())
+            .append(" rows (").append(getMissingCount()).append(" missing, ")
+            .append(getAmbiguousCount()).append(" ambiguous), ")
+            .append(getDistinctMissingCount() + getDistinctAmbiguousCount())
+            .append(" distinct identifiers (").append(getDistinctMissingCount())
+            .append(" missing, ").append(getDistinctAmbiguousCount()).append(" ambiguous)");
+        List<TopKCounter.Entry> top = getTopFailures(FAILURE_SUMMARY_SIZE);
+        if (!top.isEmpty()) {
+            sb.append(", most frequent:");
+            for (TopKCounter.Entry entry : top) {
+                sb.append(' ').append(entry.getKey()).append(" rows: ")
+                    .append(entry.getCount()).append(" genes: ")
+                    .append(getFailureCount(entry.getKey())).append(';');
+            }
+            sb.setLength(sb.length() - 1);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Log the failure summary, if any identifiers failed to resolve.  Called by converters
+     * when they close.
+     */
+    public void logFailures() {
+        if (getMissingCount() + getAmbiguousCount() > 0) {
+            LOG.info(getFailureSummary());
+        }
+    }
+
+    // number of genes a failed identifier resolved to, in the first taxon it failed in
+    private int getFailureCount(String identifier) {
+        for (ConcurrentMap<String, Resolution> taxonResolutions : resolutions.values()) {
+            Resolution resolution = taxonResolutions.get(identifier);
+            if (resolution != null && resolution.getPrimaryIdentifier() == null) {
+                return resolution.getCount();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return number of distinct identifiers cached, across all taxa
+     */
+    public int size() {
+        int size = 0;
+        for (ConcurrentMap<String, Resolution> taxonResolutions : resolutions.values()) {
+            size += taxonResolutions.size();
+        }
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "IdResolutionCache[size=" + size() + ", hits=" + hits.get() + ", misses="
+            + misses.get() + "]";
+    }
+
+    /**
+     * Result of resolving one identifier.
+     */
+    protected static final class Resolution
+    {
+        private final String primaryIdentifier;
+        private final int count;
+
+        /**
+         * @param primaryIdentifier the resolved identifier, null if unresolved
+         * @param count number of identifiers the resolver returned
+         */
+        Resolution(String primaryIdentifier, int count) {
+            this.primaryIdentifier = primaryIdentifier;
+            this.count = count;
+        }
+
+        /**
+         * @return the resolved identifier, null if unresolved
+         */
+        public String getPrimaryIdentifier() {
+            return primaryIdentifier;
+        }
+
+        /**
+         * @return number of identifiers the resolver returned
+         */
+        public int getCount() {
+            return count;
+        }
+    }
+}
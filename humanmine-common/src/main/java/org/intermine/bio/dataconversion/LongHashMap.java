@@ -0,0 +1,143 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+/**
+ * A map from primitive longs to objects, eg. from a key packed from numeric identifiers to an
+ * Item identifier.  Like LongHashSet, keys are kept in an open addressing table so there is no
+ * boxing and no entry object per mapping.  Values can't be null.
+ *
+ * Not thread-safe.
+ *
+ * @param <V> value type
+ * @author InterMine
+ */
+public class LongHashMap<V>
+{
+    private static final int DEFAULT_CAPACITY = 1024;
+    // 0 marks an empty slot, so the value for 0 is kept separately
+    private static final long EMPTY = 0L;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size = 0;
+    private V emptyKeyValue = null;
+
+    /**
+     * Constructor
+     */
+    public LongHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor
+     * @param expectedSize number of mappings expected, the map grows if there are more
+     */
+    public LongHashMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Negative size: " + expectedSize);
+        }
+        // keep the table at most half full
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 2) * 2 - 1) << 1;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @param key the key
+     * @return the value for the key, or null if there isn't one
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        if (key == EMPTY) {
+            return emptyKeyValue;
+        }
+        int slot = LongHashSet.slot(key, mask);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return (V) values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * @param key the key
+     * @param value the value, not null
+     * @return the previous value for the key, or null if there wasn't one
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value can't be null");
+        }
+        if (key == EMPTY) {
+            V previous = emptyKeyValue;
+            if (previous == null) {
+                size++;
+            }
+            emptyKeyValue = value;
+            return previous;
+        }
+        int slot = LongHashSet.slot(key, mask);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                V previous = (V) values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        if (size * 2 > keys.length) {
+            rehash(keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * @return number of mappings
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if there are no mappings
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = LongHashSet.slot(oldKeys[i], mask);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
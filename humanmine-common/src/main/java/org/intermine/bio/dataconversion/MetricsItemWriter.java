@@ -0,0 +1,139 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Collection;
+
+import org.intermine.dataconversion.ItemWriter;
+import org.intermine.model.fulldata.Attribute;
+import org.intermine.model.fulldata.Item;
+import org.intermine.model.fulldata.Reference;
+import org.intermine.model.fulldata.ReferenceList;
+import org.intermine.objectstore.ObjectStoreException;
+
+/**
+ * An ItemWriter that counts the Items stored, per class, and the time spent storing them in
+ * the ConverterMetrics of a converter.  A converter wraps the writer it is given:
+ *
+ * <pre>
+ *     super(new MetricsItemWriter(writer, "gtex"), model, null, null);
+ *     metrics = ((MetricsItemWriter) getItemWriter()).getMetrics();
+ * </pre>
+ *
+ * Reading the clock can cost as much as storing an Item in a fast writer, so only one
+ * store(Item) in SAMPLE_INTERVAL is timed and its time counted for all of them.  Stores
+ * should be made from one thread.
+ *
+ * @author InterMine
+ */
+public class MetricsItemWriter implements ItemWriter
+{
+    private static final int SAMPLE_INTERVAL = 16;
+
+    private final ItemWriter writer;
+    private final ConverterMetrics metrics;
+    private int unsampled = 0;
+
+    /**
+     * Constructor
+     *
+     * @param writer the ItemWriter to write to
+     * @param source name of the source, e.g. gtex
+     */
+    public MetricsItemWriter(ItemWriter writer, String source) {
+        this.writer = writer;
+        this.metrics = new ConverterMetrics(source);
+    }
+
+    /**
+     * @return the wrapped writer
+     */
+    public ItemWriter getWriter() {
+        return writer;
+    }
+
+    /**
+     * @return the metrics the Items are counted in
+     */
+    public ConverterMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Integer store(Item item) throws ObjectStoreException {
+        metrics.itemStored(item.getClassName());
+        if (unsampled > 0) {
+            unsampled--;
+            return writer.store(item);
+        }
+        unsampled = SAMPLE_INTERVAL - 1;
+        long start = System.nanoTime();
+        Integer id = writer.store(item);
+        metrics.addStoreTime((System.nanoTime() - start) * SAMPLE_INTERVAL);
+        return id;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void store(ReferenceList refList, Integer itemId) throws ObjectStoreException {
+        long start = System.nanoTime();
+        writer.store(refList, itemId);
+        metrics.addStoreTime(System.nanoTime() - start);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void store(Reference ref, Integer itemId) throws ObjectStoreException {
+        long start = System.nanoTime();
+        writer.store(ref, itemId);
+        metrics.addStoreTime(System.nanoTime() - start);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void store(Attribute att, Integer itemId) throws ObjectStoreException {
+        long start = System.nanoTime();
+        writer.store(att, itemId);
+        metrics.addStoreTime(System.nanoTime() - start);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void storeAll(Collection<Item> items) throws ObjectStoreException {
+        long start = System.nanoTime();
+        writer.storeAll(items);
+        metrics.addStoreTime(System.nanoTime() - start);
+        for (Item item : items) {
+            metrics.itemStored(item.getClassName());
+        }
+    }
+
+    /**
+     * Close the wrapped writer.  The metrics are closed by the converter.
+     *
+     * @throws ObjectStoreException if the wrapped writer fails
+     */
+    @Override
+    public void close() throws ObjectStoreException {
+        writer.close();
+    }
+}
@@ -0,0 +1,209 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A producer/consumer pipeline that keeps its output in input order.  One reader thread pulls
+ * inputs from a Source, a pool of workers applies a Transform to each, and the calling thread
+ * hands the results to a Sink in the order the inputs were read.
+ *
+ * Creating and storing Items must happen in the Sink: item identifiers are allocated in
+ * sequence, so doing it on one thread in input order keeps the output deterministic.
+ *
+ * @param <I> input type
+ * @param <O> output type
+ * @author InterMine
+ */
+public class OrderedPipeline<I, O>
+{
+    private static final Future<?> END = CompletableFuture.completedFuture(null);
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+    private final int workers;
+    private final int queueSize;
+    private final String name;
+
+    /**
+     * Reads inputs, called from the reader thread only.
+     * @param <I> input type
+     */
+    public interface Source<I>
+    {
+        /**
+         * @return the next input, or null if there are no more
+         * @throws Exception if the input can't be read
+         */
+        I next() throws Exception;
+    }
+
+    /**
+     * Turns an input into an output, called concurrently from worker threads.
+     * @param <I> input type
+     * @param <O> output type
+     */
+    public interface Transform<I, O>
+    {
+        /**
+         * @param input the input
+         * @return the output
+         * @throws Exception if something goes wrong
+         */
+        O apply(I input) throws Exception;
+    }
+
+    /**
+     * Consumes outputs in input order, called from the thread that runs the pipeline.
+     * @param <O> output type
+     */
+    public interface Sink<O>
+    {
+        /**
+         * @param output the output
+         * @throws Exception if something goes wrong
+         */
+        void accept(O output) throws Exception;
+    }
+
+    /**
+     * Constructor
+     * @param name used to name the threads
+     * @param workers number of worker threads
+     * @param queueSize maximum number of inputs read but not yet passed to the sink
+     */
+    public OrderedPipeline(String name, int workers, int queueSize) {
+        if (workers < 1 || queueSize < 1) {
+            throw new IllegalArgumentException("workers and queueSize must be positive, got "
+                    + workers + " and " + queueSize);
+        }
+        this.name = name;
+        this.workers = workers;
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * Run the pipeline until the source is exhausted.  The first exception or error thrown by
+     * the source, a transform or the sink stops the pipeline and is rethrown here.
+     *
+     * @param source where inputs come from
+     * @param transform applied to each input by a worker
+     * @param sink receives outputs in input order
+     * @throws Exception if any stage fails
+     */
+    public void run(final Source<I> source, final Transform<I, O> transform, Sink<O> sink)
+        throws Exception {
+        final BlockingQueue<Future<?>> queue = new ArrayBlockingQueue<Future<?>>(queueSize);
+        final ExecutorService pool = Executors.newFixedThreadPool(workers,
+                new NamedThreadFactory(name + "-" + POOL_COUNT.incrementAndGet() + "-worker"));
+        final Throwable[] readerError = new Throwable[1];
+
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    I input;
+                    while ((input = source.next()) != null) {
+                        final I current = input;
+                        queue.put(pool.submit(new Callable<O>() {
+                            @Override
+                            public O call() throws Exception {
+                                return transform.apply(current);
+                            }
+                        }));
+                    }
+                } catch (InterruptedException e) {
+                    // the sink failed and we have been told to stop, keep the flag so END
+                    // isn't waited for on a full queue
+                    Thread.currentThread().interrupt();
+                } catch (Throwable t) {
+                    // errors too, or the calling thread would wait for END forever
+                    readerError[0] = t;
+                } finally {
+                    try {
+                        queue.put(END);
+                    } catch (InterruptedException e) {
+                        // nothing is waiting for it any more
+                    }
+                }
+            }
+        }, name + "-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        try {
+            while (true) {
+                Future<?> future = queue.take();
+                if (future == END) {
+                    break;
+                }
+                @SuppressWarnings("unchecked")
+                O output = (O) getResult(future);
+                sink.accept(output);
+            }
+            reader.join();
+            if (readerError[0] != null) {
+                rethrow(readerError[0]);
+            }
+        } finally {
+            reader.interrupt();
+            pool.shutdownNow();
+        }
+    }
+
+    private static Object getResult(Future<?> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            rethrow(e.getCause() == null ? e : e.getCause());
+            return null;
+        }
+    }
+
+    private static void rethrow(Throwable t) throws Exception {
+        if (t instanceof Exception) {
+            throw (Exception) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        throw new RuntimeException(t);
+    }
+
+    /**
+     * Names threads so they can be identified in thread dumps.
+     */
+    private static class NamedThreadFactory implements ThreadFactory
+    {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.intermine.xml.full.Item;
+
+/**
+ * Keeps one instance of each attribute value a converter sets over and over, eg. tissue
+ * names or "Not specified", so the Items waiting to be written share them rather than each
+ * holding its own copy read from the file.  Values are kept until the pool is dropped, so it
+ * is only for attributes with a small number of distinct values, not identifiers or scores.
+ *
+ * The pool counts the values it has seen and estimates the memory saved, as the size of each
+ * copy that was replaced by the kept instance.  Not thread-safe, use one per converter from
+ * the thread that creates the Items.
+ *
+ * @author InterMine
+ */
+public class StringPool
+{
+    // String object header and fields, then char array header, as on a 64-bit JVM
+    private static final int STRING_SIZE = 24;
+    private static final int ARRAY_HEADER_SIZE = 16;
+
+    private final Map<String, String> values = new HashMap<String, String>();
+    private long lookupCount = 0;
+    private long bytesSaved = 0;
+
+    /**
+     * @param value a value, may be null
+     * @return the kept instance equal to the value, the value itself the first time it is seen
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        lookupCount++;
+        String kept = values.get(value);
+        if (kept == null) {
+            values.put(value, value);
+            return value;
+        }
+        if (kept != value) {
+            bytesSaved += getSize(value);
+        }
+        return kept;
+    }
+
+    /**
+     * Set an attribute of an Item to the kept instance of its value.
+     *
+     * @param item the Item
+     * @param name the attribute name
+     * @param value the attribute value
+     */
+    public void setAttribute(Item item, String name, String value) {
+        item.setAttribute(name, intern(value));
+    }
+
+    /**
+     * @return number of distinct values kept
+     */
+    public int getDistinctCount() {
+        return values.size();
+    }
+
+    /**
+     * @return number of values looked up
+     */
+    public long getLookupCount() {
+        return lookupCount;
+    }
+
+    /**
+     * @return estimated bytes taken by the copies that were replaced by a kept instance
+     */
+    public long getBytesSaved() {
+        return bytesSaved;
+    }
+
+    /**
+     * @return a summary of the counts, for logging
+     */
+    @Override
+    public String toString() {
+        return lookupCount + " values, " + values.size() + " distinct, about "
+            + (bytesSaved / 1024) + " KB of copies saved";
+    }
+
+    private static long getSize(String value) {
+        long array = ARRAY_HEADER_SIZE + 2L * value.length();
+        // objects take a multiple of 8 bytes
+        return STRING_SIZE + ((array + 7) & ~7L);
+    }
+}
@@ -0,0 +1,150 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the most frequent of a stream of keys in a fixed number of counters, with the
+ * Space-Saving algorithm.  While there are fewer distinct keys than counters the counts are
+ * exact.  After that a new key takes over the counter with the lowest count, and inherits that
+ * count as its error, so a count is never less than the true count and never more than the true
+ * count plus its error.  Any key seen more than total / capacity times is guaranteed to have a
+ * counter.
+ *
+ * Adding a key that already has a counter is a map lookup, taking over a counter scans all of
+ * them, so the capacity should be small, tens rather than thousands.  Safe to use from several
+ * threads.
+ *
+ * @author InterMine
+ */
+public class TopKCounter
+{
+    private static final Comparator<Entry> BY_COUNT = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry e1, Entry e2) {
+            if (e1.count != e2.count) {
+                return (e1.count > e2.count) ? -1 : 1;
+            }
+            return e1.key.compareTo(e2.key);
+        }
+    };
+
+    private final int capacity;
+    private final Map<String, Entry> entries;
+    private long total = 0;
+
+    /**
+     * Constructor
+     *
+     * @param capacity number of keys to keep counts for
+     */
+    public TopKCounter(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1, got " + capacity);
+        }
+        this.capacity = capacity;
+        this.entries = new HashMap<String, Entry>(capacity * 2);
+    }
+
+    /**
+     * Count one occurrence of a key.
+     *
+     * @param key the key
+     */
+    public synchronized void add(String key) {
+        total++;
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.count++;
+            return;
+        }
+        if (entries.size() < capacity) {
+            entries.put(key, new Entry(key, 1, 0));
+            return;
+        }
+        Entry min = null;
+        for (Entry candidate : entries.values()) {
+            if (min == null || candidate.count < min.count) {
+                min = candidate;
+            }
+        }
+        entries.remove(min.key);
+        entries.put(key, new Entry(key, min.count + 1, min.count));
+    }
+
+    /**
+     * @return number of keys added, including repeats
+     */
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    /**
+     * @param n largest number of keys to return
+     * @return copies of the counters with the highest counts, highest first
+     */
+    public synchronized List<Entry> getTop(int n) {
+        List<Entry> top = new ArrayList<Entry>(entries.size());
+        for (Entry entry : entries.values()) {
+            top.add(new Entry(entry.key, entry.count, entry.error));
+        }
+        Collections.sort(top, BY_COUNT);
+        return (top.size() > n) ? top.subList(0, n) : top;
+    }
+
+    /**
+     * The count of one key.
+     */
+    public static final class Entry
+    {
+        private final String key;
+        private long count;
+        private final long error;
+
+        private Entry(String key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        /**
+         * @return the key
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return number of times the key was counted, possibly over-estimated by the error
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return how much the count may be over the true count, 0 if it is exact
+         */
+        public long getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + count;
+        }
+    }
+}
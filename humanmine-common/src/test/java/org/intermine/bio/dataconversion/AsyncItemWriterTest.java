@@ -0,0 +1,215 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.intermine.dataconversion.ItemWriter;
+import org.intermine.model.fulldata.Attribute;
+import org.intermine.model.fulldata.Item;
+import org.intermine.model.fulldata.Reference;
+import org.intermine.model.fulldata.ReferenceList;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.xml.full.ItemHelper;
+
+public class AsyncItemWriterTest extends TestCase
+{
+    public AsyncItemWriterTest(String arg) {
+        super(arg);
+    }
+
+    public void testSync() throws Exception {
+        RecordingItemWriter recorder = new RecordingItemWriter();
+        AsyncItemWriter writer = new AsyncItemWriter(recorder, "test");
+        Item item = createItem(1);
+        assertEquals(Integer.valueOf(1), writer.store(item));
+        assertEquals(1, recorder.stores.size());
+        assertSame(item, recorder.stores.get(0));
+        assertEquals(0, recorder.storeAllCount);
+    }
+
+    public void testAsync() throws Exception {
+        RecordingItemWriter recorder = new RecordingItemWriter();
+        AsyncItemWriter writer = new AsyncItemWriter(recorder, "test");
+        writer.setAsync(true);
+        writer.setQueueSize(10);
+        writer.setBatchSize(4);
+        List<Object> expected = new ArrayList<Object>();
+        for (int i = 0; i < 100; i++) {
+            Item item = createItem(i);
+            assertNull(writer.store(item));
+            expected.add(item);
+            if (i % 10 == 9) {
+                writer.store((ReferenceList) null, Integer.valueOf(i));
+                expected.add(Integer.valueOf(i));
+            }
+        }
+        writer.flush();
+        // in the order stored, the items written in batches
+        assertEquals(expected, recorder.stores);
+        assertTrue(recorder.storeAllCount >= 100 / 4);
+
+        // a store after a flush starts again
+        Item item = createItem(100);
+        writer.store(item);
+        writer.close();
+        assertSame(item, recorder.stores.get(recorder.stores.size() - 1));
+        assertTrue(recorder.closed);
+    }
+
+    public void testFailure() throws Exception {
+        RecordingItemWriter recorder = new RecordingItemWriter();
+        recorder.failAfter = 5;
+        AsyncItemWriter writer = new AsyncItemWriter(recorder, "test");
+        writer.setAsync(true);
+        writer.setQueueSize(2);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                writer.store(createItem(i));
+            }
+            writer.flush();
+            fail("Expected an ObjectStoreException");
+        } catch (ObjectStoreException e) {
+            assertEquals("Storing items failed", e.getMessage());
+            assertEquals("Database gone", e.getCause().getMessage());
+        }
+    }
+
+    public void testFailureBeforeBatchFills() throws Exception {
+        RecordingItemWriter recorder = new RecordingItemWriter();
+        recorder.failAfter = 0;
+        AsyncItemWriter writer = new AsyncItemWriter(recorder, "test");
+        writer.setAsync(true);
+        writer.setBatchSize(10);
+        for (int i = 0; i < 10; i++) {
+            writer.store(createItem(i));
+        }
+        assertTrue(recorder.failed.await(10, TimeUnit.SECONDS));
+        // none of these fill a batch, the failure is seen by store() itself
+        try {
+            for (int i = 10; i < 19; i++) {
+                writer.store(createItem(i));
+                Thread.sleep(50);
+            }
+            fail("Expected an ObjectStoreException");
+        } catch (ObjectStoreException e) {
+            assertEquals("Database gone", e.getCause().getMessage());
+        }
+    }
+
+    public void testAbort() throws Exception {
+        final RecordingItemWriter recorder = new RecordingItemWriter();
+        recorder.blocked = new CountDownLatch(1);
+        AsyncItemWriter writer = new AsyncItemWriter(recorder, "test");
+        // nothing to stop yet
+        writer.abort();
+
+        writer.setAsync(true);
+        writer.setQueueSize(100);
+        writer.setBatchSize(2);
+        for (int i = 0; i < 20; i++) {
+            writer.store(createItem(i));
+        }
+        assertTrue(recorder.writing.await(10, TimeUnit.SECONDS));
+        // the first batch is being written, let it finish once abort() has dropped the rest
+        Thread release = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    // release anyway
+                }
+                recorder.blocked.countDown();
+            }
+        };
+        release.start();
+        writer.abort();
+        release.join();
+        assertEquals(2, recorder.stores.size());
+        assertFalse(recorder.closed);
+
+        // a store after an abort starts again
+        Item item = createItem(20);
+        writer.store(item);
+        writer.flush();
+        assertEquals(3, recorder.stores.size());
+        assertSame(item, recorder.stores.get(2));
+    }
+
+    private static Item createItem(int i) {
+        return ItemHelper.convert(new org.intermine.xml.full.Item("0_" + i, "Gene", ""));
+    }
+
+    private static class RecordingItemWriter implements ItemWriter
+    {
+        private List<Object> stores = new ArrayList<Object>();
+        private int storeAllCount = 0;
+        private int failAfter = Integer.MAX_VALUE;
+        private final CountDownLatch failed = new CountDownLatch(1);
+        private final CountDownLatch writing = new CountDownLatch(1);
+        // if set, stores wait for it
+        private CountDownLatch blocked = null;
+        private boolean closed = false;
+
+        @Override
+        public Integer store(Item item) throws ObjectStoreException {
+            if (stores.size() >= failAfter) {
+                failed.countDown();
+                throw new ObjectStoreException("Database gone");
+            }
+            writing.countDown();
+            if (blocked != null) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    throw new ObjectStoreException("Interrupted", e);
+                }
+            }
+            stores.add(item);
+            return Integer.valueOf(stores.size());
+        }
+
+        @Override
+        public void store(ReferenceList refList, Integer itemId) {
+            stores.add(itemId);
+        }
+
+        @Override
+        public void store(Reference ref, Integer itemId) {
+            stores.add(itemId);
+        }
+
+        @Override
+        public void store(Attribute att, Integer itemId) {
+            stores.add(itemId);
+        }
+
+        @Override
+        public void storeAll(Collection<Item> items) throws ObjectStoreException {
+            storeAllCount++;
+            for (Item item : items) {
+                store(item);
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
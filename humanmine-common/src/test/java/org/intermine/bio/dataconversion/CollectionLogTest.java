@@ -0,0 +1,114 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.intermine.dataconversion.DataConverter;
+import org.intermine.xml.full.ReferenceList;
+
+public class CollectionLogTest extends TestCase
+{
+    public CollectionLogTest(String arg) {
+        super(arg);
+    }
+
+    public void testStoreCollections() throws Exception {
+        CollectionLog log = new CollectionLog();
+        try {
+            log.addOwner("1_1", 101);
+            log.addOwner("1_2", 102);
+            log.addOwner("1_3", 103);
+            log.add("1_2", "genes", "2_1");
+            log.add("1_1", "diseases", "3_1");
+            log.add("1_2", "hpoAnnotations", "4_1");
+            log.add("1_2", "genes", "2_2");
+            log.add("1_2", "genes", "2_1");
+            assertEquals(5, log.size());
+
+            RecordingConverter converter = new RecordingConverter();
+            log.storeCollections(converter);
+            // owners in the order added, then collections and entries in the order first added
+            assertEquals("[101 diseases [3_1], 102 genes [2_1, 2_2],"
+                    + " 102 hpoAnnotations [4_1]]", converter.stored.toString());
+
+            try {
+                log.add("1_1", "diseases", "3_2");
+                fail("expected exception");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        } finally {
+            log.close();
+        }
+    }
+
+    public void testManyEntries() throws Exception {
+        CollectionLog log = new CollectionLog();
+        try {
+            for (int owner = 0; owner < 2000; owner++) {
+                log.addOwner("1_" + owner, owner);
+            }
+            // enough to need several flushes of the buffer
+            for (int i = 0; i < 200000; i++) {
+                log.add("1_" + (i % 2000), "evidences", "5_" + i);
+            }
+            RecordingConverter converter = new RecordingConverter();
+            log.storeCollections(converter);
+            assertEquals(2000, converter.stored.size());
+            assertTrue(converter.stored.get(7).startsWith("7 evidences [5_7, 5_2007, 5_4007,"));
+        } finally {
+            log.close();
+        }
+    }
+
+    public void testUnknownOwner() throws Exception {
+        CollectionLog log = new CollectionLog();
+        try {
+            log.add("1_1", "genes", "2_1");
+            fail("expected exception");
+        } catch (IllegalArgumentException e) {
+            // expected
+        } finally {
+            log.close();
+        }
+    }
+
+    public void testNullObjectId() throws Exception {
+        // what an AsyncItemWriter returns from store()
+        CollectionLog log = new CollectionLog();
+        try {
+            log.addOwner("1_1", null);
+            fail("expected exception");
+        } catch (IllegalArgumentException e) {
+            // expected
+        } finally {
+            log.close();
+        }
+    }
+
+    private static class RecordingConverter extends DataConverter
+    {
+        private final List<String> stored = new ArrayList<String>();
+
+        RecordingConverter() {
+            super(null, null);
+        }
+
+        @Override
+        public void store(ReferenceList list, Integer objectId) {
+            stored.add(objectId + " " + list.getName() + " " + list.getRefIds());
+        }
+    }
+}
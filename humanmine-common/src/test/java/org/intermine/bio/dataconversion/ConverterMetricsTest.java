@@ -0,0 +1,190 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+import org.intermine.dataconversion.ItemWriter;
+import org.intermine.model.fulldata.Attribute;
+import org.intermine.model.fulldata.Item;
+import org.intermine.model.fulldata.Reference;
+import org.intermine.model.fulldata.ReferenceList;
+import org.intermine.xml.full.ItemHelper;
+
+public class ConverterMetricsTest extends TestCase
+{
+    public ConverterMetricsTest(String arg) {
+        super(arg);
+    }
+
+    public void testCounts() throws Exception {
+        MetricsItemWriter writer = new MetricsItemWriter(new DiscardingItemWriter(), "test");
+        ConverterMetrics metrics = writer.getMetrics();
+        Reader reader = metrics.countBytes(new StringReader("a\tb\nc\td\n"));
+        while (reader.read() >= 0) {
+            metrics.rowRead();
+        }
+        metrics.rowSkipped("unresolved gene");
+        metrics.rowSkipped("unresolved gene");
+        metrics.rowSkipped("header");
+        writer.store(createItem("Gene"));
+        writer.storeAll(Arrays.asList(createItem("Gene"), createItem("SNP")));
+
+        assertEquals(8, metrics.getRowsRead());
+        assertEquals(8, metrics.getBytesRead());
+        assertEquals(3, metrics.getRowsSkipped());
+        assertEquals(2, metrics.getRowsSkipped("unresolved gene"));
+        assertEquals(3, metrics.getItemsStored());
+        assertEquals(2, metrics.getItemsStored("Gene"));
+        assertEquals(1, metrics.getItemsStored("SNP"));
+        assertEquals(0, metrics.getResolverCalls());
+
+        String summary = metrics.getSummary();
+        assertTrue(summary, summary.startsWith("{\"source\": \"test\", \"elapsedMillis\": "));
+        assertTrue(summary, summary.contains("\"rows\": {\"read\": 8, \"skipped\": 3, "
+                + "\"skippedBy\": {\"header\": 1, \"unresolved gene\": 2}}, \"bytesRead\": 8"));
+        assertTrue(summary, summary.contains("\"items\": {\"stored\": 3, "
+                + "\"byClass\": {\"Gene\": 2, \"SNP\": 1}}"));
+        assertTrue(summary, summary.contains("\"resolver\": {\"calls\": 0, \"hits\": 0, "
+                + "\"misses\": 0}, \"unresolved\": {\"rows\": 0}"));
+        assertTrue(summary, summary.contains("\"writeMillis\": 0}}"));
+        metrics.close();
+    }
+
+    public void testWriteTime() throws Exception {
+        // the writer thread's time is counted apart from the time handing items to it
+        AsyncItemWriter async = new AsyncItemWriter(new DiscardingItemWriter() {
+            @Override
+            public void storeAll(Collection<Item> items) {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "test");
+        async.setAsync(true);
+        MetricsItemWriter writer = new MetricsItemWriter(async, "write-test");
+        ConverterMetrics metrics = writer.getMetrics();
+        async.setMetrics(metrics);
+        writer.store(createItem("Gene"));
+        async.flush();
+        assertEquals(1, metrics.getItemsStored());
+        assertTrue(metrics.getWriteMillis() >= 50);
+        assertTrue(metrics.getSummary(), metrics.getSummary().contains("\"writeMillis\": "));
+        metrics.close();
+    }
+
+    public void testJmx() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("org.intermine.bio.dataconversion:"
+                + "type=ConverterMetrics,source=\"jmx-test\"");
+        ConverterMetrics metrics = new ConverterMetrics("jmx-test");
+        // only registered once the converter starts reading
+        assertFalse(server.isRegistered(name));
+        metrics.countBytes(new StringReader(""));
+        metrics.rowRead();
+        assertTrue(server.isRegistered(name));
+        assertEquals(Long.valueOf(1), server.getAttribute(name, "RowsRead"));
+        assertEquals("jmx-test", server.getAttribute(name, "Source"));
+
+        // a second converter for the same source takes over the name
+        ConverterMetrics second = new ConverterMetrics("jmx-test");
+        second.countBytes(new StringReader(""));
+        assertEquals(Long.valueOf(0), server.getAttribute(name, "RowsRead"));
+        metrics.close();
+        second.close();
+        assertFalse(server.isRegistered(name));
+    }
+
+    public void testClose() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("org.intermine.bio.dataconversion:"
+                + "type=ConverterMetrics,source=\"close-test\"");
+        ConverterMetrics metrics = new ConverterMetrics("close-test");
+        metrics.countBytes(new StringReader(""));
+        metrics.close();
+        long elapsed = metrics.getElapsedMillis();
+        Thread.sleep(20);
+        // a converter that failed has already closed its metrics, closing again does nothing
+        metrics.close();
+        assertEquals(elapsed, metrics.getElapsedMillis());
+        // nor is anything read after closing published
+        metrics.countBytes(new StringReader(""));
+        assertFalse(server.isRegistered(name));
+    }
+
+    public void testSummaryFile() throws Exception {
+        File dir = Files.createTempDirectory("metrics").toFile();
+        System.setProperty(ConverterMetrics.METRICS_DIR_PROPERTY, dir.getPath());
+        try {
+            ConverterMetrics metrics = new ConverterMetrics("file-test");
+            metrics.rowSkipped("quote \" in reason");
+            metrics.close();
+            File file = new File(dir, "file-test-metrics.json");
+            String json = new String(Files.readAllBytes(file.toPath()), "UTF-8");
+            assertTrue(json, json.contains("\"skippedBy\": {\"quote \\\" in reason\": 1}"));
+            assertTrue(json, json.endsWith("}}\n"));
+            file.delete();
+        } finally {
+            System.clearProperty(ConverterMetrics.METRICS_DIR_PROPERTY);
+            dir.delete();
+        }
+    }
+
+    private static Item createItem(String className) {
+        return ItemHelper.convert(new org.intermine.xml.full.Item(null, className, ""));
+    }
+
+    private static class DiscardingItemWriter implements ItemWriter
+    {
+        @Override
+        public Integer store(Item item) {
+            return null;
+        }
+
+        @Override
+        public void store(ReferenceList refList, Integer itemId) {
+            // nothing to do
+        }
+
+        @Override
+        public void store(Reference ref, Integer itemId) {
+            // nothing to do
+        }
+
+        @Override
+        public void store(Attribute att, Integer itemId) {
+            // nothing to do
+        }
+
+        @Override
+        public void storeAll(Collection<Item> items) {
+            // nothing to do
+        }
+
+        @Override
+        public void close() {
+            // nothing to do
+        }
+    }
+}
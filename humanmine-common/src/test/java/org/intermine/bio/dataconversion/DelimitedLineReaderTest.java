@@ -0,0 +1,165 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.StringReader;
+
+import junit.framework.TestCase;
+
+public class DelimitedLineReaderTest extends TestCase
+{
+    public DelimitedLineReaderTest(String arg) {
+        super(arg);
+    }
+
+    public void testTabDelimited() throws Exception {
+        DelimitedLineReader line = new DelimitedLineReader(
+                new StringReader("#header\na\tb\t\tc\n\nd\t\n"), '\t');
+        assertTrue(line.next());
+        assertEquals(4, line.getFieldCount());
+        assertEquals("a", line.getString(0));
+        assertEquals("b", line.getString(1));
+        assertTrue(line.isEmpty(2));
+        assertEquals("c", line.getString(3));
+        assertEquals(2, line.getLineNumber());
+
+        // empty line
+        assertTrue(line.next());
+        assertEquals(0, line.getFieldCount());
+
+        // trailing empty field is kept
+        assertTrue(line.next());
+        assertEquals(2, line.getFieldCount());
+        assertEquals("d", line.getString(0));
+        assertEquals("", line.getString(1));
+
+        assertFalse(line.next());
+        assertFalse(line.next());
+    }
+
+    public void testLineEndings() throws Exception {
+        DelimitedLineReader line = new DelimitedLineReader(
+                new StringReader("a\r\nb\rc\nd"), '\t', 2);
+        StringBuilder values = new StringBuilder();
+        while (line.next()) {
+            assertEquals(1, line.getFieldCount());
+            values.append(line.getString(0));
+        }
+        assertEquals("abcd", values.toString());
+    }
+
+    public void testBufferGrows() throws Exception {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            input.append(i).append(i % 10 == 9 ? "\n" : "\t");
+        }
+        DelimitedLineReader line = new DelimitedLineReader(new StringReader(input.toString()),
+                '\t', 4);
+        int lines = 0;
+        while (line.next()) {
+            assertEquals(10, line.getFieldCount());
+            assertEquals(String.valueOf(lines * 10), line.getString(0));
+            assertEquals(String.valueOf(lines * 10 + 9), line.getString(9));
+            lines++;
+        }
+        assertEquals(100, lines);
+    }
+
+    public void testCompare() throws Exception {
+        DelimitedLineReader line = new DelimitedLineReader(
+                new StringReader("GRCh38\tGRCh37\tOMIM:123\n"), '\t');
+        assertTrue(line.next());
+        assertTrue(line.fieldEquals(0, "GRCh38"));
+        assertFalse(line.fieldEquals(1, "GRCh38"));
+        assertFalse(line.fieldEquals(1, "GRCh3"));
+        assertTrue(line.fieldStartsWith(2, "OMIM"));
+        assertFalse(line.fieldStartsWith(2, "OMIM:1234"));
+    }
+
+    public void testCsv() throws Exception {
+        DelimitedLineReader line = new DelimitedLineReader(
+                new StringReader("a,\"b,c\",\"say \"\"hi\"\"\",,\n"), ',');
+        assertTrue(line.next());
+        assertEquals(5, line.getFieldCount());
+        assertEquals("a", line.getString(0));
+        assertEquals("b,c", line.getString(1));
+        assertEquals("say \"hi\"", line.getString(2));
+        assertTrue(line.fieldEquals(2, "say \"hi\""));
+        assertTrue(line.isEmpty(3));
+        assertTrue(line.isEmpty(4));
+    }
+
+    public void testMissingField() throws Exception {
+        DelimitedLineReader line = new DelimitedLineReader(new StringReader("a\tb\n"), '\t');
+        assertTrue(line.next());
+        try {
+            line.getString(2);
+            fail("expected exception");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    public void testReadHeader() throws Exception {
+        DelimitedLineReader line = new DelimitedLineReader(
+                new StringReader("#id\tname\tskipped\tassembly\tignored\na\tb\tc\tGRCh38\td\te\n"),
+                '\t');
+        int[] columns = line.readHeader("assembly", "id");
+        assertEquals(3, columns[0]);
+        assertEquals(0, columns[1]);
+        assertTrue(line.next());
+        // nothing after the last column is split
+        assertEquals(4, line.getFieldCount());
+        assertTrue(line.fieldEquals(columns[0], "GRCh38"));
+        assertEquals("a", line.getString(columns[1]));
+        assertFalse(line.next());
+    }
+
+    public void testMissingColumn() throws Exception {
+        DelimitedLineReader line = new DelimitedLineReader(
+                new StringReader("DepMap_ID,CCLE_Name\nACH-000001,NIHOVCAR3_OVARY\n"), ',');
+        try {
+            line.readHeader("DepMap_ID", "lineage");
+            fail("expected exception");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("[lineage]"));
+        }
+    }
+
+    public void testSetColumns() throws Exception {
+        DelimitedLineReader line = new DelimitedLineReader(
+                new StringReader("a,\"b,c\",d,e\n"), ',');
+        line.setColumns(1);
+        assertTrue(line.next());
+        assertEquals(2, line.getFieldCount());
+        assertEquals("b,c", line.getString(1));
+    }
+
+    public void testFilter() throws Exception {
+        DelimitedLineReader line = new DelimitedLineReader(
+                new StringReader("1\tGRCh37\tx\n2\tGRCh38\ty\n3\tGRCh37\tz\n4\n"), '\t');
+        line.setFilter(new DelimitedLineReader.Filter() {
+            @Override
+            public boolean accept(DelimitedLineReader current) {
+                return current.fieldStartsWith(0, "4") || current.fieldEquals(1, "GRCh38");
+            }
+        });
+        assertTrue(line.next());
+        assertEquals("2", line.getString(0));
+        assertEquals("y", line.getString(2));
+        assertEquals(3, line.getFieldCount());
+        assertTrue(line.next());
+        assertEquals("4", line.getString(0));
+        assertEquals(1, line.getFieldCount());
+        assertFalse(line.next());
+        assertEquals(2, line.getFilteredCount());
+    }
+}
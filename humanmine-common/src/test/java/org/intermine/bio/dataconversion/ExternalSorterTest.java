@@ -0,0 +1,102 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class ExternalSorterTest extends TestCase
+{
+    public ExternalSorterTest(String arg) {
+        super(arg);
+    }
+
+    public void testSortInMemory() throws Exception {
+        ExternalSorter sorter = new ExternalSorter(0);
+        Reader sorted = sorter.sort(new StringReader("b\t1\na\t2\nb\t3\nab\t4\na\t5\n"));
+        assertEquals("a\t2\na\t5\nab\t4\nb\t1\nb\t3\n", readAll(sorted));
+        assertFalse(sorter.isInputSorted());
+        assertEquals(5, sorter.getLineCount());
+        assertEquals(1, sorter.getRunCount());
+    }
+
+    public void testKeyColumn() throws Exception {
+        ExternalSorter sorter = new ExternalSorter(1);
+        Reader sorted = sorter.sort(new StringReader("x\tb\ny\ta\tz\nshort\nw\tb\n"));
+        // a line without the column has an empty key
+        assertEquals("short\ny\ta\tz\nx\tb\nw\tb\n", readAll(sorted));
+    }
+
+    public void testSortedInput() throws Exception {
+        ExternalSorter sorter = new ExternalSorter(0);
+        Reader sorted = sorter.sort(new StringReader("a\t1\na\t2\nb\t1\n"));
+        assertEquals("a\t1\na\t2\nb\t1\n", readAll(sorted));
+        assertTrue(sorter.isInputSorted());
+    }
+
+    public void testMergeRuns() throws Exception {
+        Random random = new Random(42);
+        List<String> lines = new ArrayList<String>();
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            String line = "key" + random.nextInt(300) + "\t" + i;
+            lines.add(line);
+            input.append(line).append('\n');
+        }
+        ExternalSorter sorter = new ExternalSorter(0);
+        sorter.setMaxMemory(10000);
+        Reader sorted = sorter.sort(new StringReader(input.toString()));
+        assertTrue(sorter.getRunCount() > 10);
+        assertEquals(5000, sorter.getLineCount());
+
+        // the sort is stable, so the same as sorting in memory
+        Collections.sort(lines, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                return a.substring(0, a.indexOf('\t')).compareTo(b.substring(0, b.indexOf('\t')));
+            }
+        });
+        StringBuilder expected = new StringBuilder();
+        for (String line : lines) {
+            expected.append(line).append('\n');
+        }
+        assertEquals(expected.toString(), readAll(sorted));
+    }
+
+    public void testEmpty() throws Exception {
+        ExternalSorter sorter = new ExternalSorter(0);
+        assertEquals("", readAll(sorter.sort(new StringReader(""))));
+        assertTrue(sorter.isInputSorted());
+        assertEquals(0, sorter.getLineCount());
+    }
+
+    private static String readAll(Reader reader) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[7];
+        int n;
+        try {
+            while ((n = reader.read(buffer, 0, buffer.length)) >= 0) {
+                sb.append(buffer, 0, n);
+            }
+        } finally {
+            reader.close();
+        }
+        return sb.toString();
+    }
+}
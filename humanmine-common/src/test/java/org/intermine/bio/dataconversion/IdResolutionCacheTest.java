@@ -0,0 +1,82 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import junit.framework.TestCase;
+
+public class IdResolutionCacheTest extends TestCase
+{
+    private static final String TAXON_ID = "9606";
+    private IdResolver rslv;
+
+    public IdResolutionCacheTest(String arg) {
+        super(arg);
+    }
+
+    public void setUp() throws Exception {
+        super.setUp();
+        rslv = IdResolverService.getMockIdResolver("Gene");
+        rslv.addResolverEntry(TAXON_ID, "ENSG00000225630", Collections.singleton("MTND2P28"));
+        rslv.addResolverEntry(TAXON_ID, "ENSG00000000003",
+                new HashSet<String>(Arrays.asList("TSPAN6", "SHARED")));
+        rslv.addResolverEntry(TAXON_ID, "ENSG00000000005",
+                new HashSet<String>(Arrays.asList("TNMD", "SHARED")));
+    }
+
+    public void testResolve() throws Exception {
+        IdResolutionCache cache = new IdResolutionCache(rslv);
+        assertEquals("ENSG00000225630", cache.resolve(TAXON_ID, "MTND2P28"));
+        assertEquals("ENSG00000225630", cache.resolve(TAXON_ID, "MTND2P28"));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.size());
+    }
+
+    public void testFailuresAreCached() throws Exception {
+        IdResolutionCache cache = new IdResolutionCache(rslv);
+        assertNull(cache.resolve(TAXON_ID, "SHARED"));
+        assertNull(cache.resolve(TAXON_ID, "SHARED"));
+        assertNull(cache.resolve(TAXON_ID, "UNKNOWN"));
+        assertNull(cache.resolve(TAXON_ID, "UNKNOWN"));
+        assertEquals(2, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+    }
+
+    public void testFailureCounts() throws Exception {
+        IdResolutionCache cache = new IdResolutionCache(rslv);
+        for (int i = 0; i < 3; i++) {
+            cache.resolve(TAXON_ID, "UNKNOWN");
+        }
+        cache.resolve(TAXON_ID, "SHARED");
+        cache.resolve(TAXON_ID, "MISSING");
+        cache.resolve(TAXON_ID, "MTND2P28");
+        assertEquals(4, cache.getMissingCount());
+        assertEquals(1, cache.getAmbiguousCount());
+        assertEquals(2, cache.getDistinctMissingCount());
+        assertEquals(1, cache.getDistinctAmbiguousCount());
+        assertEquals("UNKNOWN", cache.getTopFailures(1).get(0).getKey());
+        assertEquals(3, cache.getTopFailures(1).get(0).getCount());
+        assertEquals("RESOLVER: failed to resolve 5 rows (4 missing, 1 ambiguous), "
+                + "3 distinct identifiers (2 missing, 1 ambiguous), most frequent: "
+                + "UNKNOWN rows: 3 genes: 0; MISSING rows: 1 genes: 0; SHARED rows: 1 genes: 2",
+                cache.getFailureSummary());
+    }
+
+    public void testNoResolver() throws Exception {
+        IdResolutionCache cache = new IdResolutionCache(null);
+        assertEquals("MTND2P28", cache.resolve(TAXON_ID, "MTND2P28"));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,51 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class LongHashMapTest extends TestCase
+{
+    public LongHashMapTest(String arg) {
+        super(arg);
+    }
+
+    public void testPut() throws Exception {
+        LongHashMap<String> map = new LongHashMap<String>(2);
+        assertTrue(map.isEmpty());
+        assertNull(map.put(28L << 33, "1_1"));
+        assertEquals("1_1", map.put(28L << 33, "1_2"));
+        assertNull(map.put(0, "1_3"));
+        assertEquals(2, map.size());
+        assertEquals("1_2", map.get(28L << 33));
+        assertEquals("1_3", map.get(0));
+        assertNull(map.get(1));
+    }
+
+    public void testMatchesHashMap() throws Exception {
+        LongHashMap<String> map = new LongHashMap<String>(16);
+        Map<Long, String> expected = new HashMap<Long, String>();
+        Random random = new Random(42);
+        for (int i = 0; i < 50000; i++) {
+            long key = ((long) random.nextInt(5000) << 33) | (random.nextInt(1000) << 1);
+            String value = String.valueOf(i);
+            assertEquals(expected.put(key, value), map.put(key, value));
+        }
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, String> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+}
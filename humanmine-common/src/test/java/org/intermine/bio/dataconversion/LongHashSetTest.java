@@ -0,0 +1,59 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class LongHashSetTest extends TestCase
+{
+    public LongHashSetTest(String arg) {
+        super(arg);
+    }
+
+    public void testAdd() throws Exception {
+        LongHashSet set = new LongHashSet(2);
+        assertTrue(set.isEmpty());
+        assertTrue(set.add(17078));
+        assertFalse(set.add(17078));
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        assertTrue(set.add(-1));
+        assertEquals(3, set.size());
+        assertTrue(set.contains(17078));
+        assertTrue(set.contains(0));
+        assertTrue(set.contains(-1));
+        assertFalse(set.contains(1));
+
+        set.clear();
+        assertEquals(0, set.size());
+        assertFalse(set.contains(0));
+        assertFalse(set.contains(17078));
+    }
+
+    public void testMatchesHashSet() throws Exception {
+        LongHashSet set = new LongHashSet(16);
+        Set<Long> expected = new HashSet<Long>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            // sequential ids with gaps and repeats, like AlleleIDs
+            long value = (i % 3 == 0) ? random.nextInt(100000) : i * 7L;
+            assertEquals(expected.add(value), set.add(value));
+        }
+        assertEquals(expected.size(), set.size());
+        for (long value = 0; value < 800000; value++) {
+            assertEquals(expected.contains(value), set.contains(value));
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class OrderedPipelineTest extends TestCase
+{
+    private static final int COUNT = 500;
+
+    public OrderedPipelineTest(String arg) {
+        super(arg);
+    }
+
+    public void testOrderIsKept() throws Exception {
+        final List<Integer> results = new ArrayList<Integer>();
+        final Random random = new Random(42);
+        OrderedPipeline<Integer, Integer> pipeline =
+            new OrderedPipeline<Integer, Integer>("test", 8, 16);
+        pipeline.run(new Counter(COUNT), new OrderedPipeline.Transform<Integer, Integer>() {
+            @Override
+            public Integer apply(Integer input) throws Exception {
+                // finish out of order
+                Thread.sleep(random.nextInt(3));
+                return input * 2;
+            }
+        }, new OrderedPipeline.Sink<Integer>() {
+            @Override
+            public void accept(Integer output) {
+                results.add(output);
+            }
+        });
+        assertEquals(COUNT, results.size());
+        for (int i = 0; i < COUNT; i++) {
+            assertEquals(Integer.valueOf(i * 2), results.get(i));
+        }
+    }
+
+    public void testTransformError() throws Exception {
+        OrderedPipeline<Integer, Integer> pipeline =
+            new OrderedPipeline<Integer, Integer>("test", 4, 4);
+        try {
+            pipeline.run(new Counter(COUNT), new OrderedPipeline.Transform<Integer, Integer>() {
+                @Override
+                public Integer apply(Integer input) {
+                    if (input == 100) {
+                        throw new IllegalStateException("bad input");
+                    }
+                    return input;
+                }
+            }, new OrderedPipeline.Sink<Integer>() {
+                @Override
+                public void accept(Integer output) {
+                    assertTrue(output < 100);
+                }
+            });
+            fail("expected exception");
+        } catch (IllegalStateException e) {
+            assertEquals("bad input", e.getMessage());
+        }
+    }
+
+    public void testSourceError() throws Exception {
+        final List<Integer> results = new ArrayList<Integer>();
+        OrderedPipeline<Integer, Integer> pipeline =
+            new OrderedPipeline<Integer, Integer>("test", 2, 4);
+        try {
+            pipeline.run(new OrderedPipeline.Source<Integer>() {
+                private int i = 0;
+                @Override
+                public Integer next() throws Exception {
+                    if (i == 10) {
+                        throw new java.io.IOException("truncated");
+                    }
+                    return i++;
+                }
+            }, new OrderedPipeline.Transform<Integer, Integer>() {
+                @Override
+                public Integer apply(Integer input) {
+                    return input;
+                }
+            }, new OrderedPipeline.Sink<Integer>() {
+                @Override
+                public void accept(Integer output) {
+                    results.add(output);
+                }
+            });
+            fail("expected exception");
+        } catch (java.io.IOException e) {
+            assertEquals("truncated", e.getMessage());
+        }
+        // everything read before the failure was still processed
+        assertEquals(10, results.size());
+    }
+
+    public void testSourceThrowsError() throws Exception {
+        OrderedPipeline<Integer, Integer> pipeline =
+            new OrderedPipeline<Integer, Integer>("test", 2, 4);
+        try {
+            pipeline.run(new OrderedPipeline.Source<Integer>() {
+                private int i = 0;
+                @Override
+                public Integer next() {
+                    if (i == 10) {
+                        throw new OutOfMemoryError("source");
+                    }
+                    return i++;
+                }
+            }, new OrderedPipeline.Transform<Integer, Integer>() {
+                @Override
+                public Integer apply(Integer input) {
+                    return input;
+                }
+            }, new OrderedPipeline.Sink<Integer>() {
+                @Override
+                public void accept(Integer output) {
+                    // nothing to do
+                }
+            });
+            fail("expected error");
+        } catch (OutOfMemoryError e) {
+            // rethrown rather than leaving run() waiting for more input
+            assertEquals("source", e.getMessage());
+        }
+    }
+
+    private static class Counter implements OrderedPipeline.Source<Integer>
+    {
+        private final int max;
+        private int i = 0;
+
+        Counter(int max) {
+            this.max = max;
+        }
+
+        @Override
+        public Integer next() {
+            return (i < max) ? Integer.valueOf(i++) : null;
+        }
+    }
+}
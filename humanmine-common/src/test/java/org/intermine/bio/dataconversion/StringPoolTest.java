@@ -0,0 +1,43 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import junit.framework.TestCase;
+
+public class StringPoolTest extends TestCase
+{
+    public StringPoolTest(String arg) {
+        super(arg);
+    }
+
+    public void testIntern() throws Exception {
+        StringPool pool = new StringPool();
+        String first = new String("liver");
+        String second = new String("liver");
+        assertSame(first, pool.intern(first));
+        assertSame(first, pool.intern(second));
+        assertSame(first, pool.intern(first));
+        assertEquals("lung", pool.intern(new String("lung")));
+        assertNull(pool.intern(null));
+
+        assertEquals(2, pool.getDistinctCount());
+        assertEquals(4, pool.getLookupCount());
+        // only the second copy of liver was replaced: 24 + 16 + 2 * 5 rounded up to 8
+        assertEquals(24 + 32, pool.getBytesSaved());
+    }
+
+    public void testEmpty() throws Exception {
+        StringPool pool = new StringPool();
+        assertEquals(0, pool.getDistinctCount());
+        assertEquals(0, pool.getBytesSaved());
+        assertEquals("0 values, 0 distinct, about 0 KB of copies saved", pool.toString());
+    }
+}
@@ -0,0 +1,58 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.List;
+
+import junit.framework.TestCase;
+
+public class TopKCounterTest extends TestCase
+{
+    public TopKCounterTest(String arg) {
+        super(arg);
+    }
+
+    public void testExact() throws Exception {
+        TopKCounter counter = new TopKCounter(3);
+        add(counter, "a", 3);
+        add(counter, "b", 5);
+        add(counter, "c", 3);
+        assertEquals(11, counter.getTotal());
+        List<TopKCounter.Entry> top = counter.getTop(10);
+        assertEquals("[b=5, a=3, c=3]", top.toString());
+        assertEquals(0, top.get(0).getError());
+        assertEquals("[b=5]", counter.getTop(1).toString());
+    }
+
+    public void testEviction() throws Exception {
+        TopKCounter counter = new TopKCounter(2);
+        add(counter, "frequent", 100);
+        // every rare key takes over the other counter
+        for (int i = 0; i < 50; i++) {
+            counter.add("rare" + i);
+        }
+        add(counter, "late", 2);
+        assertEquals(152, counter.getTotal());
+        List<TopKCounter.Entry> top = counter.getTop(2);
+        assertEquals("frequent", top.get(0).getKey());
+        assertEquals(100, top.get(0).getCount());
+        assertEquals("late", top.get(1).getKey());
+        // over-estimated, but by no more than the error
+        assertEquals(52, top.get(1).getCount());
+        assertEquals(50, top.get(1).getError());
+    }
+
+    private static void add(TopKCounter counter, String key, int times) {
+        for (int i = 0; i < times; i++) {
+            counter.add(key);
+        }
+    }
+}
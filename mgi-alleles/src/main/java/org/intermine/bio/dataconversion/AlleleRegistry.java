@@ -0,0 +1,230 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.intermine.dataconversion.DataConverter;
+import org.intermine.objectstore.ObjectStoreException;
+import org.intermine.xml.full.Item;
+import org.intermine.xml.full.ItemFactory;
+
+/**
+ * Holds the Alleles that MgiAllelesConverter can't store until every file has been read, as
+ * each file can add to the same allele.  Rather than keeping an Item per allele, the values
+ * are kept in one array per attribute and the highLevelPhenotypeTerms as term numbers in a
+ * shared int array, chained per allele.  storeAlleles() then creates, stores and drops the
+ * Items one at a time.
+ *
+ * Each allele is given its Item identifier when it is added, so other Items can refer to it
+ * straight away, and its Item is only created with that identifier when it is stored.
+ * Not thread-safe.
+ *
+ * @author InterMine
+ */
+public class AlleleRegistry
+{
+    private static final int DEFAULT_CAPACITY = 1024;
+    private static final int NONE = -1;
+
+    private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+    private int size = 0;
+    private String[] symbols = new String[DEFAULT_CAPACITY];
+    private String[] refIds = new String[DEFAULT_CAPACITY];
+    private String[] primaryIdentifiers = new String[DEFAULT_CAPACITY];
+    private String[] names = new String[DEFAULT_CAPACITY];
+    private String[] types = new String[DEFAULT_CAPACITY];
+    private String[] publications = new String[DEFAULT_CAPACITY];
+    private String[] genes = new String[DEFAULT_CAPACITY];
+    // first and last entry of each allele's terms in the arrays below
+    private int[] firstTerms = new int[DEFAULT_CAPACITY];
+    private int[] lastTerms = new int[DEFAULT_CAPACITY];
+
+    // each term identifier is kept once and referred to by its number
+    private final Map<String, Integer> termNumbers = new HashMap<String, Integer>();
+    private final List<String> termRefIds = new ArrayList<String>();
+    private int termCount = 0;
+    private int[] terms = new int[DEFAULT_CAPACITY];
+    private int[] nextTerms = new int[DEFAULT_CAPACITY];
+
+    /**
+     * @param symbol the allele symbol
+     * @return the number of the allele, or -1 if it hasn't been added
+     */
+    public int getAllele(String symbol) {
+        Integer index = indexes.get(symbol);
+        return (index == null) ? NONE : index;
+    }
+
+    /**
+     * Add an allele.
+     *
+     * @param symbol the allele symbol
+     * @param refId identifier of the Item that will be stored for the allele
+     * @return the number of the allele
+     */
+    public int addAllele(String symbol, String refId) {
+        if (indexes.containsKey(symbol)) {
+            throw new IllegalArgumentException("Allele " + symbol + " has already been added");
+        }
+        if (size == symbols.length) {
+            int capacity = size * 2;
+            symbols = Arrays.copyOf(symbols, capacity);
+            refIds = Arrays.copyOf(refIds, capacity);
+            primaryIdentifiers = Arrays.copyOf(primaryIdentifiers, capacity);
+            names = Arrays.copyOf(names, capacity);
+            types = Arrays.copyOf(types, capacity);
+            publications = Arrays.copyOf(publications, capacity);
+            genes = Arrays.copyOf(genes, capacity);
+            firstTerms = Arrays.copyOf(firstTerms, capacity);
+            lastTerms = Arrays.copyOf(lastTerms, capacity);
+        }
+        int index = size++;
+        symbols[index] = symbol;
+        refIds[index] = refId;
+        firstTerms[index] = NONE;
+        lastTerms[index] = NONE;
+        indexes.put(symbol, index);
+        return index;
+    }
+
+    /**
+     * @param allele number of the allele
+     * @return identifier of the Item for the allele
+     */
+    public String getRefId(int allele) {
+        return refIds[check(allele)];
+    }
+
+    /**
+     * @param allele number of the allele
+     * @param primaryIdentifier e.g. MGI:1857242
+     */
+    public void setPrimaryIdentifier(int allele, String primaryIdentifier) {
+        primaryIdentifiers[check(allele)] = primaryIdentifier;
+    }
+
+    /**
+     * @param allele number of the allele
+     * @param name the allele name
+     */
+    public void setName(int allele, String name) {
+        names[check(allele)] = name;
+    }
+
+    /**
+     * @param allele number of the allele
+     * @param type the allele type
+     */
+    public void setType(int allele, String type) {
+        types[check(allele)] = type;
+    }
+
+    /**
+     * @param allele number of the allele
+     * @param publication identifier of the Publication Item
+     */
+    public void setPublication(int allele, String publication) {
+        publications[check(allele)] = publication;
+    }
+
+    /**
+     * @param allele number of the allele
+     * @param gene identifier of the Gene Item
+     */
+    public void setGene(int allele, String gene) {
+        genes[check(allele)] = gene;
+    }
+
+    /**
+     * Add to the highLevelPhenotypeTerms of an allele.  They are added to the Item in order
+     * with Item.addToCollection(), so a term added more than once is only stored once.
+     *
+     * @param allele number of the allele
+     * @param termRefId identifier of the MammalianPhenotypeTerm Item
+     */
+    public void addTerm(int allele, String termRefId) {
+        check(allele);
+        Integer termNumber = termNumbers.get(termRefId);
+        if (termNumber == null) {
+            termNumber = termRefIds.size();
+            termRefIds.add(termRefId);
+            termNumbers.put(termRefId, termNumber);
+        }
+        if (termCount == terms.length) {
+            terms = Arrays.copyOf(terms, termCount * 2);
+            nextTerms = Arrays.copyOf(nextTerms, termCount * 2);
+        }
+        int entry = termCount++;
+        terms[entry] = termNumber;
+        nextTerms[entry] = NONE;
+        if (lastTerms[allele] == NONE) {
+            firstTerms[allele] = entry;
+        } else {
+            nextTerms[lastTerms[allele]] = entry;
+        }
+        lastTerms[allele] = entry;
+    }
+
+    /**
+     * @return number of alleles
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Create and store an Allele Item for each allele, in the order they were added.
+     *
+     * @param converter the converter to store the Items with
+     * @param organism identifier of the Organism Item
+     * @throws ObjectStoreException if an Item can't be stored
+     */
+    public void storeAlleles(DataConverter converter, String organism)
+        throws ObjectStoreException {
+        ItemFactory itemFactory = new ItemFactory(converter.getModel());
+        for (int i = 0; i < size; i++) {
+            Item allele = itemFactory.makeItem(refIds[i], "Allele", "");
+            allele.setAttribute("symbol", symbols[i]);
+            allele.setReference("organism", organism);
+            if (primaryIdentifiers[i] != null) {
+                allele.setAttribute("primaryIdentifier", primaryIdentifiers[i]);
+            }
+            if (names[i] != null) {
+                allele.setAttribute("name", names[i]);
+            }
+            if (types[i] != null) {
+                allele.setAttribute("type", types[i]);
+            }
+            if (publications[i] != null) {
+                allele.setReference("publication", publications[i]);
+            }
+            if (genes[i] != null) {
+                allele.setReference("gene", genes[i]);
+            }
+            for (int entry = firstTerms[i]; entry != NONE; entry = nextTerms[entry]) {
+                allele.addToCollection("highLevelPhenotypeTerms", termRefIds.get(terms[entry]));
+            }
+            converter.store(allele);
+        }
+    }
+
+    private int check(int allele) {
+        if (allele < 0 || allele >= size) {
+            throw new IllegalArgumentException("Unknown allele: " + allele);
+        }
+        return allele;
+    }
+}
@@ -17,6 +17,7 @@ import java.util.Iterator;
 import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
 import org.intermine.dataconversion.ItemWriter;
 import org.intermine.metadata.Model;
 import org.intermine.metadata.StringUtil;
@@ -35,14 +36,17 @@ public class MgiAllelesConverter extends BioFileConverter
     private static final String DATA_SOURCE_NAME =
             "The Mouse genome database (MGD) from Mouse Genome Informatics (MGI)";
     private static final String MOUSE_TAXON = "10090";
+    private static final Logger LOG = Logger.getLogger(MgiAllelesConverter.class);
 
     private Map<String, String> pubs = new HashMap<String, String>();
     private Map<String, String> genes = new HashMap<String, String>();
     private Map<String, String> terms = new HashMap<String, String>();
-    private Map<String, Item> alleles = new HashMap<String, Item>();
+    // stored in close(), as any of the files can add to them
+    private AlleleRegistry alleles = new AlleleRegistry();
 
     private Item ontology;
     private String organismIdentifier;
+    private ConverterMetrics metrics;
 
     /**
      * Constructor
@@ -50,16 +54,16 @@ public class MgiAllelesConverter extends BioFileConverter
      * @param model the Model
      */
     public MgiAllelesConverter(ItemWriter writer, Model model) {
-        super(writer, model, DATA_SOURCE_NAME, DATASET_TITLE);
-
+        super(new MetricsItemWriter(writer, "mgi-alleles"), model, DATA_SOURCE_NAME,
+                DATASET_TITLE);
+        metrics = ((MetricsItemWriter) getItemWriter()).getMetrics();
     }
 
     @Override
     public void close() throws Exception {
-        for (Item allele : alleles.values()) {
-            store(allele);
-        }
+        alleles.storeAlleles(this, organismIdentifier);
         super.close();
+        metrics.close();
     }
 
     /**
@@ -69,14 +73,23 @@ public class MgiAllelesConverter extends BioFileConverter
 
         organismIdentifier = getOrganism(MOUSE_TAXON);
         String currentFile = getCurrentFile().getName();
-        if ("MGI_PhenotypicAllele.rpt".equals(currentFile)) {
-            processPhenotypicAlleles(reader, false);
-        } else if ("MGI_QTLAllele.rpt".equals(currentFile)) {
-            processPhenotypicAlleles(reader, true);
-        } else if ("MGI_PhenoGenoMP.rpt".equals(currentFile)) {
-            processGenotypes(reader);
-        } else {
-            System.out .println("Ignoring file: " + currentFile);
+        boolean processed = false;
+        try {
+            if ("MGI_PhenotypicAllele.rpt".equals(currentFile)) {
+                processPhenotypicAlleles(metrics.countBytes(reader), false);
+            } else if ("MGI_QTLAllele.rpt".equals(currentFile)) {
+                processPhenotypicAlleles(metrics.countBytes(reader), true);
+            } else if ("MGI_PhenoGenoMP.rpt".equals(currentFile)) {
+                processGenotypes(metrics.countBytes(reader));
+            } else {
+                System.out .println("Ignoring file: " + currentFile);
+            }
+            processed = true;
+        } finally {
+            if (!processed) {
+                // the next files and close() won't be processed
+                metrics.close();
+            }
         }
     }
     private void processGenotypes(Reader reader) throws ObjectStoreException, IOException {
@@ -86,17 +99,39 @@ public class MgiAllelesConverter extends BioFileConverter
             store(ontology);
         }
 
+        // the lines for a genotype have to be next to each other, so sort them by name. this
+        // is done on disk so the file doesn't have to fit in memory
+        ExternalSorter sorter = new ExternalSorter(0);
+        Reader sortedReader = sorter.sort(reader);
+        if (!sorter.isInputSorted()) {
+            LOG.info("Sorted " + sorter.getLineCount() + " genotype lines by name in "
+                    + sorter.getRunCount() + " runs");
+        }
+        try {
+            processSortedGenotypes(sortedReader);
+        } finally {
+            sortedReader.close();
+        }
+    }
+
+    private void processSortedGenotypes(Reader reader) throws ObjectStoreException, IOException {
         String lastGenotypeName = null;
         Item currentGenotype = null;
         Iterator<?> lineIter = FormattedTextParser.parseTabDelimitedReader(reader);
         while (lineIter.hasNext()) {
             String[] line = (String[]) lineIter.next();
+            metrics.rowRead();
             String genotypeName = line[0];
             String alleleStr = line[1];
             String background = line[2];
             String termId = line[3];
             String geneStr = line[4];
 
+            if (lastGenotypeName != null && genotypeName.compareTo(lastGenotypeName) < 0) {
+                // a genotype seen before would be created again
+                throw new IllegalArgumentException("Genotypes aren't sorted by name: "
+                        + genotypeName + " after " + lastGenotypeName);
+            }
             if (!genotypeName.equals(lastGenotypeName)) {
                 // store
                 if (currentGenotype != null) {
@@ -116,8 +151,8 @@ public class MgiAllelesConverter extends BioFileConverter
                 }
                 for (String alleleSymbol : alleleSymbols) {
                     if (!isWildTypeSymbol(alleleSymbol)) {
-                        Item allele = getAlleleItem(alleleSymbol);
-                        currentGenotype.addToCollection("alleles", allele);
+                        int allele = getAllele(alleleSymbol);
+                        currentGenotype.addToCollection("alleles", alleles.getRefId(allele));
                     }
                 }
             }
@@ -156,6 +191,7 @@ public class MgiAllelesConverter extends BioFileConverter
         Iterator<?> lineIter = FormattedTextParser.parseTabDelimitedReader(reader);
         while (lineIter.hasNext()) {
             String[] line = (String[]) lineIter.next();
+            metrics.rowRead();
             String alleleIdentifier = line[0];
             String alleleSymbol = line[1];
             String alleleName = line[2];
@@ -184,42 +220,41 @@ public class MgiAllelesConverter extends BioFileConverter
 
             // TODO synonyms for alleles?
 
-            Item allele = getAlleleItem(alleleSymbol);
-            allele.setAttribute("primaryIdentifier", alleleIdentifier);
-            allele.setAttribute("name", alleleName);
+            int allele = getAllele(alleleSymbol);
+            alleles.setPrimaryIdentifier(allele, alleleIdentifier);
+            alleles.setName(allele, alleleName);
 
             if (!StringUtils.isBlank(alleleType)) {
-                allele.setAttribute("type", alleleType);
+                alleles.setType(allele, alleleType);
             }
 
             // Last file had a bad PubMed ID so be careful.
             // See #1537
             if (!StringUtils.isBlank(pubmed) && StringUtil.allDigits(pubmed)) {
                 String pubItemId = getPubItemId(pubmed);
-                allele.setReference("publication", pubItemId);
+                alleles.setPublication(allele, pubItemId);
             }
 
             if (!StringUtils.isBlank(geneIdentifier)) {
                 String geneItemId = getGeneItemId(geneIdentifier);
-                allele.setReference("gene", geneItemId);
+                alleles.setGene(allele, geneItemId);
             }
 
             if (!StringUtils.isBlank(termsStr)) {
                 String[] termIds = termsStr.split(",");
                 for (String termId : termIds) {
-                    allele.addToCollection("highLevelPhenotypeTerms", getTermItemId(termId));
+                    alleles.addTerm(allele, getTermItemId(termId));
                 }
             }
         }
     }
 
-    private Item getAlleleItem(String alleleSymbol) throws ObjectStoreException {
-        Item allele = alleles.get(alleleSymbol);
-        if (allele == null) {
-            allele = createItem("Allele");
-            allele.setAttribute("symbol", alleleSymbol);
-            allele.setReference("organism", organismIdentifier);
-            alleles.put(alleleSymbol, allele);
+    private int getAllele(String alleleSymbol) {
+        int allele = alleles.getAllele(alleleSymbol);
+        if (allele < 0) {
+            // only the identifier is kept, so other items can refer to the allele. the item
+            // stored in close() is made with it rather than by createItem() again
+            allele = alleles.addAllele(alleleSymbol, createItem("Allele").getIdentifier());
         }
         return allele;
     }
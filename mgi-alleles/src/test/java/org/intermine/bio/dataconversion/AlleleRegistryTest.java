@@ -0,0 +1,148 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.intermine.dataconversion.DataConverter;
+import org.intermine.dataconversion.ItemWriter;
+import org.intermine.dataconversion.MockItemWriter;
+import org.intermine.metadata.Model;
+import org.intermine.xml.full.Item;
+
+public class AlleleRegistryTest extends TestCase
+{
+    private Model model = Model.getInstanceByName("genomic");
+    private MockItemWriter itemWriter;
+    private AlleleRegistry registry;
+
+    public AlleleRegistryTest(String arg) {
+        super(arg);
+    }
+
+    public void setUp() throws Exception {
+        super.setUp();
+        itemWriter = new MockItemWriter(new HashMap<String, org.intermine.model.fulldata.Item>());
+        registry = new AlleleRegistry();
+    }
+
+    public void testAddAllele() throws Exception {
+        assertEquals(-1, registry.getAllele("Kit<W>"));
+        int allele = registry.addAllele("Kit<W>", "1_1");
+        assertEquals(allele, registry.getAllele("Kit<W>"));
+        assertEquals("1_1", registry.getRefId(allele));
+        try {
+            registry.addAllele("Kit<W>", "1_2");
+            fail("expected exception");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    public void testTermsAcrossGrowth() throws Exception {
+        // more alleles and term entries than the initial capacity, with each allele's terms
+        // added in separate passes so its chain runs across the grown arrays
+        int count = 3000;
+        for (int i = 0; i < count; i++) {
+            registry.addAllele("allele" + i, "1_" + i);
+        }
+        for (int pass = 0; pass < 3; pass++) {
+            for (int i = 0; i < count; i++) {
+                registry.addTerm(i, "2_" + ((i + pass) % 50));
+            }
+        }
+        assertEquals(count, registry.size());
+
+        Map<String, Item> alleles = storeAlleles();
+        assertEquals(count, alleles.size());
+        for (int i = 0; i < count; i++) {
+            Item allele = alleles.get("1_" + i);
+            assertEquals("allele" + i, allele.getAttribute("symbol").getValue());
+            assertEquals(Arrays.asList("2_" + (i % 50), "2_" + ((i + 1) % 50),
+                    "2_" + ((i + 2) % 50)),
+                    allele.getCollection("highLevelPhenotypeTerms").getRefIds());
+        }
+    }
+
+    public void testDuplicateTerms() throws Exception {
+        int allele = registry.addAllele("Kit<W>", "1_1");
+        registry.addTerm(allele, "2_2");
+        registry.addTerm(allele, "2_1");
+        registry.addTerm(allele, "2_2");
+        registry.addTerm(allele, "2_3");
+
+        // in the order first added, as Item.addToCollection() keeps them
+        Item item = storeAlleles().get("1_1");
+        assertEquals(Arrays.asList("2_2", "2_1", "2_3"),
+                item.getCollection("highLevelPhenotypeTerms").getRefIds());
+    }
+
+    public void testOverwrittenAttributes() throws Exception {
+        // each file can set the same allele again, the last value is stored
+        int allele = registry.addAllele("Kit<W>", "1_1");
+        registry.setPrimaryIdentifier(allele, "MGI:1");
+        registry.setName(allele, "old name");
+        registry.setType(allele, "old type");
+        registry.setPublication(allele, "3_1");
+        registry.setGene(allele, "4_1");
+        registry.setPrimaryIdentifier(allele, "MGI:2");
+        registry.setName(allele, "new name");
+        registry.setType(allele, "new type");
+        registry.setPublication(allele, "3_2");
+        registry.setGene(allele, "4_2");
+        int other = registry.addAllele("Pax6<Sey>", "1_2");
+
+        Map<String, Item> alleles = storeAlleles();
+        Item item = alleles.get("1_1");
+        assertEquals("Allele", item.getClassName());
+        assertEquals("MGI:2", item.getAttribute("primaryIdentifier").getValue());
+        assertEquals("new name", item.getAttribute("name").getValue());
+        assertEquals("new type", item.getAttribute("type").getValue());
+        assertEquals("3_2", item.getReference("publication").getRefId());
+        assertEquals("4_2", item.getReference("gene").getRefId());
+        assertEquals("5_1", item.getReference("organism").getRefId());
+
+        // values not set aren't stored
+        Item otherItem = alleles.get(registry.getRefId(other));
+        assertFalse(otherItem.hasAttribute("name"));
+        assertFalse(otherItem.hasReference("gene"));
+        assertNull(otherItem.getCollection("highLevelPhenotypeTerms"));
+    }
+
+    public void testUnknownAllele() throws Exception {
+        try {
+            registry.setName(0, "name");
+            fail("expected exception");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private Map<String, Item> storeAlleles() throws Exception {
+        registry.storeAlleles(new StoringConverter(itemWriter, model), "5_1");
+        Map<String, Item> alleles = new HashMap<String, Item>();
+        for (Item item : itemWriter.getItems()) {
+            alleles.put(item.getIdentifier(), item);
+        }
+        return alleles;
+    }
+
+    private static class StoringConverter extends DataConverter
+    {
+        StoringConverter(ItemWriter writer, Model model) {
+            super(writer, model);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.intermine.dataconversion.ItemsTestCase;
+import org.intermine.dataconversion.MockItemWriter;
+import org.intermine.metadata.Model;
+import org.intermine.xml.full.Item;
+
+public class MgiAllelesConverterTest extends ItemsTestCase
+{
+    Model model = Model.getInstanceByName("genomic");
+    MgiAllelesConverter converter;
+    MockItemWriter itemWriter;
+    private final String genotypeFile = "MGI_PhenoGenoMP.rpt";
+
+    public MgiAllelesConverterTest(String arg) {
+        super(arg);
+    }
+
+    public void setUp() throws Exception {
+        super.setUp();
+        itemWriter = new MockItemWriter(new HashMap<String, org.intermine.model.fulldata.Item>());
+        converter = new MgiAllelesConverter(itemWriter, model);
+    }
+
+    public void testUnsortedGenotypes() throws Exception {
+        File testFile = new File(getClass().getClassLoader().getResource(genotypeFile).toURI());
+        Reader reader = new InputStreamReader(getClass().getClassLoader()
+                .getResourceAsStream(genotypeFile));
+        converter.setCurrentFile(testFile);
+        converter.process(reader);
+        converter.close();
+
+        Set<Item> items = itemWriter.getItems();
+        Map<String, Item> byId = new HashMap<String, Item>();
+        for (Item item : items) {
+            byId.put(item.getIdentifier(), item);
+        }
+
+        // the lines of a genotype aren't next to each other in the file
+        Map<String, Set<String>> genotypeTerms = new HashMap<String, Set<String>>();
+        Map<String, Set<String>> genotypeAlleles = new HashMap<String, Set<String>>();
+        for (Item item : items) {
+            if (!"Genotype".equals(item.getClassName())) {
+                continue;
+            }
+            String name = item.getAttribute("name").getValue();
+            assertFalse("Genotype " + name + " stored twice", genotypeTerms.containsKey(name));
+            Set<String> terms = new HashSet<String>();
+            for (String refId : item.getCollection("phenotypeTerms").getRefIds()) {
+                terms.add(byId.get(refId).getAttribute("identifier").getValue());
+            }
+            genotypeTerms.put(name, terms);
+            Set<String> alleles = new HashSet<String>();
+            for (String refId : item.getCollection("alleles").getRefIds()) {
+                alleles.add(byId.get(refId).getAttribute("symbol").getValue());
+            }
+            genotypeAlleles.put(name, alleles);
+        }
+
+        assertEquals(3, genotypeTerms.size());
+        assertEquals(new HashSet<String>(Arrays.asList("MP:0001293", "MP:0002092", "MP:0000371")),
+                genotypeTerms.get("Pax6<Sey>/Pax6<Sey>"));
+        assertEquals(new HashSet<String>(Arrays.asList("MP:0000371", "MP:0001146")),
+                genotypeTerms.get("Kit<W>/Kit<+>"));
+        assertEquals(new HashSet<String>(Arrays.asList("MP:0001293")),
+                genotypeTerms.get("Pax6<Sey>/Pax6<+>"));
+
+        // wild type alleles aren't stored
+        assertEquals(new HashSet<String>(Arrays.asList("Kit<W>")),
+                genotypeAlleles.get("Kit<W>/Kit<+>"));
+        assertEquals(new HashSet<String>(Arrays.asList("Pax6<Sey>")),
+                genotypeAlleles.get("Pax6<Sey>/Pax6<+>"));
+    }
+}
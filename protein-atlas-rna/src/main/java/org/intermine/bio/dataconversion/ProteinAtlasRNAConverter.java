@@ -43,7 +43,10 @@ public class ProteinAtlasRNAConverter extends BioFileConverter
     private Set<String> storedTissues = new HashSet<String>();
     private int entryCount = 0;
     protected IdResolver rslv;
+    private IdResolutionCache resolutionCache;
     private static final String TAXON_ID = "9606";
+    // attribute values with few distinct values, shared by the items
+    private StringPool attributeValues = new StringPool();
 
     /**
      * Constructor
@@ -95,8 +98,8 @@ public class ProteinAtlasRNAConverter extends BioFileConverter
 
             Item item = createItem("RNASeqResult");
             item.setReference("gene", gene);
-            item.setAttribute("tissue", tissue);
-            item.setAttribute("expressionType", "TPM");
+            attributeValues.setAttribute(item, "tissue", tissue);
+            attributeValues.setAttribute(item, "expressionType", "TPM");
             // TODO if there isn't an expression score, maybe skip?
             if (StringUtils.isNotEmpty(expressionScore)) {
                 item.setAttribute("expressionScore", expressionScore);
@@ -133,17 +136,21 @@ public class ProteinAtlasRNAConverter extends BioFileConverter
     }
 
     private String resolveGene(String identifier) {
-        String id = identifier;
-        if (rslv != null && rslv.hasTaxon(TAXON_ID)) {
-            int resCount = rslv.countResolutions(TAXON_ID, identifier);
-            if (resCount != 1) {
-                LOG.info("RESOLVER: failed to resolve gene to one identifier, ignoring gene: "
-                         + identifier + " count: " + resCount + " Human identifier: "
-                         + rslv.resolveId(TAXON_ID, identifier));
-                return null;
-            }
-            id = rslv.resolveId(TAXON_ID, identifier).iterator().next();
+        if (resolutionCache == null) {
+            resolutionCache = new IdResolutionCache(rslv);
+        }
+        return resolutionCache.resolve(TAXON_ID, identifier);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws Exception {
+        LOG.info("Attribute values: " + attributeValues);
+        if (resolutionCache != null) {
+            resolutionCache.logFailures();
         }
-        return id;
+        super.close();
     }
 }
@@ -10,8 +10,11 @@ package org.intermine.bio.dataconversion;
  *
  */
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
 import java.util.Collection;
 import java.util.Collections;
@@ -21,25 +24,15 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
-import org.intermine.bio.dataconversion.ProteinAtlasEntry.Level;
 import org.intermine.bio.dataconversion.ProteinAtlasEntry.TissueExpressionData;
-import org.intermine.bio.dataconversion.ProteinAtlasEntry.TissueExpressionSummary;
 import org.intermine.dataconversion.ItemWriter;
 import org.intermine.metadata.Model;
 import org.intermine.objectstore.ObjectStoreException;
 import org.intermine.util.FormattedTextParser;
 import org.intermine.xml.full.Item;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 /**
  * Read Protein Atlas expression data.
@@ -57,7 +50,13 @@ public class ProteinAtlasConverter extends BioFileConverter
     private Set<String> storedTissues = new HashSet<String>();
     private int entryCount = 0;
     protected IdResolver rslv;
+    private IdResolutionCache resolutionCache;
     private static final String TAXON_ID = "9606";
+    private static final int ENTRY_QUEUE_SIZE = 100;
+    private int threads = 1;
+    // attribute values with few distinct values, shared by the items
+    private StringPool attributeValues = new StringPool();
+    private ConverterMetrics metrics;
 
     /**
      * Constructor
@@ -65,12 +64,28 @@ public class ProteinAtlasConverter extends BioFileConverter
      * @param model the Model
      */
     public ProteinAtlasConverter(ItemWriter writer, Model model) {
-        super(writer, model, DATA_SOURCE_NAME, DATASET_TITLE, LICENSE);
+        super(new MetricsItemWriter(writer, "protein-atlas"), model, DATA_SOURCE_NAME,
+                DATASET_TITLE, LICENSE);
+        metrics = ((MetricsItemWriter) getItemWriter()).getMetrics();
         if (rslv == null) {
             rslv = IdResolverService.getIdResolverByOrganism(Collections.singleton(TAXON_ID));
         }
     }
 
+    /**
+     * Set the number of worker threads used to process the entries of proteinatlas.xml, from
+     * the proteinAtlas.threads source property.
+     *
+     * @param threads number of threads, default is 1
+     */
+    public void setProteinAtlasThreads(String threads) {
+        this.threads = Integer.parseInt(threads.trim());
+        if (this.threads < 1) {
+            throw new IllegalArgumentException("proteinAtlas.threads must be at least 1, got "
+                    + threads);
+        }
+    }
+
     /**
      * Read Protein Atlas normal_tissue.csv file.
      *
@@ -79,14 +94,24 @@ public class ProteinAtlasConverter extends BioFileConverter
     @Override
     public void process(Reader reader) throws Exception {
         File currentFile = getCurrentFile();
-        if ("normal_tissue.tsv".equals(currentFile.getName())) {
-            processNormalTissue(reader);
-        } else if ("tissue_to_organ.tsv".equals(currentFile.getName())) {
-            processTissueToOrgan(reader);
-        } else if ("proteinatlas.xml".equals(currentFile.getName())) {
-            processAllInOneXML(currentFile);
-        } else {
-            throw new RuntimeException("Don't know how to process file: " + currentFile.getName());
+        boolean processed = false;
+        try {
+            if ("normal_tissue.tsv".equals(currentFile.getName())) {
+                processNormalTissue(metrics.countBytes(reader));
+            } else if ("tissue_to_organ.tsv".equals(currentFile.getName())) {
+                processTissueToOrgan(metrics.countBytes(reader));
+            } else if ("proteinatlas.xml".equals(currentFile.getName())) {
+                processAllInOneXML(currentFile);
+            } else {
+                throw new RuntimeException("Don't know how to process file: "
+                        + currentFile.getName());
+            }
+            processed = true;
+        } finally {
+            if (!processed) {
+                // close() isn't called once a file has failed
+                metrics.close();
+            }
         }
     }
 
@@ -101,6 +126,7 @@ public class ProteinAtlasConverter extends BioFileConverter
         // Read all lines into gene records
         while (lineIter.hasNext()) {
             String[] line = (String[]) lineIter.next();
+            metrics.rowRead();
             String tissueName = line[0];
             String tissueGroupName = line[1];
 
@@ -147,9 +173,11 @@ public class ProteinAtlasConverter extends BioFileConverter
 
         while (lineIter.hasNext()) {
             String[] line = (String[]) lineIter.next();
+            metrics.rowRead();
 
             String geneId = getGeneId(line[0]);
             if (StringUtils.isEmpty(geneId)) {
+                metrics.rowSkipped("unresolved gene");
                 continue;
             }
             String capitalisedTissueName = StringUtils.capitalize(line[2]);
@@ -163,87 +191,50 @@ public class ProteinAtlasConverter extends BioFileConverter
 //            reliability = alterReliability(reliability, expressionType);
 
             Item expression = createItem("ProteinAtlasExpression");
-            expression.setAttribute("cellType", cellType);
-            expression.setAttribute("level", level);
+            attributeValues.setAttribute(expression, "cellType", cellType);
+            attributeValues.setAttribute(expression, "level", level);
 //            expression.setAttribute("expressionType", alterExpressionType(expressionType));
-            expression.setAttribute("reliability", reliability);
+            attributeValues.setAttribute(expression, "reliability", reliability);
             expression.setReference("gene", geneId);
             expression.setReference("tissue", tissueId);
             store(expression);
         }
     }
 
-    private void processAllInOneXML(File file)
-        throws SAXException, IOException, ParserConfigurationException, ObjectStoreException {
-
-        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-        Document doc = dBuilder.parse(file);
-        doc.getDocumentElement().normalize();
-
-        NodeList entryList = doc.getElementsByTagName("entry");
-
-        for (int i = 0; i < entryList.getLength(); i++) {
-            ProteinAtlasEntry e = new ProteinAtlasEntry();
-
-            Element entry = (Element) entryList.item(i);
-            e.setVersion(entry.getAttribute("version"));
-            e.setUrl(entry.getAttribute("version"));
-            e.setGeneName(entry.getElementsByTagName("name").item(0).getTextContent());
-
-            NodeList synonymList = entry.getElementsByTagName("synonym");
-            for (int si = 0; si < synonymList.getLength(); si++) {
-                e.getGeneSynonymSet().add(synonymList.item(si).getTextContent());
-            }
-
-            e.setGeneId(((Element) entry.getElementsByTagName("identifier").item(0))
-                    .getAttribute("id"));
-
-            Element te = (Element) entry.getElementsByTagName("tissueExpression").item(0);
-            e.getTissueExpression().setType(te.getAttribute("type"));
-            e.getTissueExpression().setTechnology(te.getAttribute("technology"));
-
-            Element tes = (Element) te.getElementsByTagName("summary").item(0);
-            TissueExpressionSummary s = e.new TissueExpressionSummary();
-            s.setSummaryType(tes.getAttribute("type"));
-            s.setSummary(tes.getTextContent());
-            e.getTissueExpression().getSummarySet().add(s);
-
-            e.getTissueExpression().setVerificationType(
-                    ((Element) te.getElementsByTagName("verification").item(0))
-                            .getAttribute("type"));
-            e.getTissueExpression().setVerification(
-                    te.getElementsByTagName("verification").item(0)
-                            .getTextContent());
-
-            NodeList tedList = te.getElementsByTagName("data");
-            for (int tedi = 0; tedi < tedList.getLength(); tedi++) {
-                Element ted = (Element) tedList.item(tedi);
-
-                TissueExpressionData d = e.new TissueExpressionData();
-                d.setTissue(((Element) ted.getElementsByTagName("tissue").item(0))
-                        .getTextContent());
-                d.setTissueStatus(((Element) ted.getElementsByTagName("tissue").item(0))
-                        .getAttribute("status"));
-
-                d.setCellType(ted.getElementsByTagName("cellType").item(0)
-                        .getTextContent());
-
-                ted.getElementsByTagName("level").item(0).getTextContent();
-
-                Level l = e.new Level();
-                l.setType(((Element) ted.getElementsByTagName("level").item(0))
-                        .getAttribute("type"));
-                l.setLevel(ted.getElementsByTagName("level").item(0)
-                        .getTextContent());
-                d.getLevelSet().add(l);
-
-                e.getTissueExpression().getDataSet().add(d);
-            }
-
+    // one thread reads entries, workers resolve genes and this thread creates and stores items,
+    // in file order so item identifiers are the same however many workers there are
+    private void processAllInOneXML(File file) throws Exception {
+        if (resolutionCache == null) {
+            // shared by the workers, so create it before they start
+            resolutionCache = new IdResolutionCache(rslv);
+            metrics.setResolutionCache(resolutionCache);
+        }
+        InputStream in = new BufferedInputStream(metrics.countBytes(new FileInputStream(file)));
+        try {
+            final ProteinAtlasEntryReader entryReader = new ProteinAtlasEntryReader(in);
+            OrderedPipeline<ProteinAtlasEntry, ResolvedEntry> pipeline =
+                new OrderedPipeline<ProteinAtlasEntry, ResolvedEntry>("protein-atlas", threads,
+                        ENTRY_QUEUE_SIZE);
             // TODO extension to subcellularLocation, rnaExpression, antibody
-
-            processEntry(e);
+            pipeline.run(new OrderedPipeline.Source<ProteinAtlasEntry>() {
+                @Override
+                public ProteinAtlasEntry next() throws Exception {
+                    return entryReader.next();
+                }
+            }, new OrderedPipeline.Transform<ProteinAtlasEntry, ResolvedEntry>() {
+                @Override
+                public ResolvedEntry apply(ProteinAtlasEntry entry) {
+                    return new ResolvedEntry(entry, resolveGene(entry.getGeneId()));
+                }
+            }, new OrderedPipeline.Sink<ResolvedEntry>() {
+                @Override
+                public void accept(ResolvedEntry resolvedEntry) throws ObjectStoreException {
+                    processEntry(resolvedEntry);
+                }
+            });
+            entryReader.close();
+        } finally {
+            in.close();
         }
     }
 
@@ -258,7 +249,10 @@ public class ProteinAtlasConverter extends BioFileConverter
     }
 
     private String getGeneId(String primaryIdentifier) throws ObjectStoreException {
-        String resolvedIdentifier = resolveGene(primaryIdentifier);
+        return getGene(resolveGene(primaryIdentifier));
+    }
+
+    private String getGene(String resolvedIdentifier) throws ObjectStoreException {
         if (StringUtils.isEmpty(resolvedIdentifier)) {
             return null;
         }
@@ -275,18 +269,11 @@ public class ProteinAtlasConverter extends BioFileConverter
     }
 
     private String resolveGene(String identifier) {
-        String id = identifier;
-        if (rslv != null && rslv.hasTaxon(TAXON_ID)) {
-            int resCount = rslv.countResolutions(TAXON_ID, identifier);
-            if (resCount != 1) {
-                LOG.info("RESOLVER: failed to resolve gene to one identifier, ignoring gene: "
-                         + identifier + " count: " + resCount + " Human identifier: "
-                         + rslv.resolveId(TAXON_ID, identifier));
-                return null;
-            }
-            id = rslv.resolveId(TAXON_ID, identifier).iterator().next();
+        if (resolutionCache == null) {
+            resolutionCache = new IdResolutionCache(rslv);
+            metrics.setResolutionCache(resolutionCache);
         }
-        return id;
+        return resolutionCache.resolve(TAXON_ID, identifier);
     }
 
 
@@ -336,18 +323,18 @@ public class ProteinAtlasConverter extends BioFileConverter
 //        }
 //    }
 
-    private void processEntry(ProteinAtlasEntry entry) throws ObjectStoreException {
+    private void processEntry(ResolvedEntry resolvedEntry) throws ObjectStoreException {
+        metrics.rowRead();
         entryCount++;
         if (entryCount % 10000 == 0) {
             LOG.info("Processed " + entryCount + " entries.");
         }
 
-        processTissueExpression(entry);
+        processTissueExpression(resolvedEntry.entry, getGene(resolvedEntry.primaryIdentifier));
     }
 
-    private void processTissueExpression(ProteinAtlasEntry entry)
+    private void processTissueExpression(ProteinAtlasEntry entry, String geneRefId)
         throws ObjectStoreException {
-        String geneRefId = getGeneId(entry.getGeneId());
         String reliability = entry.getTissueExpression().getVerification();
 
         for (TissueExpressionData ted : entry.getTissueExpression()
@@ -357,15 +344,39 @@ public class ProteinAtlasConverter extends BioFileConverter
 //            reliability = alterReliability(reliability, expressionType);
 
             Item expression = createItem("ProteinAtlasExpression");
-            expression.setAttribute("cellType", ted.getCellType());
-            expression.setAttribute("level", ted.getLevelSet().iterator()
+            attributeValues.setAttribute(expression, "cellType", ted.getCellType());
+            attributeValues.setAttribute(expression, "level", ted.getLevelSet().iterator()
                     .next().getLevel());
 //            expression.setAttribute("expressionType",
 //                    alterExpressionType(expressionType));
-            expression.setAttribute("reliability", reliability);
+            attributeValues.setAttribute(expression, "reliability", reliability);
             expression.setReference("gene", geneRefId);
             expression.setReference("tissue", ted.getTissue());
             store(expression);
         }
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() throws Exception {
+        LOG.info("Attribute values: " + attributeValues);
+        super.close();
+        metrics.close();
+    }
+
+    /**
+     * An entry and the primary identifier its gene resolved to, null if it didn't resolve.
+     */
+    private static class ResolvedEntry
+    {
+        private final ProteinAtlasEntry entry;
+        private final String primaryIdentifier;
+
+        ResolvedEntry(ProteinAtlasEntry entry, String primaryIdentifier) {
+            this.entry = entry;
+            this.primaryIdentifier = primaryIdentifier;
+        }
+    }
 }
@@ -0,0 +1,170 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.intermine.bio.dataconversion.ProteinAtlasEntry.Level;
+import org.intermine.bio.dataconversion.ProteinAtlasEntry.TissueExpression;
+import org.intermine.bio.dataconversion.ProteinAtlasEntry.TissueExpressionData;
+import org.intermine.bio.dataconversion.ProteinAtlasEntry.TissueExpressionSummary;
+
+/**
+ * Streaming reader for proteinatlas.xml.  Entries are read one at a time so memory use is
+ * bounded by the largest entry rather than by the whole file.
+ *
+ * Only the parts of an entry the converter uses are read: gene name, synonyms and identifier,
+ * and the first tissueExpression element.
+ *
+ * @author InterMine
+ */
+public class ProteinAtlasEntryReader
+{
+    private final XMLStreamReader xml;
+
+    /**
+     * Constructor
+     * @param in the XML, the encoding is taken from the XML declaration
+     * @throws XMLStreamException if the XML can't be read
+     */
+    public ProteinAtlasEntryReader(InputStream in) throws XMLStreamException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        xml = factory.createXMLStreamReader(in);
+    }
+
+    /**
+     * Read the next entry.
+     *
+     * @return the next entry or null if there are no more
+     * @throws XMLStreamException if the XML can't be read
+     */
+    public ProteinAtlasEntry next() throws XMLStreamException {
+        while (xml.hasNext()) {
+            if (xml.next() == XMLStreamConstants.START_ELEMENT
+                    && "entry".equals(xml.getLocalName())) {
+                return readEntry();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Close the underlying XML reader, this does not close the input stream.
+     *
+     * @throws XMLStreamException if the reader can't be closed
+     */
+    public void close() throws XMLStreamException {
+        xml.close();
+    }
+
+    // positioned on <entry>, returns after </entry>
+    private ProteinAtlasEntry readEntry() throws XMLStreamException {
+        ProteinAtlasEntry entry = new ProteinAtlasEntry();
+        entry.setVersion(xml.getAttributeValue(null, "version"));
+        entry.setUrl(xml.getAttributeValue(null, "url"));
+
+        boolean seenTissueExpression = false;
+        int depth = 1;
+        while (depth > 0) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = xml.getLocalName();
+                if ("name".equals(name) && entry.getGeneName() == null) {
+                    entry.setGeneName(xml.getElementText());
+                } else if ("synonym".equals(name)) {
+                    entry.getGeneSynonymSet().add(xml.getElementText());
+                } else if ("tissueExpression".equals(name) && !seenTissueExpression) {
+                    readTissueExpression(entry);
+                    seenTissueExpression = true;
+                } else {
+                    if ("identifier".equals(name) && entry.getGeneId() == null) {
+                        entry.setGeneId(xml.getAttributeValue(null, "id"));
+                    }
+                    depth++;
+                }
+            }
+        }
+        return entry;
+    }
+
+    // positioned on <tissueExpression>, returns after </tissueExpression>
+    private void readTissueExpression(ProteinAtlasEntry entry) throws XMLStreamException {
+        TissueExpression te = entry.getTissueExpression();
+        te.setType(xml.getAttributeValue(null, "type"));
+        te.setTechnology(xml.getAttributeValue(null, "technology"));
+
+        boolean seenSummary = false;
+        boolean seenVerification = false;
+        int depth = 1;
+        while (depth > 0) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = xml.getLocalName();
+                if ("summary".equals(name) && !seenSummary) {
+                    TissueExpressionSummary s = entry.new TissueExpressionSummary();
+                    s.setSummaryType(xml.getAttributeValue(null, "type"));
+                    s.setSummary(xml.getElementText());
+                    te.getSummarySet().add(s);
+                    seenSummary = true;
+                } else if ("verification".equals(name) && !seenVerification) {
+                    te.setVerificationType(xml.getAttributeValue(null, "type"));
+                    te.setVerification(xml.getElementText());
+                    seenVerification = true;
+                } else if ("data".equals(name)) {
+                    te.getDataSet().add(readData(entry));
+                } else {
+                    depth++;
+                }
+            }
+        }
+    }
+
+    // positioned on <data>, returns after </data>
+    private TissueExpressionData readData(ProteinAtlasEntry entry) throws XMLStreamException {
+        TissueExpressionData d = entry.new TissueExpressionData();
+        Level level = null;
+        int depth = 1;
+        while (depth > 0) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = xml.getLocalName();
+                if ("tissue".equals(name) && d.getTissue() == null) {
+                    d.setTissueStatus(xml.getAttributeValue(null, "status"));
+                    d.setTissue(xml.getElementText());
+                } else if ("cellType".equals(name) && d.getCellType() == null) {
+                    d.setCellType(xml.getElementText());
+                } else if ("level".equals(name) && level == null) {
+                    level = entry.new Level();
+                    level.setType(xml.getAttributeValue(null, "type"));
+                    level.setLevel(xml.getElementText());
+                    d.getLevelSet().add(level);
+                } else {
+                    depth++;
+                }
+            }
+        }
+        return d;
+    }
+}
@@ -14,6 +14,7 @@ import java.io.File;
 import java.io.StringReader;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Set;
 
 import org.intermine.dataconversion.ItemsTestCase;
 import org.intermine.dataconversion.MockItemWriter;
@@ -52,6 +53,36 @@ public class ProteinAtlasConverterTest extends ItemsTestCase
         assertEquals(readItemSet("ProteinAtlasConverterTest.xml"), itemWriter.getItems());
     }
 
+    public void testXMLThreads() throws Exception {
+        // items, including their identifiers, must not depend on the number of workers
+        Set<org.intermine.xml.full.Item> expected = processXML("1");
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, processXML("4"));
+    }
+
+    public void testInvalidThreads() throws Exception {
+        ProteinAtlasConverter converter = new ProteinAtlasConverter(
+                new MockItemWriter(new HashMap<String, Item>()), Model.getInstanceByName("genomic"));
+        try {
+            converter.setProteinAtlasThreads("0");
+            fail("Expected an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            assertEquals("proteinAtlas.threads must be at least 1, got 0", e.getMessage());
+        }
+    }
+
+    private Set<org.intermine.xml.full.Item> processXML(String threads) throws Exception {
+        MockItemWriter itemWriter = new MockItemWriter(new HashMap<String, Item>());
+        ProteinAtlasConverter converter = new ProteinAtlasConverter(itemWriter,
+                Model.getInstanceByName("genomic"));
+        converter.setProteinAtlasThreads(threads);
+        converter.setCurrentFile(new File(getClass().getClassLoader()
+                .getResource("proteinatlas.xml").toURI()));
+        converter.process(null);
+        converter.close();
+        return itemWriter.getItems();
+    }
+
     @SuppressWarnings("rawtypes")
     protected Collection getExpectedItems() throws Exception {
         return FullParser.parse(getClass().getClassLoader().getResourceAsStream("ProteinAtlasConverterTest.xml"));
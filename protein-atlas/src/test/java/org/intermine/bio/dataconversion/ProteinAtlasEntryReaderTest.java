@@ -0,0 +1,54 @@
+package org.intermine.bio.dataconversion;
+
+/*
+ * Copyright (C) 2002-2020 FlyMine
+ *
+ * This code may be freely distributed and modified under the
+ * terms of the GNU Lesser General Public Licence.  This should
+ * be distributed with the code.  See the LICENSE file for more
+ * information or http://www.gnu.org/copyleft/lesser.html.
+ *
+ */
+
+import java.io.InputStream;
+
+import junit.framework.TestCase;
+
+import org.intermine.bio.dataconversion.ProteinAtlasEntry.TissueExpressionData;
+
+public class ProteinAtlasEntryReaderTest extends TestCase
+{
+    public ProteinAtlasEntryReaderTest(String arg) {
+        super(arg);
+    }
+
+    public void testNext() throws Exception {
+        InputStream in = getClass().getClassLoader().getResourceAsStream("proteinatlas.xml");
+        ProteinAtlasEntryReader reader = new ProteinAtlasEntryReader(in);
+
+        ProteinAtlasEntry entry = reader.next();
+        assertNotNull(entry);
+        assertEquals("10.0", entry.getVersion());
+        assertEquals("TSPAN6", entry.getGeneName());
+        assertEquals("ENSG00000000003", entry.getGeneId());
+        assertEquals(3, entry.getGeneSynonymSet().size());
+        assertTrue(entry.getGeneSynonymSet().contains("TM4SF6"));
+
+        // only the first tissueExpression, not the one nested in antibody
+        assertEquals("IH", entry.getTissueExpression().getTechnology());
+        assertEquals("supportive", entry.getTissueExpression().getVerification());
+        assertEquals(1, entry.getTissueExpression().getSummarySet().size());
+        assertEquals(79, entry.getTissueExpression().getDataSet().size());
+
+        TissueExpressionData data = entry.getTissueExpression().getDataSet().iterator().next();
+        assertEquals("adrenal gland", data.getTissue());
+        assertEquals("normal", data.getTissueStatus());
+        assertEquals("glandular cells", data.getCellType());
+        assertEquals("negative", data.getLevelSet().iterator().next().getLevel());
+        assertEquals("staining", data.getLevelSet().iterator().next().getType());
+
+        assertNull(reader.next());
+        reader.close();
+        in.close();
+    }
+}